@@ -0,0 +1,56 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the auth benchmarks at 1, 8 and 64 threads, reporting throughput together with the
+ * allocation rate measured by the GC profiler.
+ *
+ * <p>Usage: <code>java -jar target/benchmarks.jar [benchmark regexp]</code>. Results are also
+ * written as JSON to <code>jmh-result-&lt;threads&gt;t.json</code>. Use <code>
+ * java -cp target/benchmarks.jar org.openjdk.jmh.Main</code> for the full set of JMH options.
+ */
+public final class BenchmarkRunner {
+  private static final int[] THREAD_COUNTS = {1, 8, 64};
+
+  private BenchmarkRunner() {}
+
+  public static void main(String[] args) throws RunnerException {
+    String include = args.length > 0 ? args[0] : BenchmarkRunner.class.getPackage().getName();
+    for (int threads : THREAD_COUNTS) {
+      Options options =
+          new OptionsBuilder()
+              .include(include)
+              .threads(threads)
+              .forks(1)
+              .warmupIterations(3)
+              .measurementIterations(5)
+              .addProfiler(GCProfiler.class)
+              .resultFormat(ResultFormatType.JSON)
+              .result("jmh-result-" + threads + "t.json")
+              .build();
+      new Runner(options).run();
+    }
+  }
+}
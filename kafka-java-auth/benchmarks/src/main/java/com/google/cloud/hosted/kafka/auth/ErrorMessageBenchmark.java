@@ -0,0 +1,58 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.confluent.kafka.schemaregistry.client.rest.entities.ErrorMessage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks Jackson deserialization of Schema Registry error messages. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ErrorMessageBenchmark {
+  private static final byte[] UNNESTED_ERROR =
+      "{\"error_code\":40401,\"message\":\"Subject 'topic-value' not found.\"}".getBytes(UTF_8);
+
+  private static final byte[] NESTED_ERROR =
+      ("{\"error\":{\"code\":429,"
+              + "\"message\":\"Quota exceeded for quota metric 'Requests'\","
+              + "\"status\":\"RESOURCE_EXHAUSTED\","
+              + "\"details\":[{\"reason\":\"RATE_LIMIT_EXCEEDED\"}]}}")
+          .getBytes(UTF_8);
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  @Benchmark
+  public ErrorMessage unnestedError() throws IOException {
+    return mapper.readValue(UNNESTED_ERROR, ErrorMessage.class);
+  }
+
+  @Benchmark
+  public ErrorMessage nestedError() throws IOException {
+    return mapper.readValue(NESTED_ERROR, ErrorMessage.class);
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks GcpBearerAuthCredentialProvider.getBearerToken() with a valid token. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GcpBearerAuthCredentialProviderBenchmark {
+  private GcpBearerAuthCredentialProvider provider;
+  private URL url;
+
+  @Setup
+  public void setUp() throws MalformedURLException {
+    provider = new GcpBearerAuthCredentialProvider(new StubCredentials());
+    provider.configure(Collections.emptyMap());
+    url =
+        new URL(
+            "https://managedkafka.googleapis.com/v1/projects/p/locations/l/schemaRegistries/r");
+  }
+
+  @Benchmark
+  public String getBearerToken() {
+    return provider.getBearerToken(url);
+  }
+}
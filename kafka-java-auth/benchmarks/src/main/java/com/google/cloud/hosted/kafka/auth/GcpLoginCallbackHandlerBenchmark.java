@@ -0,0 +1,57 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import javax.security.auth.callback.Callback;
+import org.apache.kafka.common.security.oauthbearer.OAuthBearerToken;
+import org.apache.kafka.common.security.oauthbearer.OAuthBearerTokenCallback;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** Benchmarks the token callback of GcpLoginCallbackHandler with a cached token. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GcpLoginCallbackHandlerBenchmark {
+  private GcpLoginCallbackHandler handler;
+
+  @Setup
+  public void setUp() {
+    handler = new GcpLoginCallbackHandler(new StubCredentials());
+    handler.configure(Collections.emptyMap(), "OAUTHBEARER", Collections.emptyList());
+  }
+
+  @TearDown
+  public void tearDown() {
+    handler.close();
+  }
+
+  @Benchmark
+  public OAuthBearerToken handle() throws Exception {
+    OAuthBearerTokenCallback callback = new OAuthBearerTokenCallback();
+    handler.handle(new Callback[] {callback});
+    return callback.token();
+  }
+}
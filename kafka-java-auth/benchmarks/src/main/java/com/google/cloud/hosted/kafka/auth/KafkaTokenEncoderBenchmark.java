@@ -0,0 +1,58 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import com.google.auth.oauth2.AccessToken;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks encoding Google access tokens as Kafka tokens. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class KafkaTokenEncoderBenchmark {
+  private static final String SUBJECT = "benchmark@project.iam.gserviceaccount.com";
+
+  private KafkaTokenEncoder encoder;
+  private AccessToken token;
+
+  @Setup
+  public void setUp() throws IOException {
+    encoder = new KafkaTokenEncoder();
+    token = new StubCredentials().refreshAccessToken();
+  }
+
+  /** The common case: the access token has not rotated since it was last encoded. */
+  @Benchmark
+  public String encodeCached() {
+    return encoder.encode(token, SUBJECT);
+  }
+
+  /** The cost paid once per token rotation. */
+  @Benchmark
+  public String encodeUncached() {
+    return KafkaTokenEncoder.encode(
+        token.getTokenValue(), 1_900_000_000L, System.currentTimeMillis() / 1000, SUBJECT);
+  }
+}
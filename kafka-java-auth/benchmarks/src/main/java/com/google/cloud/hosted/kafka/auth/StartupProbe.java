@@ -0,0 +1,68 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.lang.management.ManagementFactory;
+import java.util.Base64;
+import java.util.Collections;
+import javax.security.auth.callback.Callback;
+import org.apache.kafka.common.security.oauthbearer.OAuthBearerTokenCallback;
+
+/**
+ * Measures the cold start of the login handler: the time from a fresh JVM to the first token and
+ * the number of classes loaded to get there, including reading the claims of an ID token.
+ *
+ * <p>JMH reports steady-state costs, which hide class loading, so this runs once per JVM. Run it
+ * several times and compare the medians, e.g. before and after a dependency change: <code>
+ * java -cp target/benchmarks.jar com.google.cloud.hosted.kafka.auth.StartupProbe</code>.
+ */
+public final class StartupProbe {
+  private StartupProbe() {}
+
+  public static void main(String[] args) throws Exception {
+    long startNanos = System.nanoTime();
+
+    GcpLoginCallbackHandler handler = new GcpLoginCallbackHandler(new StubCredentials());
+    handler.configure(Collections.emptyMap(), "OAUTHBEARER", Collections.emptyList());
+    OAuthBearerTokenCallback callback = new OAuthBearerTokenCallback();
+    handler.handle(new Callback[] {callback});
+    String principal = callback.token().principalName();
+    handler.close();
+
+    String idToken =
+        encode("{\"alg\":\"RS256\"}")
+            + "."
+            + encode("{\"email\":\"" + principal + "\",\"exp\":1700000000}")
+            + "."
+            + encode("signature");
+    String email = JwtPayload.decode(idToken).getString("email");
+
+    long elapsedNanos = System.nanoTime() - startNanos;
+    System.out.printf(
+        "first token for %s in %.1f ms, %d classes loaded, JVM uptime %d ms%n",
+        email,
+        elapsedNanos / 1e6,
+        ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount(),
+        ManagementFactory.getRuntimeMXBean().getUptime());
+  }
+
+  private static String encode(String value) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(UTF_8));
+  }
+}
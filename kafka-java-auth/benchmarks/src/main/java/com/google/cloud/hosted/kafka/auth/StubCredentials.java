@@ -0,0 +1,37 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import com.google.auth.oauth2.AccessToken;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Date;
+
+/** Credentials that issue a fixed, long-lived token without any network access. */
+final class StubCredentials extends GcpLoginCallbackHandler.StubGoogleCredentials {
+  @Override
+  public AccessToken refreshAccessToken() throws IOException {
+    return new AccessToken(
+        "ya29.benchmark-access-token-0123456789abcdefghijklmnopqrstuvwxyz",
+        Date.from(Instant.now().plusSeconds(3600)));
+  }
+
+  @Override
+  String getAccount() {
+    return "benchmark@project.iam.gserviceaccount.com";
+  }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.auth.oauth2.ComputeEngineCredentials;
+import com.google.auth.oauth2.ExternalAccountCredentials;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.auth.oauth2.ImpersonatedCredentials;
+import com.google.auth.oauth2.ServiceAccountCredentials;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.apache.kafka.common.config.ConfigException;
+
+/**
+ * The configured source of Google credentials.
+ *
+ * <p>A source only describes where the credentials come from; they are not loaded until {@link
+ * #load} is called. Sources with the same {@link #identity()} load equivalent credentials, which
+ * can therefore be shared.
+ *
+ * <p>Impersonated credentials of different target service accounts share their source credentials
+ * when the source is the same, so that the source token is refreshed once for all targets.
+ */
+final class CredentialSource {
+
+  /** The kinds of credentials that can be configured. */
+  enum Type {
+    APPLICATION_DEFAULT,
+    SERVICE_ACCOUNT,
+    EXTERNAL_ACCOUNT,
+    METADATA;
+
+    String configValue() {
+      return name().toLowerCase(Locale.ROOT);
+    }
+
+    boolean needsFile() {
+      return this == SERVICE_ACCOUNT || this == EXTERNAL_ACCOUNT;
+    }
+  }
+
+  // Impersonated tokens are requested with the maximum lifetime that needs no extra permission.
+  private static final int IMPERSONATED_TOKEN_LIFETIME_SECONDS = 3600;
+
+  private static final int MAX_IMPERSONATION_SOURCES = 16;
+
+  // Where application default credentials are read from, before the metadata server.
+  private static final String APPLICATION_CREDENTIALS_ENV = "GOOGLE_APPLICATION_CREDENTIALS";
+  private static final String GCLOUD_CONFIG_ENV = "CLOUDSDK_CONFIG";
+  private static final String GCLOUD_CREDENTIALS_FILE = "application_default_credentials.json";
+
+  // Source credentials of impersonated credentials, by source identity and scope, least recently
+  // used first. Credentials dropped from here keep working for the targets that already use them.
+  private static final Map<String, GoogleCredentials> IMPERSONATION_SOURCES =
+      new LinkedHashMap<String, GoogleCredentials>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, GoogleCredentials> eldest) {
+          return size() > MAX_IMPERSONATION_SOURCES;
+        }
+      };
+
+  static final CredentialSource APPLICATION_DEFAULT =
+      new CredentialSource(
+          Type.APPLICATION_DEFAULT,
+          null,
+          null,
+          Collections.emptyList(),
+          PooledTransportFactory.get(PooledTransportFactory.Settings.DEFAULT));
+
+  private final Type type;
+  private final String file;
+  private final String impersonatedServiceAccount;
+  private final List<String> delegates;
+  private final PooledTransportFactory transportFactory;
+
+  private CredentialSource(
+      Type type,
+      String file,
+      String impersonatedServiceAccount,
+      List<String> delegates,
+      PooledTransportFactory transportFactory) {
+    this.type = type;
+    this.file = file;
+    this.impersonatedServiceAccount = impersonatedServiceAccount;
+    this.delegates = delegates;
+    this.transportFactory = transportFactory;
+  }
+
+  /** Reads the credential source options, defaulting to application default credentials. */
+  static CredentialSource fromConfig(GcpAuthConfig config) {
+    String typeName = config.getString(GcpAuthConfig.CREDENTIALS_SOURCE_CONFIG);
+    Type type =
+        typeName == null
+            ? Type.APPLICATION_DEFAULT
+            : parseType(GcpAuthConfig.CREDENTIALS_SOURCE_CONFIG, typeName);
+    String file = config.getString(GcpAuthConfig.CREDENTIALS_FILE_CONFIG);
+    if (!type.needsFile() && file != null) {
+      throw new ConfigException(
+          GcpAuthConfig.CREDENTIALS_FILE_CONFIG,
+          file,
+          String.format("Not supported by the %s credentials source", type.configValue()));
+    }
+    return fromConfig(config, type);
+  }
+
+  /**
+   * Reads the options of one of the sources of {@link GcpAuthConfig#CREDENTIALS_SOURCES_CONFIG}.
+   * The credentials file, if any, is only used by the sources that read one.
+   */
+  static CredentialSource fromConfig(GcpAuthConfig config, String typeName) {
+    return fromConfig(config, parseType(GcpAuthConfig.CREDENTIALS_SOURCES_CONFIG, typeName));
+  }
+
+  private static Type parseType(String configName, String typeName) {
+    try {
+      return Type.valueOf(typeName.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new ConfigException(
+          configName,
+          typeName,
+          "Expected one of application_default, service_account, external_account or metadata");
+    }
+  }
+
+  private static CredentialSource fromConfig(GcpAuthConfig config, Type type) {
+    String file = config.getString(GcpAuthConfig.CREDENTIALS_FILE_CONFIG);
+    if (type.needsFile() && file == null) {
+      throw new ConfigException(
+          String.format(
+              "%s must be set for the %s credentials source",
+              GcpAuthConfig.CREDENTIALS_FILE_CONFIG, type.configValue()));
+    }
+    String impersonatedServiceAccount =
+        config.getString(GcpAuthConfig.IMPERSONATE_SERVICE_ACCOUNT_CONFIG);
+    List<String> delegates = parseDelegates(config);
+    if (impersonatedServiceAccount == null && !delegates.isEmpty()) {
+      throw new ConfigException(
+          String.format(
+              "%s requires %s to be set",
+              GcpAuthConfig.IMPERSONATE_DELEGATES_CONFIG,
+              GcpAuthConfig.IMPERSONATE_SERVICE_ACCOUNT_CONFIG));
+    }
+    return new CredentialSource(
+        type,
+        type.needsFile() ? file : null,
+        impersonatedServiceAccount,
+        delegates,
+        PooledTransportFactory.get(PooledTransportFactory.Settings.fromConfig(config)));
+  }
+
+  private static List<String> parseDelegates(GcpAuthConfig config) {
+    String value = config.getString(GcpAuthConfig.IMPERSONATE_DELEGATES_CONFIG);
+    if (value == null) {
+      return Collections.emptyList();
+    }
+    List<String> delegates = new ArrayList<>();
+    for (String delegate : value.split(",")) {
+      if (!delegate.trim().isEmpty()) {
+        delegates.add(delegate.trim());
+      }
+    }
+    return Collections.unmodifiableList(delegates);
+  }
+
+  /** A stable description of the credentials, used to share them between clients. */
+  String identity() {
+    StringBuilder identity = new StringBuilder(sourceIdentity());
+    if (impersonatedServiceAccount != null) {
+      identity.append(";impersonate=").append(impersonatedServiceAccount);
+      for (String delegate : delegates) {
+        identity.append(',').append(delegate);
+      }
+    }
+    return identity.toString();
+  }
+
+  /**
+   * Returns the identity under which the token of the credentials may be kept in a file for other
+   * processes, or null if they must not be. The identity of credentials read from a file does not
+   * tell which credentials the file holds when a process reads it, as the file may be replaced, so
+   * a digest of the file is added to it. For application default credentials, that is the file
+   * they resolve to in the process. Reading the file is the only I/O.
+   */
+  String cacheIdentity() {
+    if (type.needsFile()) {
+      String digest = fileDigest(Paths.get(file));
+      return digest == null ? null : identity() + ";file=" + digest;
+    }
+    if (type != Type.APPLICATION_DEFAULT) {
+      return identity();
+    }
+    String resolved =
+        applicationDefaultSource(
+            System.getenv(),
+            System.getProperty("user.home"),
+            System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("windows"));
+    return resolved == null ? null : identity() + ";adc=" + resolved;
+  }
+
+  /**
+   * Describes the credentials that application default credentials resolve to in the given
+   * environment: a digest of the path and contents of the file they are read from, <code>metadata
+   * </code> if there is none, or null if the file cannot be read.
+   */
+  @VisibleForTesting
+  static String applicationDefaultSource(
+      Map<String, String> env, String userHome, boolean windows) {
+    Path file;
+    String explicit = env.get(APPLICATION_CREDENTIALS_ENV);
+    if (explicit != null && !explicit.isEmpty()) {
+      file = Paths.get(explicit);
+    } else {
+      Path gcloudConfig;
+      if (env.get(GCLOUD_CONFIG_ENV) != null) {
+        gcloudConfig = Paths.get(env.get(GCLOUD_CONFIG_ENV));
+      } else if (windows && env.get("APPDATA") != null) {
+        gcloudConfig = Paths.get(env.get("APPDATA"), "gcloud");
+      } else if (!windows && userHome != null) {
+        gcloudConfig = Paths.get(userHome, ".config", "gcloud");
+      } else {
+        return null;
+      }
+      file = gcloudConfig.resolve(GCLOUD_CREDENTIALS_FILE);
+      if (!Files.exists(file)) {
+        return "metadata";
+      }
+    }
+    return fileDigest(file);
+  }
+
+  // A digest of the path and contents of the file, or null if it cannot be read.
+  private static String fileDigest(Path file) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      digest.update(file.toAbsolutePath().toString().getBytes(UTF_8));
+      digest.update((byte) 0);
+      StringBuilder hex = new StringBuilder();
+      for (byte b : digest.digest(Files.readAllBytes(file))) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.toString();
+    } catch (IOException | RuntimeException e) {
+      return null;
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  // The identity of the credentials before impersonation.
+  private String sourceIdentity() {
+    StringBuilder identity = new StringBuilder(type.configValue());
+    if (file != null) {
+      identity.append(':').append(file);
+    }
+    PooledTransportFactory.Settings http = transportFactory.settings();
+    if (!http.equals(PooledTransportFactory.Settings.DEFAULT)) {
+      identity
+          .append(";http=")
+          .append(http.connectTimeoutMs)
+          .append('/')
+          .append(http.readTimeoutMs)
+          .append('/')
+          .append(http.maxConnections);
+    }
+    return identity.toString();
+  }
+
+  PooledTransportFactory transportFactory() {
+    return transportFactory;
+  }
+
+  /**
+   * Loads the credentials with the given scope. Only this method does any I/O.
+   *
+   * <p>The credentials, and any credentials they create such as ID token credentials, send their
+   * requests through the shared transport of the configured HTTP settings.
+   */
+  GoogleCredentials load(String scope) throws IOException {
+    if (impersonatedServiceAccount == null) {
+      return loadSource(scope);
+    }
+    return ImpersonatedCredentials.create(
+        impersonationSource(scope),
+        impersonatedServiceAccount,
+        delegates.isEmpty() ? null : delegates,
+        Collections.singletonList(scope),
+        IMPERSONATED_TOKEN_LIFETIME_SECONDS,
+        transportFactory);
+  }
+
+  private GoogleCredentials impersonationSource(String scope) throws IOException {
+    String key = sourceIdentity() + " " + scope;
+    synchronized (IMPERSONATION_SOURCES) {
+      GoogleCredentials source = IMPERSONATION_SOURCES.get(key);
+      if (source != null) {
+        return source;
+      }
+    }
+    // Loaded outside the lock, which a slow load would otherwise hold for every target.
+    GoogleCredentials loaded = loadSource(scope);
+    // Impersonated credentials replace a source that has no token yet with a scoped copy of it,
+    // which would no longer be shared.
+    loaded.refreshIfExpired();
+    synchronized (IMPERSONATION_SOURCES) {
+      GoogleCredentials source = IMPERSONATION_SOURCES.putIfAbsent(key, loaded);
+      return source != null ? source : loaded;
+    }
+  }
+
+  private GoogleCredentials loadSource(String scope) throws IOException {
+    GoogleCredentials credentials;
+    switch (type) {
+      case SERVICE_ACCOUNT:
+        try (InputStream in = Files.newInputStream(Paths.get(file))) {
+          credentials = ServiceAccountCredentials.fromStream(in, transportFactory);
+        }
+        break;
+      case EXTERNAL_ACCOUNT:
+        try (InputStream in = Files.newInputStream(Paths.get(file))) {
+          credentials = ExternalAccountCredentials.fromStream(in, transportFactory);
+        }
+        break;
+      case METADATA:
+        credentials =
+            ComputeEngineCredentials.newBuilder().setHttpTransportFactory(transportFactory).build();
+        break;
+      default:
+        credentials = GoogleCredentials.getApplicationDefault(transportFactory);
+    }
+    return credentials.createScoped(scope);
+  }
+}
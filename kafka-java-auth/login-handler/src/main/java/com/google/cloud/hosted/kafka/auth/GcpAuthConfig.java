@@ -0,0 +1,438 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.security.auth.login.AppConfigurationEntry;
+import org.apache.kafka.common.config.ConfigException;
+
+/**
+ * Configuration options understood by the Google Cloud auth handlers.
+ *
+ * <p>For the Kafka login callback handler, options can be set either as client properties or as
+ * options of the <code>OAuthBearerLoginModule</code> JAAS configuration, with the latter taking
+ * precedence:
+ *
+ * <pre>
+ *   sasl.jaas.config=org.apache.kafka.common.security.oauthbearer.OAuthBearerLoginModule \
+ *     required gcp.auth.background.refresh.enable="true";
+ * </pre>
+ */
+public final class GcpAuthConfig {
+
+  /**
+   * The principal to authenticate as. Takes precedence over both the
+   * <code>GOOGLE_MANAGED_KAFKA_AUTH_PRINCIPAL</code> environment variable and the principal
+   * determined from the credentials.
+   */
+  public static final String PRINCIPAL_CONFIG = "gcp.auth.principal";
+
+  /**
+   * Where the Google credentials come from. One of <code>application_default</code> (the default),
+   * <code>service_account</code> or <code>external_account</code> (both read from {@link
+   * #CREDENTIALS_FILE_CONFIG}), or <code>metadata</code> (the metadata server of the Compute
+   * Engine, GKE or Cloud Run host). Naming the source skips the discovery of application default
+   * credentials, which probes the metadata server on hosts outside Google Cloud.
+   */
+  public static final String CREDENTIALS_SOURCE_CONFIG = "gcp.auth.credentials.source";
+
+  /**
+   * The JSON key file of the <code>service_account</code> or <code>external_account</code>
+   * credentials source.
+   */
+  public static final String CREDENTIALS_FILE_CONFIG = "gcp.auth.credentials.file";
+
+  /**
+   * A service account to impersonate with the credentials of the configured source. Tokens are then
+   * issued for, and the principal is, the impersonated service account.
+   */
+  public static final String IMPERSONATE_SERVICE_ACCOUNT_CONFIG =
+      "gcp.auth.impersonate.service.account";
+
+  /**
+   * A comma-separated delegation chain of service accounts for {@link
+   * #IMPERSONATE_SERVICE_ACCOUNT_CONFIG}. Each account must be allowed to impersonate the next one,
+   * and the last one the impersonated service account.
+   */
+  public static final String IMPERSONATE_DELEGATES_CONFIG = "gcp.auth.impersonate.delegates";
+
+  /**
+   * A comma-separated, ordered list of the sources the login callback handler fetches tokens from,
+   * such as <code>broker,metadata,service_account</code>. Each entry is <code>broker</code>, the
+   * token broker of {@link #BROKER_URL_CONFIG}, or one of the credential sources of {@link
+   * #CREDENTIALS_SOURCE_CONFIG}, which cannot be set as well. A token is requested from the first
+   * source; if it fails, or has not answered within {@link #CREDENTIALS_HEDGE_DELAY_MS_CONFIG}, the
+   * next source is asked as well, and so on. The first valid token is used, and the other requests
+   * are cancelled. The sources may authenticate as different principals.
+   */
+  public static final String CREDENTIALS_SOURCES_CONFIG = "gcp.auth.credentials.sources";
+
+  /**
+   * How long a source of {@link #CREDENTIALS_SOURCES_CONFIG} may take to answer before the next one
+   * is asked as well, in milliseconds. Defaults to 500 milliseconds.
+   */
+  public static final String CREDENTIALS_HEDGE_DELAY_MS_CONFIG =
+      "gcp.auth.credentials.hedge.delay.ms";
+
+  static final long DEFAULT_CREDENTIALS_HEDGE_DELAY_MS = 500L;
+
+  /**
+   * How many credentials no client uses any more are kept, with their tokens, for clients that
+   * connect again as the same principal. The least recently used ones are dropped first. The pool
+   * is shared by the whole process, so the last client to set this option determines it. Defaults
+   * to 16.
+   */
+  public static final String CREDENTIALS_POOL_MAX_IDLE_CONFIG =
+      "gcp.auth.credentials.pool.max.idle";
+
+  static final int DEFAULT_CREDENTIALS_POOL_MAX_IDLE = 16;
+
+  /**
+   * A directory in which access tokens are kept for other processes of the same user on the host.
+   * A process that finds a token there that is valid for at least five more minutes uses it right
+   * away, instead of waiting for its credentials to be discovered and to fetch a token. Disabled by
+   * default. Tokens grant access to Google Cloud, so the directory must not be shared with other
+   * users; on POSIX file systems, it is created accessible to its owner only.
+   */
+  public static final String TOKEN_CACHE_DIR_CONFIG = "gcp.auth.token.cache.dir";
+
+  /**
+   * The connect timeout of requests to the metadata server, STS and the Google token endpoints, in
+   * milliseconds. Also bounds the wait for a pooled connection. Defaults to 2 seconds.
+   */
+  public static final String HTTP_CONNECT_TIMEOUT_MS_CONFIG = "gcp.auth.http.connect.timeout.ms";
+
+  static final int DEFAULT_HTTP_CONNECT_TIMEOUT_MS = 2000;
+
+  /**
+   * The read timeout of requests to the metadata server, STS and the Google token endpoints, in
+   * milliseconds. Defaults to 5 seconds.
+   */
+  public static final String HTTP_READ_TIMEOUT_MS_CONFIG = "gcp.auth.http.read.timeout.ms";
+
+  static final int DEFAULT_HTTP_READ_TIMEOUT_MS = 5000;
+
+  /**
+   * The maximum number of persistent connections to each Google endpoint, shared by all clients in
+   * the process with the same HTTP settings. Defaults to 10.
+   */
+  public static final String HTTP_MAX_CONNECTIONS_CONFIG = "gcp.auth.http.max.connections";
+
+  static final int DEFAULT_HTTP_MAX_CONNECTIONS = 10;
+
+  /**
+   * The rate at which the whole process may send requests to the metadata server, STS and the
+   * Google token endpoints, in requests per second. Requests beyond it wait, see {@link
+   * #TOKEN_REQUESTS_MAX_WAIT_MS_CONFIG}. 0 disables the limit. The limit is shared by the whole
+   * process. The first client to set this option or the other limit options replaces their
+   * defaults, and clients that set them later can only make each of them stricter. Defaults to 20.
+   */
+  public static final String TOKEN_REQUESTS_PER_SECOND_CONFIG =
+      "gcp.auth.token.requests.per.second";
+
+  static final double DEFAULT_TOKEN_REQUESTS_PER_SECOND = 20;
+
+  /**
+   * How many requests to the metadata server, STS and the Google token endpoints the whole process
+   * may send at once, before {@link #TOKEN_REQUESTS_PER_SECOND_CONFIG} applies. Defaults to 40.
+   */
+  public static final String TOKEN_REQUESTS_BURST_CONFIG = "gcp.auth.token.requests.burst";
+
+  static final int DEFAULT_TOKEN_REQUESTS_BURST = 40;
+
+  /**
+   * The longest a request to the metadata server, STS or the Google token endpoints waits for the
+   * rate limit, in milliseconds. Requests that would wait longer fail right away, without counting
+   * as failed refreshes, and their clients keep serving their last token while it is valid.
+   * Defaults to 5 seconds.
+   */
+  public static final String TOKEN_REQUESTS_MAX_WAIT_MS_CONFIG =
+      "gcp.auth.token.requests.max.wait.ms";
+
+  static final long DEFAULT_TOKEN_REQUESTS_MAX_WAIT_MS = 5000L;
+
+  /**
+   * Whether access tokens are refreshed ahead of their expiry by a background thread, so that
+   * Kafka logins never wait on a token refresh. Defaults to <code>false</code>.
+   */
+  public static final String BACKGROUND_REFRESH_ENABLE_CONFIG =
+      "gcp.auth.background.refresh.enable";
+
+  /**
+   * The fraction of an access token's lifetime after which the background thread refreshes it,
+   * between 0.5 and 1.0. Together with {@link #REFRESH_WINDOW_JITTER_CONFIG} it can reach the
+   * expiry, so the refresh happens no later than 6 minutes before the token expires. Defaults to
+   * 0.8.
+   */
+  public static final String REFRESH_WINDOW_FACTOR_CONFIG = "gcp.auth.refresh.window.factor";
+
+  static final double DEFAULT_REFRESH_WINDOW_FACTOR = 0.8;
+
+  /**
+   * The maximum random fraction of an access token's lifetime added to the refresh window factor,
+   * between 0.0 and 0.25. Spreads background refreshes of many processes over time. Defaults to
+   * 0.05.
+   */
+  public static final String REFRESH_WINDOW_JITTER_CONFIG = "gcp.auth.refresh.window.jitter";
+
+  static final double DEFAULT_REFRESH_WINDOW_JITTER = 0.05;
+
+  /**
+   * The longest lifetime the login callback handler reports to Kafka for a token, in milliseconds.
+   * Kafka logs in again and re-authenticates its connections once the reported lifetime, rather
+   * than the access token, runs out. Defaults to no limit.
+   */
+  public static final String TOKEN_LIFETIME_MAX_MS_CONFIG = "gcp.auth.token.lifetime.max.ms";
+
+  /**
+   * The maximum random fraction by which the login callback handler shortens the token lifetime it
+   * reports to Kafka, between 0.0 and 0.5. The clients of a host share one access token, and hence
+   * its expiry, so this spreads their logins and re-authentications over time. 0.0 reports the
+   * lifetime unchanged. Defaults to 0.1.
+   */
+  public static final String TOKEN_LIFETIME_JITTER_CONFIG = "gcp.auth.token.lifetime.jitter";
+
+  static final double DEFAULT_TOKEN_LIFETIME_JITTER = 0.1;
+
+  /**
+   * How long before its expiry the Schema Registry bearer token is refreshed, in milliseconds.
+   * Within this window, requests keep using the current token while a single refresh runs in the
+   * background. A token that is issued inside the window is refreshed once half of its lifetime
+   * has passed instead. At most 30 minutes, half the lifetime of a Google access token. Defaults to
+   * 5 minutes.
+   */
+  public static final String EARLY_REFRESH_WINDOW_MS_CONFIG = "gcp.auth.early.refresh.window.ms";
+
+  static final long DEFAULT_EARLY_REFRESH_WINDOW_MS = 5 * 60 * 1000L;
+  static final long MAX_EARLY_REFRESH_WINDOW_MS = 30 * 60 * 1000L;
+
+  /**
+   * The kind of token the Schema Registry credential provider sends: <code>access_token</code>, the
+   * same access token for every registry, or <code>id_token</code>, an ID token whose audience is
+   * the origin of the registry URL. Defaults to <code>access_token</code>.
+   */
+  public static final String SCHEMA_REGISTRY_TOKEN_TYPE_CONFIG =
+      "gcp.auth.schema.registry.token.type";
+
+  /**
+   * The maximum number of registries whose ID tokens the Schema Registry credential provider
+   * keeps. The tokens of the registries used least recently are dropped first. Defaults to 16.
+   */
+  public static final String SCHEMA_REGISTRY_TOKEN_TARGETS_MAX_CONFIG =
+      "gcp.auth.schema.registry.token.targets.max";
+
+  static final int DEFAULT_SCHEMA_REGISTRY_TOKEN_TARGETS_MAX = 16;
+
+  /**
+   * Whether the Schema Registry credential provider refreshes its tokens in the background once
+   * they enter the early refresh window, rather than on the next request. Defaults to <code>true
+   * </code>.
+   */
+  public static final String SCHEMA_REGISTRY_TOKEN_PREFETCH_ENABLE_CONFIG =
+      "gcp.auth.schema.registry.token.prefetch.enable";
+
+  /**
+   * Whether the Schema Registry credential provider paces the requests of the process to a Schema
+   * Registry that throttled requests made with <code>SchemaRegistryRetryPolicy.call</code>. Pacing
+   * delays the calling thread, such as a serializer's, by up to 30 seconds. Defaults to <code>
+   * false</code>.
+   */
+  public static final String SCHEMA_REGISTRY_RATE_LIMIT_ENABLE_CONFIG =
+      "gcp.auth.schema.registry.rate.limit.enable";
+
+  /**
+   * How many times <code>SchemaRegistryRetryPolicy.call</code> retries a Schema Registry request
+   * that failed with a retryable error. Defaults to 3.
+   */
+  public static final String SCHEMA_REGISTRY_MAX_RETRIES_CONFIG =
+      "gcp.auth.schema.registry.max.retries";
+
+  static final int DEFAULT_SCHEMA_REGISTRY_MAX_RETRIES = 3;
+
+  /**
+   * The base wait before retrying a Schema Registry request, in milliseconds. The wait doubles with
+   * every retry, up to {@link #SCHEMA_REGISTRY_RETRY_BACKOFF_MAX_MS_CONFIG}, and a random part of
+   * it is used. Defaults to 100 milliseconds.
+   */
+  public static final String SCHEMA_REGISTRY_RETRY_BACKOFF_MS_CONFIG =
+      "gcp.auth.schema.registry.retry.backoff.ms";
+
+  static final long DEFAULT_SCHEMA_REGISTRY_RETRY_BACKOFF_MS = 100L;
+
+  /**
+   * The maximum wait before retrying a Schema Registry request, in milliseconds. Defaults to 10
+   * seconds.
+   */
+  public static final String SCHEMA_REGISTRY_RETRY_BACKOFF_MAX_MS_CONFIG =
+      "gcp.auth.schema.registry.retry.backoff.max.ms";
+
+  static final long DEFAULT_SCHEMA_REGISTRY_RETRY_BACKOFF_MAX_MS = 10 * 1000L;
+
+  /**
+   * How long to wait before retrying a failed token refresh, in milliseconds. The wait doubles
+   * with every consecutive failure, up to {@link #RETRY_BACKOFF_MAX_MS_CONFIG}, and is randomly
+   * spread by up to 20%. Defaults to 1 second.
+   */
+  public static final String RETRY_BACKOFF_MS_CONFIG = "gcp.auth.retry.backoff.ms";
+
+  static final long DEFAULT_RETRY_BACKOFF_MS = 1000L;
+
+  /**
+   * The maximum wait before retrying a failed token refresh, in milliseconds. This is also how long
+   * the circuit breaker stays open. Defaults to 1 minute.
+   */
+  public static final String RETRY_BACKOFF_MAX_MS_CONFIG = "gcp.auth.retry.backoff.max.ms";
+
+  static final long DEFAULT_RETRY_BACKOFF_MAX_MS = 60 * 1000L;
+
+  /**
+   * The number of consecutive failed token refreshes after which the circuit breaker opens and
+   * refreshes stop for {@link #RETRY_BACKOFF_MAX_MS_CONFIG}. Defaults to 5.
+   */
+  public static final String CIRCUIT_BREAKER_FAILURE_THRESHOLD_CONFIG =
+      "gcp.auth.circuit.breaker.failure.threshold";
+
+  static final int DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD = 5;
+
+  /**
+   * How long the last access token keeps being served after token refreshes start failing, in
+   * milliseconds, as long as the token has not expired. 0 disables serving the last token.
+   * Defaults to 5 minutes.
+   */
+  public static final String TOKEN_GRACE_PERIOD_MS_CONFIG = "gcp.auth.token.grace.period.ms";
+
+  static final long DEFAULT_TOKEN_GRACE_PERIOD_MS = 5 * 60 * 1000L;
+
+  /**
+   * Whether clients fetch an access token in the background as soon as they are configured, so
+   * that their first request does not wait for it. Kafka clients and Schema Registry clients with
+   * the same credentials share that single fetch. See also {@link GcpAuthWarmUp}. Defaults to
+   * <code>false</code>.
+   */
+  public static final String WARMUP_ENABLE_CONFIG = "gcp.auth.warmup.enable";
+
+  /**
+   * The URL of a {@link GcpTokenBroker} to fetch Kafka tokens from, such as
+   * <code>http://localhost:14293</code>. When set, the login callback handler does not use any
+   * Google credentials itself.
+   */
+  public static final String BROKER_URL_CONFIG = "gcp.auth.broker.url";
+
+  /** The loopback port {@link GcpTokenBroker} listens on. Defaults to 14293. */
+  public static final String BROKER_PORT_CONFIG = "gcp.auth.broker.port";
+
+  /**
+   * The number of threads {@link GcpTokenBroker} serves requests with. Defaults to twice the number
+   * of processors.
+   */
+  public static final String BROKER_THREADS_CONFIG = "gcp.auth.broker.threads";
+
+  private final Map<String, ?> options;
+
+  GcpAuthConfig(Map<String, ?> options) {
+    this.options = options;
+  }
+
+  /** Merges client properties with the options of the JAAS login module, which take precedence. */
+  static GcpAuthConfig fromClientAndJaasConfig(
+      Map<String, ?> configs, List<AppConfigurationEntry> jaasConfigEntries) {
+    Map<String, Object> options = new HashMap<>();
+    if (configs != null) {
+      options.putAll(configs);
+    }
+    if (jaasConfigEntries != null) {
+      for (AppConfigurationEntry entry : jaasConfigEntries) {
+        options.putAll(entry.getOptions());
+      }
+    }
+    return new GcpAuthConfig(options);
+  }
+
+  /** Returns the trimmed value of a string option, or null if it is not set or empty. */
+  String getString(String name) {
+    Object value = options.get(name);
+    if (value == null) {
+      return null;
+    }
+    String s = value.toString().trim();
+    return s.isEmpty() ? null : s;
+  }
+
+  boolean getBoolean(String name, boolean defaultValue) {
+    Object value = options.get(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    if (value instanceof Boolean) {
+      return (Boolean) value;
+    }
+    String s = value.toString().trim();
+    if (s.equalsIgnoreCase("true")) {
+      return true;
+    }
+    if (s.equalsIgnoreCase("false")) {
+      return false;
+    }
+    throw new ConfigException(name, value, "Expected true or false");
+  }
+
+  long getLong(String name, long defaultValue, long min, long max) {
+    Object value = options.get(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    long l;
+    if (value instanceof Number) {
+      l = ((Number) value).longValue();
+    } else {
+      try {
+        l = Long.parseLong(value.toString().trim());
+      } catch (NumberFormatException e) {
+        throw new ConfigException(name, value, "Expected an integer");
+      }
+    }
+    if (l < min || l > max) {
+      throw new ConfigException(
+          name, value, String.format("Expected a value between %s and %s", min, max));
+    }
+    return l;
+  }
+
+  double getDouble(String name, double defaultValue, double min, double max) {
+    Object value = options.get(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    double d;
+    if (value instanceof Number) {
+      d = ((Number) value).doubleValue();
+    } else {
+      try {
+        d = Double.parseDouble(value.toString().trim());
+      } catch (NumberFormatException e) {
+        throw new ConfigException(name, value, "Expected a number");
+      }
+    }
+    if (!(d >= min && d <= max)) {
+      throw new ConfigException(
+          name, value, String.format("Expected a value between %s and %s", min, max));
+    }
+    return d;
+  }
+}
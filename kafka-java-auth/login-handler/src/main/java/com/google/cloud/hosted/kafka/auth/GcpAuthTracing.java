@@ -0,0 +1,49 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import io.opentelemetry.api.OpenTelemetry;
+
+/**
+ * Traces the token requests of all Kafka and Schema Registry clients in the process with
+ * OpenTelemetry.
+ *
+ * <p>Tracing is off until the application passes its OpenTelemetry instance, typically once it has
+ * built and registered it:
+ *
+ * <pre>
+ *   OpenTelemetrySdk openTelemetry = OpenTelemetrySdk.builder()...buildAndRegisterGlobal();
+ *   GcpAuthTracing.setOpenTelemetry(openTelemetry);
+ * </pre>
+ *
+ * <p>The handlers never look up the global OpenTelemetry instance themselves, so they do not
+ * install a no-op instance that would make the application's own registration fail. This class is
+ * only loaded when called, and needs the OpenTelemetry API on the class path.
+ */
+public final class GcpAuthTracing {
+
+  private GcpAuthTracing() {}
+
+  /**
+   * Creates the spans of all later token requests with the tracer of the given instance, or stops
+   * tracing if it is null.
+   */
+  public static void setOpenTelemetry(OpenTelemetry openTelemetry) {
+    TokenTracing.set(
+        openTelemetry != null ? TokenTracing.forOpenTelemetry(openTelemetry) : TokenTracing.NONE);
+  }
+}
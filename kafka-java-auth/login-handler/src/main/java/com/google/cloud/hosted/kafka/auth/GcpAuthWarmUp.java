@@ -0,0 +1,67 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Fetches an access token at startup, before any Kafka or Schema Registry client is created.
+ *
+ * <p>Call {@link #warmUp} with the client configuration early in the application's startup:
+ *
+ * <pre>
+ *   GcpAuthWarmUp.warmUp(configs);
+ * </pre>
+ *
+ * <p>The credentials are loaded and a token is fetched in the background, and the token is kept
+ * for the {@link GcpLoginCallbackHandler} and <code>GcpBearerAuthCredentialProvider</code>
+ * instances that are later configured with the same credentials, so that their first request is
+ * served without waiting and both share a single fetch. Clients can also warm up when they are
+ * configured, with {@link GcpAuthConfig#WARMUP_ENABLE_CONFIG}.
+ */
+public final class GcpAuthWarmUp {
+
+  private static final String GOOGLE_CLOUD_PLATFORM_SCOPE =
+      "https://www.googleapis.com/auth/cloud-platform";
+
+  private GcpAuthWarmUp() {}
+
+  /**
+   * Starts fetching an access token with the credentials of the given configuration, whose options
+   * are those of {@link GcpAuthConfig}. The returned future completes once the token is fetched,
+   * or exceptionally if that fails, in which case the first client request tries again. Waiting
+   * for it is optional.
+   */
+  public static CompletableFuture<Void> warmUp(Map<String, ?> configs) {
+    GcpAuthConfig config = new GcpAuthConfig(configs);
+    TokenRequestLimiter.configure(config);
+    CredentialSource source = CredentialSource.fromConfig(config);
+    SharedCredentials sharedCredentials =
+        SharedCredentials.acquire(
+            source.identity(),
+            GOOGLE_CLOUD_PLATFORM_SCOPE,
+            () -> source.load(GOOGLE_CLOUD_PLATFORM_SCOPE));
+    TokenFileCache fileCache =
+        TokenFileCache.fromConfig(config, source, GOOGLE_CLOUD_PLATFORM_SCOPE);
+    if (fileCache != null) {
+      sharedCredentials.useFileCache(fileCache);
+    }
+    // Once released, the entry is kept idle with its token until a client acquires it.
+    return sharedCredentials.warmUp().whenComplete((unused, e) -> sharedCredentials.release());
+  }
+}
@@ -0,0 +1,481 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.ComputeEngineCredentials;
+import com.google.auth.oauth2.ExternalAccountCredentials;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.auth.oauth2.IdTokenCredentials;
+import com.google.auth.oauth2.IdTokenProvider;
+import com.google.auth.oauth2.ImpersonatedCredentials;
+import com.google.auth.oauth2.ServiceAccountCredentials;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.UnsupportedCallbackException;
+import javax.security.auth.login.AppConfigurationEntry;
+import org.apache.kafka.clients.CommonClientConfigs;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.security.auth.AuthenticateCallbackHandler;
+import org.apache.kafka.common.security.oauthbearer.OAuthBearerLoginModule;
+import org.apache.kafka.common.security.oauthbearer.OAuthBearerToken;
+import org.apache.kafka.common.security.oauthbearer.OAuthBearerTokenCallback;
+import org.apache.kafka.common.security.oauthbearer.internals.secured.BasicOAuthBearerToken;
+
+/**
+ * A callback handler that provides a Google OAuth token to a Kafka client.
+ *
+ * <p>This callback handler is used by the Kafka client to authenticate to a Google's Kafka server
+ * using OAuth.
+ */
+public class GcpLoginCallbackHandler implements AuthenticateCallbackHandler {
+  private static final ImmutableSet<String> KAFKA_SCOPE = ImmutableSet.of("kafka");
+  private static final String GOOGLE_CLOUD_PLATFORM_SCOPE =
+      "https://www.googleapis.com/auth/cloud-platform";
+  private static final String TARGET_AUDIENCE = "https://www.googleapis.com/oauth2/v4/token";
+  private static final String METRICS_COMPONENT = "login-callback-handler";
+  private static final String BROKER_CREDENTIAL_TYPE = "TokenBroker";
+  // The name of the token broker in CREDENTIALS_SOURCES_CONFIG.
+  private static final String BROKER_SOURCE = "broker";
+
+  /** A stub Google credentials class that exposes the account name. Used only for testing. */
+  abstract static class StubGoogleCredentials extends GoogleCredentials {
+    abstract String getAccount();
+  }
+
+  String getPrincipalFromEnvironmentVariable() {
+    return System.getenv("GOOGLE_MANAGED_KAFKA_AUTH_PRINCIPAL");
+  }
+
+  private boolean configured = false;
+  private boolean closed = false;
+  private String configuredPrincipal;
+  private long maxTokenLifetimeMs = Long.MAX_VALUE;
+  private double tokenLifetimeJitter = GcpAuthConfig.DEFAULT_TOKEN_LIFETIME_JITTER;
+  // Acquired in configure() unless injected for testing.
+  private SharedCredentials sharedCredentials;
+  // Set when tokens are fetched from a token broker instead.
+  private TokenBrokerClient brokerClient;
+  // Set when tokens are fetched from the sources of CREDENTIALS_SOURCES_CONFIG instead.
+  private HedgedTokenSource hedgedSource;
+  private TokenMetrics metrics = TokenMetrics.NONE;
+
+  /**
+   * Creates a new callback handler using the credentials configured by {@link
+   * GcpAuthConfig#CREDENTIALS_SOURCE_CONFIG}, by default the application default credentials.
+   *
+   * <p>The credentials are not loaded by the constructor. Loading starts in the background when
+   * the handler is configured, and the first token request waits for it to complete. The
+   * credentials and their access token are shared with every other handler in the process that
+   * uses the same credentials.
+   */
+  public GcpLoginCallbackHandler() {}
+
+  @VisibleForTesting
+  GcpLoginCallbackHandler(GoogleCredentials credentials) {
+    this.sharedCredentials = SharedCredentials.unshared(credentials);
+  }
+
+  @VisibleForTesting
+  GcpLoginCallbackHandler(SharedCredentials sharedCredentials) {
+    this.sharedCredentials = sharedCredentials;
+  }
+
+  @Override
+  public void configure(
+      Map<String, ?> configs, String saslMechanism, List<AppConfigurationEntry> jaasConfigEntries) {
+    if (!Objects.equals(saslMechanism, OAuthBearerLoginModule.OAUTHBEARER_MECHANISM)) {
+      throw new IllegalArgumentException(
+          String.format("Unexpected SASL mechanism: %s", saslMechanism));
+    }
+    GcpAuthConfig config = GcpAuthConfig.fromClientAndJaasConfig(configs, jaasConfigEntries);
+    configuredPrincipal = config.getString(GcpAuthConfig.PRINCIPAL_CONFIG);
+    maxTokenLifetimeMs =
+        config.getLong(
+            GcpAuthConfig.TOKEN_LIFETIME_MAX_MS_CONFIG, Long.MAX_VALUE, 1, Long.MAX_VALUE);
+    tokenLifetimeJitter =
+        config.getDouble(
+            GcpAuthConfig.TOKEN_LIFETIME_JITTER_CONFIG,
+            GcpAuthConfig.DEFAULT_TOKEN_LIFETIME_JITTER,
+            0.0,
+            0.5);
+    double refreshWindowFactor =
+        config.getDouble(
+            GcpAuthConfig.REFRESH_WINDOW_FACTOR_CONFIG,
+            GcpAuthConfig.DEFAULT_REFRESH_WINDOW_FACTOR,
+            0.5,
+            1.0);
+    double refreshWindowJitter =
+        config.getDouble(
+            GcpAuthConfig.REFRESH_WINDOW_JITTER_CONFIG,
+            GcpAuthConfig.DEFAULT_REFRESH_WINDOW_JITTER,
+            0.0,
+            0.25);
+    RefreshGuard.Policy refreshPolicy = RefreshGuard.Policy.fromConfig(config);
+    String sourceNames = config.getString(GcpAuthConfig.CREDENTIALS_SOURCES_CONFIG);
+    if (sourceNames != null && config.getString(GcpAuthConfig.CREDENTIALS_SOURCE_CONFIG) != null) {
+      throw new ConfigException(
+          String.format(
+              "%s and %s cannot both be set",
+              GcpAuthConfig.CREDENTIALS_SOURCES_CONFIG,
+              GcpAuthConfig.CREDENTIALS_SOURCE_CONFIG));
+    }
+    long hedgeDelayMs =
+        config.getLong(
+            GcpAuthConfig.CREDENTIALS_HEDGE_DELAY_MS_CONFIG,
+            GcpAuthConfig.DEFAULT_CREDENTIALS_HEDGE_DELAY_MS,
+            0,
+            Long.MAX_VALUE);
+    String brokerUrl = config.getString(GcpAuthConfig.BROKER_URL_CONFIG);
+    if (brokerUrl != null && sourceNames == null && sharedCredentials == null) {
+      brokerClient = newBrokerClient(brokerUrl);
+      metrics = registerMetrics(config);
+      configured = true;
+      return;
+    }
+    TokenRequestLimiter.configure(config);
+    if (config.getString(GcpAuthConfig.CREDENTIALS_POOL_MAX_IDLE_CONFIG) != null) {
+      SharedCredentials.setMaxIdle(
+          (int)
+              config.getLong(
+                  GcpAuthConfig.CREDENTIALS_POOL_MAX_IDLE_CONFIG,
+                  GcpAuthConfig.DEFAULT_CREDENTIALS_POOL_MAX_IDLE,
+                  0,
+                  Integer.MAX_VALUE));
+    }
+    metrics = registerMetrics(config);
+    boolean backgroundRefresh =
+        config.getBoolean(GcpAuthConfig.BACKGROUND_REFRESH_ENABLE_CONFIG, false);
+    boolean warmUp = config.getBoolean(GcpAuthConfig.WARMUP_ENABLE_CONFIG, false);
+    Consumer<SharedCredentials> setUp =
+        credentials -> {
+          // Overlap loading the credentials with the rest of the client's startup.
+          credentials.startLoading();
+          credentials.setRefreshPolicy(refreshPolicy);
+          if (backgroundRefresh) {
+            credentials.enableBackgroundRefresh(refreshWindowFactor, refreshWindowJitter);
+          }
+          credentials.addMetrics(metrics);
+          if (warmUp) {
+            credentials.warmUp();
+          }
+        };
+    if (sourceNames != null && sharedCredentials == null) {
+      List<HedgedTokenSource.Source> sources = new ArrayList<>();
+      try {
+        for (String name : sourceNames.split(",")) {
+          if (name.trim().isEmpty()) {
+            continue;
+          }
+          if (name.trim().equals(BROKER_SOURCE)) {
+            if (brokerUrl == null) {
+              throw new ConfigException(
+                  String.format(
+                      "%s must be set for the %s source",
+                      GcpAuthConfig.BROKER_URL_CONFIG, BROKER_SOURCE));
+            }
+            sources.add(new BrokerSource(newBrokerClient(brokerUrl)));
+          } else {
+            SharedCredentials credentials =
+                acquireCredentials(config, CredentialSource.fromConfig(config, name.trim()));
+            sources.add(new CredentialsSource(credentials));
+            setUp.accept(credentials);
+          }
+        }
+        if (sources.isEmpty()) {
+          throw new ConfigException(
+              GcpAuthConfig.CREDENTIALS_SOURCES_CONFIG, sourceNames, "Expected a source");
+        }
+      } catch (RuntimeException e) {
+        for (HedgedTokenSource.Source source : sources) {
+          source.close();
+        }
+        throw e;
+      }
+      hedgedSource = new HedgedTokenSource(sources, hedgeDelayMs);
+      configured = true;
+      return;
+    }
+    if (sharedCredentials == null) {
+      sharedCredentials = acquireCredentials(config, CredentialSource.fromConfig(config));
+    }
+    setUp.accept(sharedCredentials);
+    configured = true;
+  }
+
+  private static TokenBrokerClient newBrokerClient(String brokerUrl) {
+    try {
+      return new TokenBrokerClient(new URL(brokerUrl));
+    } catch (MalformedURLException e) {
+      throw new ConfigException(GcpAuthConfig.BROKER_URL_CONFIG, brokerUrl, e.getMessage());
+    }
+  }
+
+  private static SharedCredentials acquireCredentials(
+      GcpAuthConfig config, CredentialSource source) {
+    SharedCredentials credentials =
+        SharedCredentials.acquire(
+            source.identity(),
+            GOOGLE_CLOUD_PLATFORM_SCOPE,
+            () -> source.load(GOOGLE_CLOUD_PLATFORM_SCOPE));
+    TokenFileCache fileCache =
+        TokenFileCache.fromConfig(config, source, GOOGLE_CLOUD_PLATFORM_SCOPE);
+    if (fileCache != null) {
+      credentials.useFileCache(fileCache);
+    }
+    return credentials;
+  }
+
+  private static TokenMetrics registerMetrics(GcpAuthConfig config) {
+    return TokenMetrics.register(
+        METRICS_COMPONENT, config.getString(CommonClientConfigs.CLIENT_ID_CONFIG));
+  }
+
+  private boolean isConfigured() {
+    return configured;
+  }
+
+  @Override
+  public void handle(Callback[] callbacks) throws UnsupportedCallbackException, IOException {
+    if (!isConfigured()) {
+      throw new IllegalStateException("Callback handler not configured");
+    }
+
+    for (Callback callback : callbacks) {
+      if (callback instanceof OAuthBearerTokenCallback) {
+        handleTokenCallback((OAuthBearerTokenCallback) callback);
+      } else {
+        throw new UnsupportedCallbackException(callback);
+      }
+    }
+  }
+
+  private void handleTokenCallback(OAuthBearerTokenCallback callback) throws IOException {
+    try (TokenTracing.Span span =
+        TokenTracing.get().start(TokenTracing.HANDLE_TOKEN_CALLBACK_SPAN)) {
+      try {
+        KafkaToken kafkaToken;
+        if (hedgedSource != null) {
+          kafkaToken = hedgedSource.getToken(metrics, span);
+        } else if (brokerClient != null) {
+          span.setAttribute(TokenTracing.CREDENTIAL_TYPE_ATTRIBUTE, BROKER_CREDENTIAL_TYPE);
+          kafkaToken = brokerClient.getToken(metrics);
+        } else {
+          kafkaToken = googleToken(sharedCredentials);
+          String credentialType = credentialType(sharedCredentials);
+          if (credentialType != null) {
+            span.setAttribute(TokenTracing.CREDENTIAL_TYPE_ATTRIBUTE, credentialType);
+          }
+        }
+        metrics.recordTokenIssued(kafkaToken.expiresAtMs);
+        long nowMs = System.currentTimeMillis();
+        callback.token(
+            new BasicOAuthBearerToken(
+                kafkaToken.value,
+                KAFKA_SCOPE,
+                reportedLifetimeMs(nowMs, kafkaToken.expiresAtMs),
+                kafkaToken.principal,
+                nowMs));
+      } catch (IOException | RuntimeException e) {
+        span.recordFailure(e);
+        throw e;
+      }
+    }
+  }
+
+  private KafkaToken googleToken(SharedCredentials credentials) throws IOException {
+    String subject = getPrincipal(credentials);
+
+    AccessToken googleAccessToken = credentials.getAccessToken(metrics);
+    String kafkaToken;
+    try (TokenTracing.Span encodeSpan = TokenTracing.get().start(TokenTracing.ENCODE_TOKEN_SPAN)) {
+      try {
+        kafkaToken = credentials.encodeToken(googleAccessToken, subject);
+      } catch (RuntimeException e) {
+        encodeSpan.recordFailure(e);
+        throw e;
+      }
+    }
+    return new KafkaToken(kafkaToken, googleAccessToken.getExpirationTime().getTime(), subject);
+  }
+
+  private static String credentialType(SharedCredentials credentials) {
+    GoogleCredentials loaded = credentials.getCredentialsIfLoaded();
+    return loaded == null ? null : loaded.getClass().getSimpleName();
+  }
+
+  // The tokens of all clients on a host expire together, so their reported lifetimes are spread.
+  private long reportedLifetimeMs(long nowMs, long expiresAtMs) {
+    return reportedLifetimeMs(
+        nowMs,
+        expiresAtMs,
+        maxTokenLifetimeMs,
+        tokenLifetimeJitter,
+        ThreadLocalRandom.current().nextDouble());
+  }
+
+  /**
+   * Returns the end of the token lifetime reported to Kafka: the expiry of the token, brought
+   * forward to the maximum lifetime, and then by up to the jitter fraction of the remaining time.
+   * Never later than the expiry.
+   */
+  @VisibleForTesting
+  static long reportedLifetimeMs(
+      long nowMs, long expiresAtMs, long maxLifetimeMs, double jitter, double random) {
+    long lifetimeMs = Math.min(Math.max(0, expiresAtMs - nowMs), maxLifetimeMs);
+    return nowMs + (long) (lifetimeMs * (1 - jitter * random));
+  }
+
+  private String getPrincipal(SharedCredentials credentials) throws IOException {
+    // Allow overriding the principal via configuration or an environment variable. This is useful
+    // for credentials that do not support the getAccount() or similar method, such as Workforce
+    // Identity Federation. Overrides are checked first so that no ID token is fetched needlessly.
+    if (configuredPrincipal != null) {
+      return configuredPrincipal;
+    }
+    String envSubject = getPrincipalFromEnvironmentVariable();
+    if (envSubject != null && !envSubject.isEmpty()) {
+      return envSubject;
+    }
+    String subject = credentials.getPrincipal(GcpLoginCallbackHandler::resolvePrincipal);
+    if (subject == null || subject.isEmpty()) {
+      throw new IOException(
+          "Unable to determine principal for credentials type: "
+              + credentials.getCredentials().getClass().getName()
+              + ". Please set the GOOGLE_MANAGED_KAFKA_AUTH_PRINCIPAL environment variable or the "
+              + GcpAuthConfig.PRINCIPAL_CONFIG
+              + " option.");
+    }
+    return subject;
+  }
+
+  static String resolvePrincipal(GoogleCredentials credentials) throws IOException {
+    // The following credentials are the ones that support the getAccount() or similar method to
+    // obtain the principal name. Namely, the ones that can be obtained with two-legged
+    // authentication, which do not involve user authentication, such as service account
+    // credentials.
+    if (credentials instanceof ComputeEngineCredentials) {
+      return ((ComputeEngineCredentials) credentials).getAccount();
+    } else if (credentials instanceof ServiceAccountCredentials) {
+      return ((ServiceAccountCredentials) credentials).getClientEmail();
+    } else if (credentials instanceof ExternalAccountCredentials) {
+      return ((ExternalAccountCredentials) credentials).getServiceAccountEmail();
+    } else if (credentials instanceof ImpersonatedCredentials) {
+      return ((ImpersonatedCredentials) credentials).getAccount();
+    } else if (credentials instanceof StubGoogleCredentials) {
+      return ((StubGoogleCredentials) credentials).getAccount();
+    } else if (credentials instanceof IdTokenProvider) {
+      return parseGoogleIdToken((IdTokenProvider) credentials).getString("email");
+    }
+    return null;
+  }
+
+  // The ID token is fetched by the credentials themselves, through their shared HTTP transport.
+  private static JwtPayload parseGoogleIdToken(IdTokenProvider credentials) throws IOException {
+    try (TokenTracing.Span span = TokenTracing.get().start(TokenTracing.FETCH_ID_TOKEN_SPAN)) {
+      try {
+        return JwtPayload.decode(
+            IdTokenCredentials.newBuilder()
+                .setTargetAudience(TARGET_AUDIENCE)
+                .setOptions(
+                    Arrays.asList(
+                        IdTokenProvider.Option.FORMAT_FULL, IdTokenProvider.Option.INCLUDE_EMAIL))
+                .setIdTokenProvider(credentials)
+                .build()
+                .refreshAccessToken()
+                .getTokenValue());
+      } catch (IOException | RuntimeException e) {
+        span.recordFailure(e);
+        throw e;
+      }
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    if (!closed) {
+      closed = true;
+      metrics.close();
+      if (sharedCredentials != null) {
+        sharedCredentials.removeMetrics(metrics);
+        sharedCredentials.release();
+      }
+      if (hedgedSource != null) {
+        hedgedSource.close();
+      }
+    }
+  }
+
+  /** The token broker as one of the sources of CREDENTIALS_SOURCES_CONFIG. */
+  private static final class BrokerSource implements HedgedTokenSource.Source {
+    private final TokenBrokerClient client;
+
+    BrokerSource(TokenBrokerClient client) {
+      this.client = client;
+    }
+
+    @Override
+    public KafkaToken getToken(TokenMetrics metrics) throws IOException {
+      return client.getToken(metrics);
+    }
+
+    @Override
+    public String credentialType() {
+      return BROKER_CREDENTIAL_TYPE;
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  /** Google credentials as one of the sources of CREDENTIALS_SOURCES_CONFIG. */
+  private final class CredentialsSource implements HedgedTokenSource.Source {
+    private final SharedCredentials credentials;
+
+    CredentialsSource(SharedCredentials credentials) {
+      this.credentials = credentials;
+    }
+
+    @Override
+    public KafkaToken getToken(TokenMetrics metrics) throws IOException {
+      return googleToken(credentials);
+    }
+
+    @Override
+    public String credentialType() {
+      return GcpLoginCallbackHandler.credentialType(credentials);
+    }
+
+    @Override
+    public void close() {
+      credentials.removeMetrics(metrics);
+      credentials.release();
+    }
+  }
+}
+
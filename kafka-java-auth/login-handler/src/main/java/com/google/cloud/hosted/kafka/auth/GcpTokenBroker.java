@@ -0,0 +1,244 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.auth.oauth2.AccessToken;
+import com.google.common.annotations.VisibleForTesting;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A host-local token broker that serves Kafka tokens to many clients on the same machine.
+ *
+ * <p>The broker is the Java counterpart of <code>kafka_gcp_credentials_server.py</code>, and speaks
+ * the same protocol: any <code>GET</code> or <code>POST</code> request is answered with a JSON
+ * object holding the Kafka token in <code>access_token</code>, along with <code>token_type</code>
+ * and <code>expires_in</code>. It listens on the loopback interface only, so it is not reachable
+ * from other machines.
+ *
+ * <p>The access token is refreshed in the background ahead of its expiry, so requests are served
+ * from memory and the whole host refreshes once per token lifetime. Kafka clients can fetch tokens
+ * from the broker either with {@link GcpLoginCallbackHandler} and the {@link
+ * GcpAuthConfig#BROKER_URL_CONFIG} option, or with Kafka's own
+ * <code>OAuthBearerLoginCallbackHandler</code> pointed at the broker.
+ *
+ * <p>Run the broker with:
+ *
+ * <pre>
+ *   java -cp managed-kafka-auth-login-handler.jar:... \
+ *     com.google.cloud.hosted.kafka.auth.GcpTokenBroker [option=value ...]
+ * </pre>
+ *
+ * <p>where the options are those of {@link GcpAuthConfig}.
+ */
+public final class GcpTokenBroker implements AutoCloseable {
+
+  /** The port of the broker, and of the Python local auth server, if none is configured. */
+  public static final int DEFAULT_PORT = 14293;
+
+  private static final String GOOGLE_CLOUD_PLATFORM_SCOPE =
+      "https://www.googleapis.com/auth/cloud-platform";
+  private static final String PRINCIPAL_ENVIRONMENT_VARIABLE =
+      "GOOGLE_MANAGED_KAFKA_AUTH_PRINCIPAL";
+  private static final byte[] UNAVAILABLE_RESPONSE =
+      "{\"error\":\"temporarily_unavailable\"}".getBytes(UTF_8);
+  private static final byte[] METHOD_NOT_ALLOWED_RESPONSE =
+      "{\"error\":\"invalid_request\"}".getBytes(UTF_8);
+
+  private final SharedCredentials credentials;
+  private final String configuredPrincipal;
+  private final TokenMetrics metrics;
+  private final ExecutorService executor;
+  private final HttpServer server;
+
+  @VisibleForTesting
+  GcpTokenBroker(SharedCredentials credentials, String principal, int port, int threads)
+      throws IOException {
+    this.credentials = credentials;
+    this.configuredPrincipal = principal;
+    this.server =
+        HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    AtomicInteger threadCount = new AtomicInteger();
+    this.executor =
+        Executors.newFixedThreadPool(
+            threads,
+            runnable -> {
+              String name = "gcp-kafka-auth-token-broker-" + threadCount.incrementAndGet();
+              return new Thread(runnable, name);
+            });
+    this.metrics = TokenMetrics.register("token-broker", "broker-" + getPort());
+    credentials.addMetrics(metrics);
+    server.createContext("/", this::handle);
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  /** Starts a broker with the given options, which are those of {@link GcpAuthConfig}. */
+  public static GcpTokenBroker start(Map<String, ?> options) throws IOException {
+    GcpAuthConfig config = new GcpAuthConfig(options);
+    int port = (int) config.getLong(GcpAuthConfig.BROKER_PORT_CONFIG, DEFAULT_PORT, 0, 65535);
+    int threads =
+        (int)
+            config.getLong(
+                GcpAuthConfig.BROKER_THREADS_CONFIG,
+                2L * Runtime.getRuntime().availableProcessors(),
+                1,
+                1024);
+    double refreshWindowFactor =
+        config.getDouble(
+            GcpAuthConfig.REFRESH_WINDOW_FACTOR_CONFIG,
+            GcpAuthConfig.DEFAULT_REFRESH_WINDOW_FACTOR,
+            0.5,
+            1.0);
+    double refreshWindowJitter =
+        config.getDouble(
+            GcpAuthConfig.REFRESH_WINDOW_JITTER_CONFIG,
+            GcpAuthConfig.DEFAULT_REFRESH_WINDOW_JITTER,
+            0.0,
+            0.25);
+    RefreshGuard.Policy refreshPolicy = RefreshGuard.Policy.fromConfig(config);
+    TokenRequestLimiter.configure(config);
+    CredentialSource source = CredentialSource.fromConfig(config);
+
+    SharedCredentials credentials =
+        SharedCredentials.acquire(
+            source.identity(),
+            GOOGLE_CLOUD_PLATFORM_SCOPE,
+            () -> source.load(GOOGLE_CLOUD_PLATFORM_SCOPE));
+    try {
+      credentials.setRefreshPolicy(refreshPolicy);
+      credentials.enableBackgroundRefresh(refreshWindowFactor, refreshWindowJitter);
+      return new GcpTokenBroker(
+          credentials, config.getString(GcpAuthConfig.PRINCIPAL_CONFIG), port, threads);
+    } catch (IOException | RuntimeException e) {
+      credentials.release();
+      throw e;
+    }
+  }
+
+  /** Returns the port the broker listens on. */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try (InputStream requestBody = exchange.getRequestBody()) {
+      // Kafka's token retriever posts a form, which the broker does not need.
+      while (requestBody.read() != -1) {}
+      String method = exchange.getRequestMethod();
+      if (!method.equals("GET") && !method.equals("POST")) {
+        send(exchange, 405, METHOD_NOT_ALLOWED_RESPONSE);
+        return;
+      }
+      byte[] response;
+      try {
+        response = tokenResponse();
+      } catch (IOException | RuntimeException e) {
+        send(exchange, 503, UNAVAILABLE_RESPONSE);
+        return;
+      }
+      send(exchange, 200, response);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private byte[] tokenResponse() throws IOException {
+    AccessToken token = credentials.getAccessToken(metrics);
+    String kafkaToken = credentials.encodeToken(token, getPrincipal());
+    long expiresAtMs = token.getExpirationTime().getTime();
+    long expiresInSeconds = Math.max(0, (expiresAtMs - System.currentTimeMillis()) / 1000);
+    metrics.recordTokenIssued(expiresAtMs);
+    // The Kafka token is base64url encoded, so it needs no escaping.
+    return new StringBuilder(kafkaToken.length() + 80)
+        .append("{\"access_token\":\"")
+        .append(kafkaToken)
+        .append("\",\"token_type\":\"Bearer\",\"expires_in\":")
+        .append(expiresInSeconds)
+        .append('}')
+        .toString()
+        .getBytes(UTF_8);
+  }
+
+  private String getPrincipal() throws IOException {
+    if (configuredPrincipal != null) {
+      return configuredPrincipal;
+    }
+    String envPrincipal = System.getenv(PRINCIPAL_ENVIRONMENT_VARIABLE);
+    if (envPrincipal != null && !envPrincipal.isEmpty()) {
+      return envPrincipal;
+    }
+    String principal = credentials.getPrincipal(GcpLoginCallbackHandler::resolvePrincipal);
+    if (principal == null || principal.isEmpty()) {
+      throw new IOException(
+          "Unable to determine principal for the broker credentials. Please set the "
+              + PRINCIPAL_ENVIRONMENT_VARIABLE
+              + " environment variable or the "
+              + GcpAuthConfig.PRINCIPAL_CONFIG
+              + " option.");
+    }
+    return principal;
+  }
+
+  private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  /** Stops accepting requests, waits briefly for in-flight ones, and releases the credentials. */
+  @Override
+  public void close() {
+    server.stop(1);
+    executor.shutdown();
+    credentials.removeMetrics(metrics);
+    metrics.close();
+    credentials.release();
+  }
+
+  /** Runs a broker with the options given as <code>option=value</code> arguments. */
+  public static void main(String[] args) throws IOException {
+    Map<String, String> options = new HashMap<>();
+    for (String arg : args) {
+      int separator = arg.indexOf('=');
+      if (separator <= 0) {
+        System.err.println("Expected option=value, got: " + arg);
+        System.exit(2);
+      }
+      options.put(arg.substring(0, separator), arg.substring(separator + 1));
+    }
+    GcpTokenBroker broker = start(options);
+    System.out.println(
+        "Serving on localhost:"
+            + broker.getPort()
+            + ". This is not accessible outside of the current machine.");
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches Kafka tokens from an ordered list of sources, hedging the ones that are slow to answer.
+ *
+ * <p>A token is requested from the first source. If that source fails, or has not answered within
+ * the hedge delay, the next source is asked as well, and so on down the list. The first valid token
+ * wins, and the requests still in flight are cancelled: those that have not started never do, and
+ * the others complete in the background, in which case their source keeps the token for later
+ * requests. They are not interrupted, since a source may be refreshing credentials that other
+ * clients share, and an interrupted refresh would count as a failure for all of them.
+ *
+ * <p>Sources keep their tokens until they near their expiry, so the first source usually answers
+ * right away and no hedge is sent.
+ */
+final class HedgedTokenSource implements AutoCloseable {
+
+  /** A source of Kafka tokens, such as a token broker or a set of Google credentials. */
+  interface Source {
+    /** Returns a token, recording cache hits and refreshes in the given metrics. */
+    KafkaToken getToken(TokenMetrics metrics) throws IOException;
+
+    /**
+     * Returns the kind of credentials of the source, such as <code>ComputeEngineCredentials
+     * </code>, or null if it is not known yet.
+     */
+    String credentialType();
+
+    /** Releases whatever the source holds. */
+    void close();
+  }
+
+  /** Runs the token requests. Its threads are daemon threads. */
+  private static final ExecutorService EXECUTOR =
+      Executors.newCachedThreadPool(
+          runnable -> {
+            Thread thread = new Thread(runnable, "gcp-kafka-auth-hedged-fetch");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final List<Source> sources;
+  private final long hedgeDelayMs;
+
+  HedgedTokenSource(List<Source> sources, long hedgeDelayMs) {
+    if (sources.isEmpty()) {
+      throw new IllegalArgumentException("No token sources");
+    }
+    this.sources = sources;
+    this.hedgeDelayMs = hedgeDelayMs;
+  }
+
+  /**
+   * Returns the first valid token of any source, and records on the span which kind of credentials
+   * it came from, and whether more than one source was asked.
+   *
+   * @throws IOException if every source fails, with the failures of the others suppressed
+   */
+  KafkaToken getToken(TokenMetrics metrics, TokenTracing.Span span) throws IOException {
+    CompletionService<KafkaToken> completion = new ExecutorCompletionService<>(EXECUTOR);
+    Map<Future<KafkaToken>, Source> started = new IdentityHashMap<>();
+    IOException failure = null;
+    try {
+      start(sources.get(0), metrics, completion, started);
+      int inFlight = 1;
+      while (inFlight > 0) {
+        boolean canHedge = started.size() < sources.size();
+        Future<KafkaToken> done =
+            canHedge ? completion.poll(hedgeDelayMs, TimeUnit.MILLISECONDS) : completion.take();
+        if (done == null) {
+          // The sources asked so far are too slow.
+          start(sources.get(started.size()), metrics, completion, started);
+          inFlight++;
+          continue;
+        }
+        inFlight--;
+        try {
+          KafkaToken token = validate(done.get());
+          Source winner = started.get(done);
+          String credentialType = winner.credentialType();
+          if (credentialType != null) {
+            span.setAttribute(TokenTracing.CREDENTIAL_TYPE_ATTRIBUTE, credentialType);
+          }
+          if (started.size() > 1) {
+            span.setAttribute(TokenTracing.HEDGED_ATTRIBUTE, true);
+          }
+          return token;
+        } catch (ExecutionException | IOException e) {
+          IOException sourceFailure = asIOException(e);
+          if (failure == null) {
+            failure = sourceFailure;
+          } else if (sourceFailure != failure) {
+            failure.addSuppressed(sourceFailure);
+          }
+          // No need to wait for the hedge delay to ask the next source.
+          if (started.size() < sources.size()) {
+            start(sources.get(started.size()), metrics, completion, started);
+            inFlight++;
+          }
+        }
+      }
+      throw failure;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a token");
+    } finally {
+      for (Future<KafkaToken> request : started.keySet()) {
+        request.cancel(false);
+      }
+    }
+  }
+
+  private static void start(
+      Source source,
+      TokenMetrics metrics,
+      CompletionService<KafkaToken> completion,
+      Map<Future<KafkaToken>, Source> started) {
+    started.put(
+        completion.submit(TokenTracing.get().wrap(() -> source.getToken(metrics))), source);
+  }
+
+  private static KafkaToken validate(KafkaToken token) throws IOException {
+    if (token.expiresAtMs <= System.currentTimeMillis()) {
+      throw new IOException("Token source returned an expired token");
+    }
+    return token;
+  }
+
+  private static IOException asIOException(Exception e) {
+    Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+    return cause instanceof IOException
+        ? (IOException) cause
+        : new IOException("Token source failed", cause);
+  }
+
+  @Override
+  public void close() {
+    for (Source source : sources) {
+      source.close();
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.JsonParser;
+import com.google.api.client.json.JsonToken;
+import com.google.api.client.json.gson.GsonFactory;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The claims of a JWT, such as an ID token or a Kafka token, read without verifying the signature.
+ *
+ * <p>Only the top-level string, number and boolean claims are read, with a streaming parser, so
+ * that reading a claim neither uses reflection nor loads the JSON web token classes of the Google
+ * API client.
+ */
+final class JwtPayload {
+  private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+
+  private final Map<String, Object> claims;
+
+  private JwtPayload(Map<String, Object> claims) {
+    this.claims = claims;
+  }
+
+  /** Reads the payload of a JWT in compact serialization. */
+  static JwtPayload decode(String jwt) throws IOException {
+    String[] segments = jwt.split("\\.", -1);
+    if (segments.length != 3) {
+      throw new IOException("Malformed JWT: expected 3 segments");
+    }
+    byte[] json;
+    try {
+      json = Base64.getUrlDecoder().decode(segments[1]);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Malformed JWT payload", e);
+    }
+    Map<String, Object> claims = new HashMap<>();
+    try (JsonParser parser = JSON_FACTORY.createJsonParser(new ByteArrayInputStream(json), UTF_8)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("Malformed JWT payload: expected a JSON object");
+      }
+      JsonToken token;
+      for (token = parser.nextToken(); token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+        String name = parser.getText();
+        JsonToken value = parser.nextToken();
+        if (value == null) {
+          break;
+        }
+        switch (value) {
+          case VALUE_STRING:
+            claims.put(name, parser.getText());
+            break;
+          case VALUE_NUMBER_INT:
+            claims.put(name, parser.getLongValue());
+            break;
+          case VALUE_NUMBER_FLOAT:
+            claims.put(name, parser.getDoubleValue());
+            break;
+          case VALUE_TRUE:
+            claims.put(name, Boolean.TRUE);
+            break;
+          case VALUE_FALSE:
+            claims.put(name, Boolean.FALSE);
+            break;
+          default:
+            // Objects and arrays, such as the audiences of some tokens, are not read.
+            parser.skipChildren();
+        }
+      }
+      if (token != JsonToken.END_OBJECT) {
+        throw new IOException("Malformed JWT payload: truncated JSON object");
+      }
+    } catch (IllegalArgumentException e) {
+      // Gson reports some malformed JSON this way.
+      throw new IOException("Malformed JWT payload", e);
+    }
+    return new JwtPayload(claims);
+  }
+
+  /** Returns the claim if it is a string, or null. */
+  String getString(String name) {
+    Object value = claims.get(name);
+    return value instanceof String ? (String) value : null;
+  }
+
+  /** Returns the claim if it is a number, or null. */
+  Number getNumber(String name) {
+    Object value = claims.get(name);
+    return value instanceof Number ? (Number) value : null;
+  }
+}
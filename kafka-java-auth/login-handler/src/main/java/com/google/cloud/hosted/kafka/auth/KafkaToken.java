@@ -0,0 +1,30 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+/** A Kafka token, with the claims the Kafka client needs. */
+final class KafkaToken {
+  final String value;
+  final long expiresAtMs;
+  final String principal;
+
+  KafkaToken(String value, long expiresAtMs, String principal) {
+    this.value = value;
+    this.expiresAtMs = expiresAtMs;
+    this.principal = principal;
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import com.google.auth.oauth2.GoogleCredentials;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Google credentials that are loaded on first use, or in the background once loading has been
+ * started.
+ *
+ * <p>Loading credentials can be slow: application default credentials probe the metadata server
+ * when no other credentials are found. Deferring the load keeps it out of client construction, and
+ * starting it in the background overlaps it with the rest of the client's startup. Concurrent
+ * callers wait on a single load. A failed load is retried by the next caller.
+ */
+final class LazyCredentials {
+
+  private final SharedCredentials.Loader loader;
+  private volatile GoogleCredentials credentials;
+  // Guarded by this.
+  private CompletableFuture<GoogleCredentials> loading;
+
+  LazyCredentials(SharedCredentials.Loader loader) {
+    this.loader = loader;
+  }
+
+  /** Wraps credentials that have already been loaded. */
+  static LazyCredentials of(GoogleCredentials credentials) {
+    LazyCredentials loaded = new LazyCredentials(() -> credentials);
+    loaded.credentials = credentials;
+    return loaded;
+  }
+
+  /** Starts loading the credentials on the given executor, unless they are loaded or loading. */
+  void startLoading(Executor executor) {
+    CompletableFuture<GoogleCredentials> load;
+    synchronized (this) {
+      if (credentials != null || loading != null) {
+        return;
+      }
+      load = new CompletableFuture<>();
+      loading = load;
+    }
+    executor.execute(() -> load(load));
+  }
+
+  /** Returns the credentials, loading them or waiting for an in-flight load if necessary. */
+  GoogleCredentials get() throws IOException {
+    GoogleCredentials loaded = credentials;
+    if (loaded != null) {
+      return loaded;
+    }
+    CompletableFuture<GoogleCredentials> load;
+    boolean loadHere = false;
+    synchronized (this) {
+      if (credentials != null) {
+        return credentials;
+      }
+      if (loading == null) {
+        loading = new CompletableFuture<>();
+        loadHere = true;
+      }
+      load = loading;
+    }
+    try (TokenTracing.Span span = TokenTracing.get().start(TokenTracing.LOAD_CREDENTIALS_SPAN)) {
+      if (loadHere) {
+        load(load);
+      }
+      try {
+        return load.join();
+      } catch (CompletionException e) {
+        span.recordFailure(e.getCause());
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        throw new IOException("Failed to create Google credentials", cause);
+      }
+    }
+  }
+
+  /** Returns the credentials if they have been loaded, or null without waiting otherwise. */
+  GoogleCredentials getIfLoaded() {
+    return credentials;
+  }
+
+  private void load(CompletableFuture<GoogleCredentials> load) {
+    try {
+      GoogleCredentials loaded = loader.load();
+      if (loaded == null) {
+        throw new IOException("No Google credentials were loaded");
+      }
+      credentials = loaded;
+      load.complete(loaded);
+    } catch (IOException | RuntimeException e) {
+      load.completeExceptionally(e);
+    } finally {
+      synchronized (this) {
+        loading = null;
+      }
+    }
+  }
+}
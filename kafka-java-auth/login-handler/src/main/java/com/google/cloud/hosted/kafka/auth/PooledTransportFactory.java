@@ -0,0 +1,182 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.apache.v2.ApacheHttpTransport;
+import com.google.auth.http.HttpTransportFactory;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.SocketConfig;
+
+/**
+ * Supplies the HTTP transport that credentials use to reach the metadata server, STS and the token
+ * endpoints.
+ *
+ * <p>The transport keeps a pool of persistent connections, so that the TCP and TLS handshakes are
+ * paid once rather than on every refresh, and bounds the connect and read timeouts of every
+ * request, including requests that ask for longer ones. A single transport is shared by every
+ * client in the process that is configured with the same settings.
+ *
+ * <p>Requests of all transports are paced by the process-wide {@link TokenRequestLimiter}.
+ */
+final class PooledTransportFactory implements HttpTransportFactory {
+
+  /** Connection settings, read from the client configuration. */
+  static final class Settings {
+    static final Settings DEFAULT =
+        new Settings(
+            GcpAuthConfig.DEFAULT_HTTP_CONNECT_TIMEOUT_MS,
+            GcpAuthConfig.DEFAULT_HTTP_READ_TIMEOUT_MS,
+            GcpAuthConfig.DEFAULT_HTTP_MAX_CONNECTIONS);
+
+    final int connectTimeoutMs;
+    final int readTimeoutMs;
+    final int maxConnections;
+
+    Settings(int connectTimeoutMs, int readTimeoutMs, int maxConnections) {
+      this.connectTimeoutMs = connectTimeoutMs;
+      this.readTimeoutMs = readTimeoutMs;
+      this.maxConnections = maxConnections;
+    }
+
+    static Settings fromConfig(GcpAuthConfig config) {
+      return new Settings(
+          (int)
+              config.getLong(
+                  GcpAuthConfig.HTTP_CONNECT_TIMEOUT_MS_CONFIG,
+                  GcpAuthConfig.DEFAULT_HTTP_CONNECT_TIMEOUT_MS,
+                  1,
+                  Integer.MAX_VALUE),
+          (int)
+              config.getLong(
+                  GcpAuthConfig.HTTP_READ_TIMEOUT_MS_CONFIG,
+                  GcpAuthConfig.DEFAULT_HTTP_READ_TIMEOUT_MS,
+                  1,
+                  Integer.MAX_VALUE),
+          (int)
+              config.getLong(
+                  GcpAuthConfig.HTTP_MAX_CONNECTIONS_CONFIG,
+                  GcpAuthConfig.DEFAULT_HTTP_MAX_CONNECTIONS,
+                  1,
+                  1024));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Settings)) {
+        return false;
+      }
+      Settings other = (Settings) o;
+      return connectTimeoutMs == other.connectTimeoutMs
+          && readTimeoutMs == other.readTimeoutMs
+          && maxConnections == other.maxConnections;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(connectTimeoutMs, readTimeoutMs, maxConnections);
+    }
+  }
+
+  // Idle connections are closed after this long, before servers are likely to drop them.
+  private static final long MAX_IDLE_MS = 60 * 1000L;
+
+  private static final ConcurrentMap<Settings, PooledTransportFactory> FACTORIES =
+      new ConcurrentHashMap<>();
+
+  private final Settings settings;
+  // Built on first use, so that configuring a client opens no connection pool.
+  private final Supplier<HttpTransport> transport;
+
+  private PooledTransportFactory(Settings settings) {
+    this.settings = settings;
+    this.transport = Suppliers.memoize(() -> newTransport(settings));
+  }
+
+  /** Returns the shared factory for the given settings. */
+  static PooledTransportFactory get(Settings settings) {
+    return FACTORIES.computeIfAbsent(settings, PooledTransportFactory::new);
+  }
+
+  Settings settings() {
+    return settings;
+  }
+
+  @Override
+  public HttpTransport create() {
+    return transport.get();
+  }
+
+  static HttpTransport newTransport(Settings settings) {
+    return newTransport(settings, TokenRequestLimiter.SHARED);
+  }
+
+  @VisibleForTesting
+  static HttpTransport newTransport(Settings settings, TokenRequestLimiter limiter) {
+    RequestConfig defaults =
+        RequestConfig.custom()
+            .setConnectTimeout(settings.connectTimeoutMs)
+            .setConnectionRequestTimeout(settings.connectTimeoutMs)
+            .setSocketTimeout(settings.readTimeoutMs)
+            .build();
+    return new ApacheHttpTransport(
+        ApacheHttpTransport.newDefaultHttpClientBuilder()
+            .setMaxConnTotal(settings.maxConnections)
+            .setMaxConnPerRoute(settings.maxConnections)
+            .setDefaultRequestConfig(defaults)
+            .setDefaultSocketConfig(
+                SocketConfig.custom().setSoTimeout(settings.readTimeoutMs).build())
+            .evictIdleConnections(MAX_IDLE_MS, TimeUnit.MILLISECONDS)
+            // google-http-client sets its own timeouts of 20 seconds on every request. Runs before
+            // a connection is leased, so the bounds apply to connecting and reading alike.
+            .addInterceptorFirst(
+                (HttpRequestInterceptor)
+                    (request, context) -> {
+                      HttpClientContext clientContext = HttpClientContext.adapt(context);
+                      RequestConfig requested = clientContext.getRequestConfig();
+                      clientContext.setRequestConfig(
+                          RequestConfig.copy(requested)
+                              .setConnectTimeout(
+                                  bound(requested.getConnectTimeout(), settings.connectTimeoutMs))
+                              .setConnectionRequestTimeout(
+                                  bound(
+                                      requested.getConnectionRequestTimeout(),
+                                      settings.connectTimeoutMs))
+                              .setSocketTimeout(
+                                  bound(requested.getSocketTimeout(), settings.readTimeoutMs))
+                              .build());
+                    })
+            // Every request takes a permit of the process-wide rate limit before it is sent, and
+            // fails without a connection if it is shed.
+            .addInterceptorLast((HttpRequestInterceptor) (request, context) -> limiter.acquire())
+            .build());
+  }
+
+  // Timeouts of 0 or less mean no timeout, or the default of the client.
+  private static int bound(int requested, int max) {
+    return requested <= 0 ? max : Math.min(requested, max);
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import com.google.auth.oauth2.AccessToken;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Limits how often a failing token refresh is retried.
+ *
+ * <p>While refreshes succeed, every refresh is allowed. After a failure, only a single refresh is
+ * allowed at a time, and only once an exponentially growing, jittered backoff has elapsed, so that
+ * many clients do not retry a struggling endpoint in lockstep. After {@link
+ * Policy#failureThreshold} consecutive failures the circuit opens: no refresh is attempted for the
+ * maximum backoff, after which a single trial refresh decides whether it closes again.
+ *
+ * <p>While refreshes fail, the last access token keeps being served for up to the grace period,
+ * as long as it has not expired.
+ *
+ * <p>A refresh whose request was shed by the {@link TokenRequestLimiter} never reached the
+ * endpoint, and says nothing about its health. It is not counted as a failure, so a burst of
+ * requests does not back off or open the circuit for healthy credentials, but the last token is
+ * served until the next refresh completes.
+ */
+final class RefreshGuard {
+
+  /** Retry settings, read from the client configuration. */
+  static final class Policy {
+    static final Policy DEFAULT =
+        new Policy(
+            GcpAuthConfig.DEFAULT_RETRY_BACKOFF_MS,
+            GcpAuthConfig.DEFAULT_RETRY_BACKOFF_MAX_MS,
+            GcpAuthConfig.DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD,
+            GcpAuthConfig.DEFAULT_TOKEN_GRACE_PERIOD_MS);
+
+    final long backoffMs;
+    final long maxBackoffMs;
+    final int failureThreshold;
+    final long gracePeriodMs;
+
+    Policy(long backoffMs, long maxBackoffMs, int failureThreshold, long gracePeriodMs) {
+      this.backoffMs = backoffMs;
+      this.maxBackoffMs = Math.max(backoffMs, maxBackoffMs);
+      this.failureThreshold = failureThreshold;
+      this.gracePeriodMs = gracePeriodMs;
+    }
+
+    static Policy fromConfig(GcpAuthConfig config) {
+      return new Policy(
+          config.getLong(
+              GcpAuthConfig.RETRY_BACKOFF_MS_CONFIG,
+              GcpAuthConfig.DEFAULT_RETRY_BACKOFF_MS,
+              0,
+              Long.MAX_VALUE),
+          config.getLong(
+              GcpAuthConfig.RETRY_BACKOFF_MAX_MS_CONFIG,
+              GcpAuthConfig.DEFAULT_RETRY_BACKOFF_MAX_MS,
+              0,
+              Long.MAX_VALUE),
+          (int)
+              config.getLong(
+                  GcpAuthConfig.CIRCUIT_BREAKER_FAILURE_THRESHOLD_CONFIG,
+                  GcpAuthConfig.DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD,
+                  1,
+                  Integer.MAX_VALUE),
+          config.getLong(
+              GcpAuthConfig.TOKEN_GRACE_PERIOD_MS_CONFIG,
+              GcpAuthConfig.DEFAULT_TOKEN_GRACE_PERIOD_MS,
+              0,
+              Long.MAX_VALUE));
+    }
+  }
+
+  // Tokens closer than this to their expiry are not served from the grace period, so that they
+  // cannot expire while a request is in flight.
+  private static final long MIN_GRACE_LIFETIME_MS = 10 * 1000L;
+  // Backoffs are randomly spread by up to this fraction in either direction.
+  private static final double BACKOFF_JITTER = 0.2;
+
+  private final Random random;
+  // What is being retried, as reported in rejections.
+  private final String action;
+  private volatile Policy policy = Policy.DEFAULT;
+  // Guarded by this.
+  private int consecutiveFailures;
+  private long failingSinceMs;
+  private long nextAttemptAtMs;
+  private boolean attemptInFlight;
+  private Throwable lastFailure;
+  private boolean lastAttemptShed;
+
+  RefreshGuard() {
+    this("refreshing the Google access token");
+  }
+
+  /** Creates a guard for the given action, such as "resolving the principal". */
+  RefreshGuard(String action) {
+    this(null, action);
+  }
+
+  @VisibleForTesting
+  RefreshGuard(Random random) {
+    this(random, "refreshing the Google access token");
+  }
+
+  private RefreshGuard(Random random, String action) {
+    this.random = random;
+    this.action = action;
+  }
+
+  /** Replaces the retry settings. The state of the current failures is kept. */
+  void setPolicy(Policy policy) {
+    this.policy = policy;
+  }
+
+  /**
+   * Returns whether a refresh may be attempted now. If so, the caller must report its outcome with
+   * {@link #onSuccess()} or {@link #onFailure}.
+   */
+  synchronized boolean tryAcquire(long nowMs) {
+    if (consecutiveFailures == 0) {
+      return true;
+    }
+    if (attemptInFlight || nowMs < nextAttemptAtMs) {
+      return false;
+    }
+    attemptInFlight = true;
+    return true;
+  }
+
+  synchronized void onSuccess() {
+    consecutiveFailures = 0;
+    attemptInFlight = false;
+    lastFailure = null;
+    lastAttemptShed = false;
+  }
+
+  /**
+   * Records a failed refresh and returns how long to wait before the next attempt. A refresh that
+   * was shed is not counted, and the next attempt may follow after the initial backoff.
+   */
+  synchronized long onFailure(Throwable failure, long nowMs) {
+    attemptInFlight = false;
+    if (TokenRequestLimiter.isShed(failure)) {
+      lastAttemptShed = true;
+      return Math.max(policy.backoffMs, millisUntilNextAttempt(nowMs));
+    }
+    lastAttemptShed = false;
+    if (consecutiveFailures == 0) {
+      failingSinceMs = nowMs;
+    }
+    consecutiveFailures++;
+    lastFailure = failure;
+    long delayMs = backoffMillis(consecutiveFailures);
+    nextAttemptAtMs = nowMs + delayMs;
+    return delayMs;
+  }
+
+  /** Returns how long to wait before a refresh may be attempted, or zero if it may be now. */
+  synchronized long millisUntilNextAttempt(long nowMs) {
+    return consecutiveFailures == 0 ? 0 : Math.max(0, nextAttemptAtMs - nowMs);
+  }
+
+  synchronized boolean isCircuitOpen() {
+    return consecutiveFailures >= policy.failureThreshold;
+  }
+
+  /** Returns whether the given token may still be served while refreshes are failing. */
+  boolean canServe(AccessToken token, long nowMs) {
+    if (token == null) {
+      return false;
+    }
+    return canServe(
+        token.getExpirationTime() == null ? Long.MAX_VALUE : token.getExpirationTime().getTime(),
+        nowMs);
+  }
+
+  synchronized boolean canServe(long expiresAtMs, long nowMs) {
+    return (lastAttemptShed
+            || consecutiveFailures > 0 && nowMs - failingSinceMs <= policy.gracePeriodMs)
+        && (expiresAtMs == Long.MAX_VALUE || expiresAtMs - nowMs > MIN_GRACE_LIFETIME_MS);
+  }
+
+  /** Returns the exception reported to callers that are not allowed to refresh. */
+  synchronized IOException rejection(long nowMs) {
+    return new IOException(
+        String.format(
+            "Not %s for another %d ms after %d consecutive failures",
+            action, Math.max(0, nextAttemptAtMs - nowMs), consecutiveFailures),
+        lastFailure);
+  }
+
+  // Must be called while holding the lock on this.
+  private long backoffMillis(int failures) {
+    Policy current = policy;
+    if (failures >= current.failureThreshold) {
+      // The circuit is open.
+      return current.maxBackoffMs;
+    }
+    double backoff = current.backoffMs * Math.pow(2, failures - 1);
+    double jitter = 1 + BACKOFF_JITTER * (2 * nextRandom() - 1);
+    return (long) Math.min(current.maxBackoffMs, backoff * jitter);
+  }
+
+  private double nextRandom() {
+    return random == null ? ThreadLocalRandom.current().nextDouble() : random.nextDouble();
+  }
+}
@@ -0,0 +1,685 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A process-wide, reference-counted cache of scoped Google credentials.
+ *
+ * <p>Kafka instantiates a callback handler for every producer, consumer and admin client. Sharing
+ * the underlying credentials means that all of them reuse a single access token, which is refreshed
+ * once for the whole JVM instead of once per client. Entries are keyed by credential identity and
+ * scope, so there is one entry per principal. The encoded Kafka token is shared as well. Schema
+ * Registry credential providers use the same entries, so a client that talks to both Kafka and
+ * Schema Registry refreshes one token, and warming up an entry fetches that token for both.
+ *
+ * <p>When the last reference to an entry is released, the entry is kept idle, with its token, for
+ * clients that connect again as the same principal. At most {@link #setMaxIdle} idle entries are
+ * kept, and the least recently released ones are dropped first; entries in use are never dropped.
+ * Idle entries are not refreshed in the background.
+ *
+ * <p>Optionally, the access token can be refreshed ahead of its expiry by a background thread, so
+ * that callers only ever read an already valid token.
+ *
+ * <p>Failed refreshes are retried with backoff, and the last token keeps being served for a
+ * grace period while it is still valid; see {@link RefreshGuard}.
+ *
+ * <p>Optionally, refreshed tokens are also kept on disk for later processes, and a token kept by an
+ * earlier process is served while it is valid for a while; see {@link TokenFileCache}.
+ *
+ * <p>Refreshes of the shared token, whoever triggers them, are recorded in the metrics of every
+ * client that uses the credentials.
+ */
+final class SharedCredentials {
+
+  /** Loads the credentials backing a cache entry the first time they are needed. */
+  interface Loader {
+    GoogleCredentials load() throws IOException;
+  }
+
+  /** Determines the principal name of the credentials, or returns null if it is unknown. */
+  interface PrincipalResolver {
+    String resolve(GoogleCredentials credentials) throws IOException;
+  }
+
+  private static final Map<Key, SharedCredentials> CACHE = new HashMap<>();
+  // The entries without references, least recently released first. Guarded by CACHE.
+  private static final LinkedHashMap<Key, SharedCredentials> IDLE = new LinkedHashMap<>();
+  // Guarded by CACHE.
+  private static int maxIdle = GcpAuthConfig.DEFAULT_CREDENTIALS_POOL_MAX_IDLE;
+
+  private static final Duration MIN_BACKGROUND_RETRY_DELAY = Duration.ofSeconds(1);
+  // Tokens with less remaining lifetime than this are refreshed inline even when background
+  // refresh is enabled, which covers background refreshes that have been failing.
+  private static final Duration MIN_REMAINING_LIFETIME = Duration.ofMinutes(5);
+  // Background refreshes happen at least this long before the token expires, whatever the refresh
+  // window, so that they finish before callers fall back to refreshing inline.
+  private static final Duration MIN_BACKGROUND_REFRESH_AHEAD =
+      MIN_REMAINING_LIFETIME.plusMinutes(1);
+
+  /** Runs token refreshes that happen off the request path. Its threads are daemon threads. */
+  static final ScheduledExecutorService REFRESH_EXECUTOR =
+      Executors.newSingleThreadScheduledExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "gcp-kafka-auth-token-refresh");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  /**
+   * Loads credentials, and fetches the tokens of Schema Registry clients, in the background.
+   * Separate from the refresh executor, so that a refresh waiting on a load never waits on a task
+   * queued behind itself, and a slow fetch does not hold up the refreshes queued there.
+   */
+  static final ExecutorService LOAD_EXECUTOR =
+      Executors.newCachedThreadPool(
+          runnable -> {
+            Thread thread = new Thread(runnable, "gcp-kafka-auth-credentials-loader");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  // Null for credentials that are not registered in the cache.
+  private final Key key;
+  private final LazyCredentials credentials;
+  // Guarded by CACHE.
+  private int references;
+  private final Object principalLock = new Object();
+  private volatile String principal;
+  private volatile boolean backgroundRefreshEnabled;
+  // Guarded by this.
+  private ScheduledFuture<?> backgroundRefresh;
+  private double refreshWindowFactor;
+  private double refreshWindowJitter;
+  private final CopyOnWriteArrayList<TokenMetrics> metrics = new CopyOnWriteArrayList<>();
+  // The most recent token recorded as a refresh, so that a refresh observed by several concurrent
+  // callers is only recorded once.
+  private final AtomicReference<AccessToken> recordedToken = new AtomicReference<>();
+  // When the recorded token was refreshed, which stands in for its issue time.
+  private volatile long recordedAtMillis;
+  private final RefreshGuard refreshGuard = new RefreshGuard();
+  // Principal lookups may need a network round trip too, and back off the same way.
+  private final RefreshGuard principalGuard =
+      new RefreshGuard("resolving the principal of the Google credentials");
+  private final KafkaTokenEncoder tokenEncoder = new KafkaTokenEncoder();
+  private volatile TokenFileCache fileCache;
+  // A token read from the file cache, served until it nears its expiry or the credentials have a
+  // token of their own.
+  private volatile AccessToken persistedToken;
+  // Serializes inline refreshes, so that callers waiting on a refresh see its outcome.
+  private final Object refreshLock = new Object();
+  // Guarded by this.
+  private CompletableFuture<Void> warmUp;
+
+  private SharedCredentials(Key key, LazyCredentials credentials) {
+    this.key = key;
+    this.credentials = credentials;
+  }
+
+  /**
+   * Returns the shared credentials for the given identity and scope. If no other client holds a
+   * reference to them, they are loaded by the given loader on first use. Every call must be paired
+   * with a call to {@link #release()}.
+   */
+  static SharedCredentials acquire(String identity, String scope, Loader loader) {
+    Key key = new Key(identity, scope);
+    synchronized (CACHE) {
+      SharedCredentials shared = CACHE.get(key);
+      if (shared == null) {
+        shared = new SharedCredentials(key, new LazyCredentials(loader));
+        CACHE.put(key, shared);
+      } else if (shared.references == 0) {
+        IDLE.remove(key);
+      }
+      shared.references++;
+      return shared;
+    }
+  }
+
+  /**
+   * Sets how many entries without references are kept. Entries beyond the limit are dropped right
+   * away, least recently released first.
+   */
+  static void setMaxIdle(int max) {
+    synchronized (CACHE) {
+      maxIdle = max;
+      dropExcessIdle();
+    }
+  }
+
+  // Must be called while holding the lock on CACHE.
+  private static void dropExcessIdle() {
+    Iterator<SharedCredentials> eldest = IDLE.values().iterator();
+    while (IDLE.size() > maxIdle) {
+      CACHE.remove(eldest.next().key);
+      eldest.remove();
+    }
+  }
+
+  /** Wraps credentials that are owned by a single client and never shared. */
+  static SharedCredentials unshared(GoogleCredentials credentials) {
+    return new SharedCredentials(null, LazyCredentials.of(credentials));
+  }
+
+  /** Starts loading the credentials in the background, if they are not loaded yet. */
+  void startLoading() {
+    credentials.startLoading(LOAD_EXECUTOR);
+  }
+
+  /** Returns the credentials, loading them or waiting for them to be loaded if necessary. */
+  GoogleCredentials getCredentials() throws IOException {
+    return credentials.get();
+  }
+
+  /** Returns the credentials if they have been loaded, or null without waiting otherwise. */
+  GoogleCredentials getCredentialsIfLoaded() {
+    return credentials.getIfLoaded();
+  }
+
+  /**
+   * Returns the principal name of the credentials. The principal is resolved once and remembered
+   * for as long as the credentials are cached, since resolving it may require a network round trip.
+   * Unknown principals are not remembered. Failed lookups are retried with backoff, like refreshes.
+   */
+  String getPrincipal(PrincipalResolver resolver) throws IOException {
+    String resolved = principal;
+    if (resolved == null) {
+      synchronized (principalLock) {
+        resolved = principal;
+        if (resolved == null) {
+          if (!principalGuard.tryAcquire(System.currentTimeMillis())) {
+            throw principalGuard.rejection(System.currentTimeMillis());
+          }
+          try {
+            resolved = resolvePrincipal(resolver);
+          } catch (IOException | RuntimeException e) {
+            principalGuard.onFailure(e, System.currentTimeMillis());
+            throw e;
+          }
+          principalGuard.onSuccess();
+          if (resolved != null && !resolved.isEmpty()) {
+            principal = resolved;
+          }
+        }
+      }
+    }
+    return resolved;
+  }
+
+  private String resolvePrincipal(PrincipalResolver resolver) throws IOException {
+    try (TokenTracing.Span span = TokenTracing.get().start(TokenTracing.RESOLVE_PRINCIPAL_SPAN)) {
+      try {
+        return resolver.resolve(credentials.get());
+      } catch (IOException | RuntimeException e) {
+        span.recordFailure(e);
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Sets how failed refreshes are retried. The credentials are shared, so the last client to be
+   * configured determines the policy for all of them.
+   */
+  void setRefreshPolicy(RefreshGuard.Policy policy) {
+    refreshGuard.setPolicy(policy);
+    principalGuard.setPolicy(policy);
+  }
+
+  /**
+   * Keeps refreshed tokens in the given file cache, and serves the token already in it, if any,
+   * until it nears its expiry or the credentials have a token of their own. The principal kept with
+   * the token is used as well, so that neither needs the credentials to be loaded. Does nothing if
+   * a cache is already in use.
+   */
+  void useFileCache(TokenFileCache cache) {
+    synchronized (principalLock) {
+      if (fileCache != null) {
+        return;
+      }
+      fileCache = cache;
+      TokenFileCache.CachedToken cached = cache.read();
+      if (cached != null) {
+        persistedToken = cached.token;
+        if (principal == null && cached.principal != null) {
+          principal = cached.principal;
+        }
+      }
+    }
+  }
+
+  /** Records refreshes of these credentials in the given metrics, until they are removed. */
+  void addMetrics(TokenMetrics clientMetrics) {
+    metrics.add(clientMetrics);
+  }
+
+  void removeMetrics(TokenMetrics clientMetrics) {
+    metrics.remove(clientMetrics);
+  }
+
+  AccessToken getAccessToken() throws IOException {
+    return getAccessToken(TokenMetrics.NONE);
+  }
+
+  /**
+   * Returns a valid access token. When background refresh is enabled and the current token is
+   * still valid, the token is returned without touching the credentials' refresh lock. Otherwise,
+   * the token is refreshed first if it has expired. Refreshes are serialized, so that callers that
+   * waited on a failed refresh back off instead of retrying it right away. If refreshing fails, or
+   * is backing off from earlier failures, the current token is returned for as long as the grace
+   * period allows. Tokens returned without a refresh are recorded as cache hits of the caller, and
+   * on the current span.
+   */
+  AccessToken getAccessToken(TokenMetrics caller) throws IOException {
+    AccessToken persisted = persistedToken;
+    if (persisted != null) {
+      GoogleCredentials loaded = this.credentials.getIfLoaded();
+      if ((loaded == null || loaded.getAccessToken() == null)
+          && remainingLifetimeMillis(persisted) > MIN_REMAINING_LIFETIME.toMillis()) {
+        recordCacheHit(caller);
+        return persisted;
+      }
+      persistedToken = null;
+    }
+    GoogleCredentials credentials = this.credentials.get();
+    AccessToken token = credentials.getAccessToken();
+    if (backgroundRefreshEnabled
+        && token != null
+        && remainingLifetimeMillis(token) > MIN_REMAINING_LIFETIME.toMillis()) {
+      recordCacheHit(caller);
+      return token;
+    }
+    synchronized (refreshLock) {
+      // Another caller may have refreshed the token, or failed to, while this one waited.
+      token = credentials.getAccessToken();
+      if (!refreshGuard.tryAcquire(System.currentTimeMillis())) {
+        if (serveDuringFailure(token, caller)) {
+          return token;
+        }
+        throw refreshGuard.rejection(System.currentTimeMillis());
+      }
+      long startNanos = System.nanoTime();
+      Instant startTime = Instant.now();
+      try {
+        credentials.refreshIfExpired();
+        if (credentials.getAccessToken() == token
+            && (token == null || remainingLifetimeMillis(token) <= 0)) {
+          // Nothing was refreshed although the token is no good, which is not a success.
+          throw new IOException("The Google credentials did not return a valid access token");
+        }
+      } catch (IOException | RuntimeException e) {
+        TokenTracing.get().record(TokenTracing.REFRESH_SPAN, startTime, e);
+        refreshGuard.onFailure(e, System.currentTimeMillis());
+        recordRefreshFailure();
+        if (serveDuringFailure(token, caller)) {
+          return token;
+        }
+        TokenTracing.get().recordCacheHit(false);
+        throw e;
+      }
+      refreshGuard.onSuccess();
+      AccessToken refreshed = credentials.getAccessToken();
+      if (refreshed == token) {
+        recordCacheHit(caller);
+      } else {
+        // Whether the credentials refresh is only known once they return.
+        TokenTracing.get().record(TokenTracing.REFRESH_SPAN, startTime, null);
+        TokenTracing.get().recordCacheHit(false);
+        recordRefresh(refreshed, System.nanoTime() - startNanos);
+      }
+      return refreshed;
+    }
+  }
+
+  /**
+   * Returns an access token that is valid for longer than the given time. If the current token is
+   * not, the credentials are refreshed right away, rather than once the credentials consider the
+   * token expired, and callers that need a fresher token at the same time share that refresh. This
+   * is how clients that refresh ahead of the expiry on a schedule of their own, such as the Schema
+   * Registry credential provider, share the token of the login callback handlers: whichever
+   * refreshes first, the others find a token they can use. A token that was refreshed with no
+   * more than the given time left is not refreshed again before half of its lifetime has passed,
+   * see {@link #refreshAheadAtMillis(long, long, long)}, so that a given time longer than the
+   * token lifetime does not refresh the token on every call. Backoff and the grace period apply as
+   * for {@link #getAccessToken(TokenMetrics)}.
+   */
+  AccessToken getAccessToken(TokenMetrics caller, long minRemainingMillis) throws IOException {
+    AccessToken persisted = persistedToken;
+    if (persisted != null) {
+      GoogleCredentials loaded = this.credentials.getIfLoaded();
+      if ((loaded == null || loaded.getAccessToken() == null)
+          && remainingLifetimeMillis(persisted) > minRemainingMillis) {
+        recordCacheHit(caller);
+        return persisted;
+      }
+      persistedToken = null;
+    }
+    GoogleCredentials credentials = this.credentials.get();
+    AccessToken token = credentials.getAccessToken();
+    if (token != null
+        && System.currentTimeMillis() < refreshAheadAtMillis(token, minRemainingMillis)) {
+      recordCacheHit(caller);
+      return token;
+    }
+    synchronized (refreshLock) {
+      // Another caller may have refreshed the token while this one waited.
+      token = credentials.getAccessToken();
+      if (token != null
+          && System.currentTimeMillis() < refreshAheadAtMillis(token, minRemainingMillis)) {
+        recordCacheHit(caller);
+        return token;
+      }
+      if (!refreshGuard.tryAcquire(System.currentTimeMillis())) {
+        if (serveDuringFailure(token, caller)) {
+          return token;
+        }
+        throw refreshGuard.rejection(System.currentTimeMillis());
+      }
+      long startNanos = System.nanoTime();
+      Instant startTime = Instant.now();
+      try {
+        credentials.refresh();
+      } catch (IOException | RuntimeException e) {
+        TokenTracing.get().record(TokenTracing.REFRESH_SPAN, startTime, e);
+        refreshGuard.onFailure(e, System.currentTimeMillis());
+        recordRefreshFailure();
+        if (serveDuringFailure(token, caller)) {
+          return token;
+        }
+        TokenTracing.get().recordCacheHit(false);
+        throw e;
+      }
+      TokenTracing.get().record(TokenTracing.REFRESH_SPAN, startTime, null);
+      TokenTracing.get().recordCacheHit(false);
+      refreshGuard.onSuccess();
+      AccessToken refreshed = credentials.getAccessToken();
+      recordRefresh(refreshed, System.nanoTime() - startNanos);
+      return refreshed;
+    }
+  }
+
+  /**
+   * Fetches an access token in the background, unless that has already been started for these
+   * credentials, so that the first client request finds a token. Failures are left to the first
+   * request, which retries them.
+   */
+  synchronized CompletableFuture<Void> warmUp() {
+    if (warmUp == null) {
+      warmUp =
+          CompletableFuture.runAsync(
+              () -> {
+                try {
+                  getAccessToken();
+                } catch (IOException e) {
+                  throw new CompletionException(e);
+                }
+              },
+              LOAD_EXECUTOR);
+    }
+    return warmUp;
+  }
+
+  // Returns whether the token may be served while refreshes are failing.
+  private boolean serveDuringFailure(AccessToken token, TokenMetrics caller) {
+    if (refreshGuard.canServe(token, System.currentTimeMillis())) {
+      recordCacheHit(caller);
+      return true;
+    }
+    return false;
+  }
+
+  private static void recordCacheHit(TokenMetrics caller) {
+    caller.recordCacheHit();
+    TokenTracing.get().recordCacheHit(true);
+  }
+
+  private void recordRefresh(AccessToken refreshed, long latencyNanos) {
+    if (recordedToken.getAndSet(refreshed) != refreshed) {
+      recordedAtMillis = System.currentTimeMillis();
+      for (TokenMetrics clientMetrics : metrics) {
+        clientMetrics.recordRefresh(latencyNanos);
+      }
+      TokenFileCache cache = fileCache;
+      if (cache != null) {
+        cache.write(refreshed, principal);
+      }
+    }
+  }
+
+  private void recordRefreshFailure() {
+    for (TokenMetrics clientMetrics : metrics) {
+      clientMetrics.recordRefreshFailure();
+    }
+  }
+
+  /**
+   * Starts refreshing the access token in the background, once the given fraction of its lifetime
+   * plus a random jitter has elapsed, but never later than a few minutes before it expires. The
+   * first refresh happens immediately. Does nothing if background refresh is already running for
+   * these credentials.
+   */
+  synchronized void enableBackgroundRefresh(double windowFactor, double windowJitter) {
+    if (backgroundRefreshEnabled) {
+      return;
+    }
+    this.refreshWindowFactor = windowFactor;
+    this.refreshWindowJitter = windowJitter;
+    this.backgroundRefreshEnabled = true;
+    scheduleBackgroundRefresh(0);
+  }
+
+  private void refreshInBackground() {
+    long nowMillis = System.currentTimeMillis();
+    if (!refreshGuard.tryAcquire(nowMillis)) {
+      // Backing off, or another caller is attempting a refresh.
+      rescheduleBackgroundRefresh(
+          Math.max(
+              refreshGuard.millisUntilNextAttempt(nowMillis),
+              MIN_BACKGROUND_RETRY_DELAY.toMillis()));
+      return;
+    }
+    long delayMillis;
+    long startNanos = System.nanoTime();
+    Instant startTime = Instant.now();
+    try {
+      GoogleCredentials credentials = this.credentials.get();
+      credentials.refresh();
+      TokenTracing.get().record(TokenTracing.REFRESH_SPAN, startTime, null);
+      refreshGuard.onSuccess();
+      AccessToken token = credentials.getAccessToken();
+      recordRefresh(token, System.nanoTime() - startNanos);
+      delayMillis =
+          nextRefreshDelayMillis(
+              remainingLifetimeMillis(token),
+              refreshWindowFactor,
+              refreshWindowJitter,
+              ThreadLocalRandom.current().nextDouble(),
+              MIN_BACKGROUND_REFRESH_AHEAD.toMillis());
+    } catch (IOException | RuntimeException e) {
+      TokenTracing.get().record(TokenTracing.REFRESH_SPAN, startTime, e);
+      recordRefreshFailure();
+      // Callers fall back to refreshing inline if the token gets too close to its expiry.
+      delayMillis = refreshGuard.onFailure(e, System.currentTimeMillis());
+    }
+    rescheduleBackgroundRefresh(delayMillis);
+  }
+
+  private synchronized void rescheduleBackgroundRefresh(long delayMillis) {
+    if (backgroundRefreshEnabled) {
+      scheduleBackgroundRefresh(delayMillis);
+    }
+  }
+
+  // Must be called while holding the lock on this.
+  private void scheduleBackgroundRefresh(long delayMillis) {
+    backgroundRefresh =
+        REFRESH_EXECUTOR.schedule(this::refreshInBackground, delayMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private synchronized void disableBackgroundRefresh() {
+    backgroundRefreshEnabled = false;
+    if (backgroundRefresh != null) {
+      backgroundRefresh.cancel(false);
+      backgroundRefresh = null;
+    }
+  }
+
+  /**
+   * Returns the delay until the next background refresh of a token with the given remaining
+   * lifetime: the window factor plus up to the jitter fraction of the lifetime, but no later than
+   * the given time before expiry. A token with too little lifetime left for that is refreshed once
+   * half of it has passed.
+   */
+  @VisibleForTesting
+  static long nextRefreshDelayMillis(
+      long lifetimeMillis,
+      double windowFactor,
+      double windowJitter,
+      double random,
+      long minRemainingMillis) {
+    long delayMillis = (long) (lifetimeMillis * (windowFactor + windowJitter * random));
+    long latestMillis = Math.max(lifetimeMillis - minRemainingMillis, lifetimeMillis / 2);
+    return Math.max(0, Math.min(delayMillis, latestMillis));
+  }
+
+  /**
+   * Returns when a token is refreshed ahead of its expiry: once it has no more than the given
+   * lifetime left, but not before half of the lifetime it was issued with has passed. A token that
+   * is issued with less than the given lifetime left is thus not refreshed again right away, which
+   * would likely return a token that does not last longer either.
+   */
+  static long refreshAheadAtMillis(
+      long issuedAtMillis, long expiresAtMillis, long minRemainingMillis) {
+    if (expiresAtMillis == Long.MAX_VALUE) {
+      return Long.MAX_VALUE;
+    }
+    return Math.max(
+        issuedAtMillis + (expiresAtMillis - issuedAtMillis) / 2,
+        expiresAtMillis - minRemainingMillis);
+  }
+
+  // Tokens that were not refreshed through this entry, such as those refreshed by the owner of the
+  // credentials, are taken to be issued before they had the given lifetime left.
+  private long refreshAheadAtMillis(AccessToken token, long minRemainingMillis) {
+    if (token.getExpirationTime() == null) {
+      return Long.MAX_VALUE;
+    }
+    long expiresAtMillis = token.getExpirationTime().getTime();
+    long refreshedAtMillis = recordedAtMillis;
+    if (recordedToken.get() != token) {
+      return expiresAtMillis - minRemainingMillis;
+    }
+    return refreshAheadAtMillis(refreshedAtMillis, expiresAtMillis, minRemainingMillis);
+  }
+
+  private static long remainingLifetimeMillis(AccessToken token) {
+    if (token.getExpirationTime() == null) {
+      return Long.MAX_VALUE;
+    }
+    return token.getExpirationTime().getTime() - System.currentTimeMillis();
+  }
+
+  /**
+   * Returns the Kafka token for the given access token and subject. Clients sharing these
+   * credentials share the encoding too, so a rotated token is encoded once for all of them.
+   */
+  String encodeToken(AccessToken token, String subject) {
+    return tokenEncoder.encode(token, subject);
+  }
+
+  /** Releases a reference obtained with {@link #acquire}. */
+  void release() {
+    if (key == null) {
+      disableBackgroundRefresh();
+      return;
+    }
+    synchronized (CACHE) {
+      if (--references > 0) {
+        return;
+      }
+      // Under the lock, so that a client acquiring the entry again cannot have enabled background
+      // refresh in the meantime.
+      disableBackgroundRefresh();
+      IDLE.put(key, this);
+      dropExcessIdle();
+    }
+  }
+
+  /** Returns the number of entries that are in use. */
+  @VisibleForTesting
+  static int size() {
+    synchronized (CACHE) {
+      return CACHE.size() - IDLE.size();
+    }
+  }
+
+  /** Returns the number of entries that are kept without references. */
+  @VisibleForTesting
+  static int idleSize() {
+    synchronized (CACHE) {
+      return IDLE.size();
+    }
+  }
+
+  private static final class Key {
+    private final String identity;
+    private final String scope;
+
+    Key(String identity, String scope) {
+      this.identity = identity;
+      this.scope = scope;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) o;
+      return identity.equals(that.identity) && scope.equals(that.scope);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(identity, scope);
+    }
+  }
+}
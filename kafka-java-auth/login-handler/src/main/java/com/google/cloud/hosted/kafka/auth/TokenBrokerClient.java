@@ -0,0 +1,123 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.gson.GsonFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Fetches Kafka tokens from a {@link GcpTokenBroker}, or from any server speaking the same
+ * protocol, such as <code>kafka_gcp_credentials_server.py</code>.
+ *
+ * <p>A fetched token is reused until it gets close to its expiry, so every client process contacts
+ * the broker about once per token lifetime.
+ */
+final class TokenBrokerClient {
+
+  private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+  private static final int TIMEOUT_MS = 10 * 1000;
+  // Tokens with less remaining lifetime than this are fetched again. The broker refreshes its
+  // token well before this point.
+  private static final long MIN_REMAINING_LIFETIME_MS = 5 * 60 * 1000L;
+
+  private final URL url;
+  private volatile KafkaToken cached;
+
+  TokenBrokerClient(URL url) {
+    this.url = url;
+  }
+
+  URL getUrl() {
+    return url;
+  }
+
+  /** Returns a token that is valid for a while, fetching one from the broker if necessary. */
+  KafkaToken getToken(TokenMetrics metrics) throws IOException {
+    KafkaToken token = cached;
+    if (isFresh(token)) {
+      metrics.recordCacheHit();
+      return token;
+    }
+    synchronized (this) {
+      token = cached;
+      if (isFresh(token)) {
+        metrics.recordCacheHit();
+        return token;
+      }
+      long startNanos = System.nanoTime();
+      try {
+        token = fetch();
+      } catch (IOException | RuntimeException e) {
+        metrics.recordRefreshFailure();
+        throw e;
+      }
+      metrics.recordRefresh(System.nanoTime() - startNanos);
+      cached = token;
+      return token;
+    }
+  }
+
+  private static boolean isFresh(KafkaToken token) {
+    return token != null
+        && token.expiresAtMs - System.currentTimeMillis() > MIN_REMAINING_LIFETIME_MS;
+  }
+
+  private KafkaToken fetch() throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setConnectTimeout(TIMEOUT_MS);
+    connection.setReadTimeout(TIMEOUT_MS);
+    connection.setRequestMethod("GET");
+    int status = connection.getResponseCode();
+    if (status != HttpURLConnection.HTTP_OK) {
+      // Consume the error body, so that the connection can be reused.
+      try (InputStream error = connection.getErrorStream()) {
+        while (error != null && error.read() != -1) {}
+      }
+      throw new IOException(
+          String.format("Token broker at %s responded with HTTP status %d", url, status));
+    }
+    GenericJson response;
+    try (InputStream in = connection.getInputStream()) {
+      response = JSON_FACTORY.fromInputStream(in, UTF_8, GenericJson.class);
+    }
+    Object accessToken = response.get("access_token");
+    if (!(accessToken instanceof String)) {
+      throw new IOException("Token broker at " + url + " returned no access_token");
+    }
+    return parse((String) accessToken);
+  }
+
+  /** Reads the expiry and principal from the claims of a Kafka token. */
+  static KafkaToken parse(String kafkaToken) throws IOException {
+    JwtPayload claims = JwtPayload.decode(kafkaToken);
+    Number exp = claims.getNumber("exp");
+    String sub = claims.getString("sub");
+    if (exp == null || sub == null) {
+      throw new IOException("Kafka token claims lack exp or sub");
+    }
+    // The Python server writes fractional seconds.
+    long expiresAtMs = (long) (exp.doubleValue() * 1000);
+    return new KafkaToken(kafkaToken, expiresAtMs, sub);
+  }
+}
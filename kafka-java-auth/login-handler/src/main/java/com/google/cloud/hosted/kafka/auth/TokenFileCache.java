@@ -0,0 +1,235 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.auth.oauth2.AccessToken;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.Set;
+
+/**
+ * Keeps the access token of a credential source in a file, so that short-lived processes on the
+ * same host can start with a token left by an earlier process, instead of discovering credentials
+ * and fetching a token before their first request.
+ *
+ * <p>There is one file per credential identity and scope in the configured directory. Application
+ * default credentials are identified by the file they resolve to, so that processes with different
+ * <code>GOOGLE_APPLICATION_CREDENTIALS</code> or gcloud credentials do not share a file. Files are
+ * written to a temporary file first and then moved into place, so that readers never see a partial
+ * file. On file systems with POSIX permissions, the directory and files are only accessible to
+ * their owner, and the cache is not used if the directory or file is accessible to anyone else, or
+ * owned by another user than the one of the files the process creates. Elsewhere, the directory
+ * must be protected by other means.
+ *
+ * <p>The cache is best effort: files that cannot be read or written are treated as missing.
+ */
+final class TokenFileCache {
+
+  private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+  // Tokens with less remaining lifetime than this are not read, so that a process starting with
+  // one does not have to refresh it right away.
+  private static final long MIN_REMAINING_LIFETIME_MS = 5 * 60 * 1000L;
+  private static final Set<PosixFilePermission> OWNER_ONLY_FILE =
+      PosixFilePermissions.fromString("rw-------");
+  private static final Set<PosixFilePermission> OWNER_ONLY_DIRECTORY =
+      PosixFilePermissions.fromString("rwx------");
+  private static final boolean POSIX =
+      FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+  /** A token read from the cache, with the principal of the credentials if it was known. */
+  static final class CachedToken {
+    final AccessToken token;
+    final String principal;
+
+    CachedToken(AccessToken token, String principal) {
+      this.token = token;
+      this.principal = principal;
+    }
+  }
+
+  private final Path directory;
+  private final Path file;
+  // The owner of the files this process creates in the directory. Guarded by this.
+  private UserPrincipal processOwner;
+
+  TokenFileCache(Path directory, String identity, String scope) {
+    this.directory = directory;
+    this.file = directory.resolve(fileName(identity, scope));
+  }
+
+  /**
+   * Returns the cache of the given credentials, or null if no cache directory is configured or the
+   * credentials cannot be identified across processes, see {@link CredentialSource#cacheIdentity}.
+   */
+  static TokenFileCache fromConfig(GcpAuthConfig config, CredentialSource source, String scope) {
+    String directory = config.getString(GcpAuthConfig.TOKEN_CACHE_DIR_CONFIG);
+    if (directory == null) {
+      return null;
+    }
+    String identity = source.cacheIdentity();
+    return identity == null ? null : new TokenFileCache(Paths.get(directory), identity, scope);
+  }
+
+  Path file() {
+    return file;
+  }
+
+  /** Returns the cached token, or null if there is none that is valid for a while. */
+  CachedToken read() {
+    try {
+      if (!Files.isRegularFile(file)
+          || !isPrivate(directory, OWNER_ONLY_DIRECTORY)
+          || !isPrivate(file, OWNER_ONLY_FILE)) {
+        return null;
+      }
+      GenericJson json =
+          JSON_FACTORY.fromString(new String(Files.readAllBytes(file), UTF_8), GenericJson.class);
+      Object value = json.get("access_token");
+      Object expiresAtMs = json.get("expires_at_ms");
+      Object principal = json.get("principal");
+      if (!(value instanceof String) || !(expiresAtMs instanceof Number)) {
+        return null;
+      }
+      long expiry = ((Number) expiresAtMs).longValue();
+      if (expiry - System.currentTimeMillis() <= MIN_REMAINING_LIFETIME_MS) {
+        return null;
+      }
+      return new CachedToken(
+          new AccessToken((String) value, new Date(expiry)),
+          principal instanceof String ? (String) principal : null);
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Replaces the cached token. A null principal keeps the principal already in the cache, so that
+   * clients that do not need the principal do not erase it for those that do.
+   */
+  void write(AccessToken token, String principal) {
+    if (token.getExpirationTime() == null) {
+      return;
+    }
+    if (principal == null) {
+      CachedToken cached = read();
+      principal = cached != null ? cached.principal : null;
+    }
+    GenericJson json = new GenericJson();
+    json.setFactory(JSON_FACTORY);
+    json.put("access_token", token.getTokenValue());
+    json.put("expires_at_ms", token.getExpirationTime().getTime());
+    if (principal != null) {
+      json.put("principal", principal);
+    }
+    Path temp = null;
+    try {
+      if (!Files.isDirectory(directory)) {
+        Files.createDirectories(directory, attributes(OWNER_ONLY_DIRECTORY));
+      }
+      if (!isPrivate(directory, OWNER_ONLY_DIRECTORY)) {
+        return;
+      }
+      temp =
+          Files.createTempFile(
+              directory, file.getFileName().toString(), ".tmp", attributes(OWNER_ONLY_FILE));
+      Files.write(temp, json.toString().getBytes(UTF_8));
+      try {
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+      temp = null;
+    } catch (IOException | RuntimeException e) {
+      // Best effort; the next process fetches a token of its own.
+    } finally {
+      if (temp != null) {
+        try {
+          Files.deleteIfExists(temp);
+        } catch (IOException e) {
+          // Ignored, as above.
+        }
+      }
+    }
+  }
+
+  // Returns whether the path has no other permissions than the given ones, and is owned by the
+  // user of this process.
+  private boolean isPrivate(Path path, Set<PosixFilePermission> ownerOnly) throws IOException {
+    if (!POSIX) {
+      return true;
+    }
+    for (PosixFilePermission permission : Files.getPosixFilePermissions(path)) {
+      if (!ownerOnly.contains(permission)) {
+        return false;
+      }
+    }
+    return Files.getOwner(path).equals(processOwner());
+  }
+
+  // Neither the user.name property nor the environment reliably name the user of the process, e.g.
+  // in containers that run as an arbitrary user ID, so the owner of a new file is used instead.
+  private synchronized UserPrincipal processOwner() throws IOException {
+    if (processOwner == null) {
+      Path probe = Files.createTempFile(directory, "owner-", ".tmp", attributes(OWNER_ONLY_FILE));
+      try {
+        processOwner = Files.getOwner(probe);
+      } finally {
+        Files.deleteIfExists(probe);
+      }
+    }
+    return processOwner;
+  }
+
+  private static FileAttribute<?>[] attributes(Set<PosixFilePermission> permissions) {
+    if (!POSIX) {
+      return new FileAttribute<?>[0];
+    }
+    return new FileAttribute<?>[] {PosixFilePermissions.asFileAttribute(permissions)};
+  }
+
+  // Credential identities contain file paths, so files are named by a digest of the identity.
+  private static String fileName(String identity, String scope) {
+    try {
+      byte[] digest =
+          MessageDigest.getInstance("SHA-256").digest((identity + "\n" + scope).getBytes(UTF_8));
+      StringBuilder name = new StringBuilder("token-");
+      for (int i = 0; i < 16; i++) {
+        name.append(String.format("%02x", digest[i]));
+      }
+      return name.append(".json").toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.JmxReporter;
+import org.apache.kafka.common.metrics.KafkaMetricsContext;
+import org.apache.kafka.common.metrics.MetricConfig;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.metrics.stats.Avg;
+import org.apache.kafka.common.metrics.stats.CumulativeCount;
+import org.apache.kafka.common.metrics.stats.Max;
+import org.apache.kafka.common.metrics.stats.Min;
+import org.apache.kafka.common.metrics.stats.Percentile;
+import org.apache.kafka.common.metrics.stats.Percentiles;
+import org.apache.kafka.common.metrics.stats.Percentiles.BucketSizing;
+import org.apache.kafka.common.utils.Time;
+
+/**
+ * Token acquisition metrics of a single callback handler or credential provider.
+ *
+ * <p>Kafka gives login callback handlers and credential providers no access to the metrics registry
+ * of their client, so the metrics are registered in a process-wide registry of their own. It is
+ * exported over JMX as <code>kafka.auth:type=gcp-auth-metrics,client-id=...,component=...</code>,
+ * in a domain of its own next to the <code>kafka.producer</code> and <code>kafka.consumer</code>
+ * metrics of the clients:
+ *
+ * <ul>
+ *   <li><code>refresh-latency-avg</code>, <code>-max</code>, <code>-p50</code>, <code>-p99</code>:
+ *       time taken by access token refreshes in the last one to two hours, in milliseconds.
+ *   <li><code>refresh-total</code>: number of access token refreshes.
+ *   <li><code>refresh-failure-total</code>: number of failed access token refreshes.
+ *   <li><code>cache-hit-total</code>: number of tokens served without a refresh.
+ *   <li><code>token-expiry-seconds</code>: seconds until the most recently issued token expires.
+ *   <li><code>token-remaining-lifetime-seconds-avg</code>, <code>-min</code>: remaining lifetime
+ *       of tokens at the time they were issued to the client, in the last one to two hours.
+ * </ul>
+ *
+ * <p>Cache hits are counted without taking a lock, since they are recorded on the request path.
+ */
+final class TokenMetrics implements AutoCloseable {
+  static final String JMX_PREFIX = "kafka.auth";
+  static final String METRIC_GROUP = "gcp-auth-metrics";
+  static final String CLIENT_ID_TAG = "client-id";
+  static final String COMPONENT_TAG = "component";
+
+  // Refreshes slower than this are counted in the highest percentile bucket.
+  private static final double MAX_REFRESH_LATENCY_MS = TimeUnit.SECONDS.toMillis(30);
+  private static final int PERCENTILES_SIZE_IN_BYTES = 4 * 1024;
+  // Tokens are refreshed and issued about once per access token lifetime, an hour by default. With
+  // Kafka's default of two 30 second samples, the statistics of those events would read NaN most
+  // of the time, so they are kept for two samples of an hour each instead.
+  private static final MetricConfig REFRESH_METRIC_CONFIG =
+      new MetricConfig().samples(2).timeWindow(1, TimeUnit.HOURS);
+
+  private static final Metrics REGISTRY =
+      new Metrics(
+          new MetricConfig(),
+          Collections.singletonList(new JmxReporter()),
+          Time.SYSTEM,
+          new KafkaMetricsContext(JMX_PREFIX));
+
+  /** Metrics that are not registered anywhere and discard everything recorded to them. */
+  static final TokenMetrics NONE = new TokenMetrics();
+
+  private final Metrics registry;
+  private final Map<String, String> tags;
+  private final Sensor refreshSensor;
+  private final Sensor failureSensor;
+  private final Sensor lifetimeSensor;
+  private final MetricName cacheHitMetric;
+  private final MetricName expiryMetric;
+  private final LongAdder cacheHits = new LongAdder();
+  private volatile long tokenExpiresAtMs = Long.MIN_VALUE;
+
+  private TokenMetrics() {
+    this.registry = null;
+    this.tags = Collections.emptyMap();
+    this.refreshSensor = null;
+    this.failureSensor = null;
+    this.lifetimeSensor = null;
+    this.cacheHitMetric = null;
+    this.expiryMetric = null;
+  }
+
+  private TokenMetrics(Metrics registry, Map<String, String> tags) {
+    this.registry = registry;
+    this.tags = tags;
+    String sensorPrefix = "gcp-auth." + tags.get(COMPONENT_TAG) + "." + tags.get(CLIENT_ID_TAG);
+
+    this.refreshSensor = registry.sensor(sensorPrefix + ".refresh", REFRESH_METRIC_CONFIG);
+    refreshSensor.add(
+        metricName("refresh-latency-avg", "The average token refresh time in ms."), new Avg());
+    refreshSensor.add(
+        metricName("refresh-latency-max", "The maximum token refresh time in ms."), new Max());
+    refreshSensor.add(
+        new Percentiles(
+            PERCENTILES_SIZE_IN_BYTES,
+            MAX_REFRESH_LATENCY_MS,
+            BucketSizing.LINEAR,
+            new Percentile(
+                metricName("refresh-latency-p50", "The median token refresh time in ms."), 50),
+            new Percentile(
+                metricName("refresh-latency-p99", "The 99th percentile token refresh time in ms."),
+                99)));
+    refreshSensor.add(
+        metricName("refresh-total", "The total number of token refreshes."),
+        new CumulativeCount());
+
+    this.failureSensor = registry.sensor(sensorPrefix + ".refresh-failure");
+    failureSensor.add(
+        metricName("refresh-failure-total", "The total number of failed token refreshes."),
+        new CumulativeCount());
+
+    this.lifetimeSensor = registry.sensor(sensorPrefix + ".token-lifetime", REFRESH_METRIC_CONFIG);
+    lifetimeSensor.add(
+        metricName(
+            "token-remaining-lifetime-seconds-avg",
+            "The average remaining lifetime of tokens when they were issued, in seconds."),
+        new Avg());
+    lifetimeSensor.add(
+        metricName(
+            "token-remaining-lifetime-seconds-min",
+            "The minimum remaining lifetime of tokens when they were issued, in seconds."),
+        new Min());
+
+    this.cacheHitMetric =
+        metricName("cache-hit-total", "The total number of tokens served without a refresh.");
+    registry.addMetric(cacheHitMetric, (config, now) -> cacheHits.sum());
+    this.expiryMetric =
+        metricName(
+            "token-expiry-seconds", "The number of seconds until the most recent token expires.");
+    registry.addMetric(expiryMetric, (config, now) -> secondsToExpiry(now));
+  }
+
+  private double secondsToExpiry(long nowMs) {
+    long expiresAtMs = tokenExpiresAtMs;
+    return expiresAtMs == Long.MIN_VALUE ? Double.NaN : (expiresAtMs - nowMs) / 1000.0;
+  }
+
+  /**
+   * Registers the metrics of a client in the process-wide registry. If another client with the same
+   * client id is already registered for the component, a numeric suffix is appended to the id.
+   */
+  static TokenMetrics register(String component, String clientId) {
+    return register(REGISTRY, component, clientId);
+  }
+
+  @VisibleForTesting
+  static TokenMetrics register(Metrics registry, String component, String clientId) {
+    String baseId = clientId == null || clientId.isEmpty() ? "unknown" : clientId;
+    synchronized (registry) {
+      String id = baseId;
+      for (int suffix = 2; ; suffix++) {
+        Map<String, String> tags = new LinkedHashMap<>();
+        tags.put(CLIENT_ID_TAG, id);
+        tags.put(COMPONENT_TAG, component);
+        if (registry.metric(registry.metricName("refresh-total", METRIC_GROUP, "", tags))
+            == null) {
+          return new TokenMetrics(registry, tags);
+        }
+        id = baseId + "-" + suffix;
+      }
+    }
+  }
+
+  @VisibleForTesting
+  static Metrics registry() {
+    return REGISTRY;
+  }
+
+  private MetricName metricName(String name, String description) {
+    return registry.metricName(name, METRIC_GROUP, description, tags);
+  }
+
+  @VisibleForTesting
+  Map<String, String> tags() {
+    return tags;
+  }
+
+  void recordRefresh(long latencyNanos) {
+    if (refreshSensor != null) {
+      refreshSensor.record(latencyNanos / 1e6);
+    }
+  }
+
+  void recordRefreshFailure() {
+    if (failureSensor != null) {
+      failureSensor.record();
+    }
+  }
+
+  void recordCacheHit() {
+    cacheHits.increment();
+  }
+
+  /** Records that a token expiring at the given time was issued to the client. */
+  void recordTokenIssued(long expiresAtMs) {
+    if (lifetimeSensor != null) {
+      tokenExpiresAtMs = expiresAtMs;
+      lifetimeSensor.record((expiresAtMs - System.currentTimeMillis()) / 1000.0);
+    }
+  }
+
+  @Override
+  public void close() {
+    if (registry != null) {
+      synchronized (registry) {
+        registry.removeSensor(refreshSensor.name());
+        registry.removeSensor(failureSensor.name());
+        registry.removeSensor(lifetimeSensor.name());
+        registry.removeMetric(cacheHitMetric);
+        registry.removeMetric(expiryMetric);
+      }
+    }
+  }
+}
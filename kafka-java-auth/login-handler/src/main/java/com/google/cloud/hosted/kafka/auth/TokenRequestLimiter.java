@@ -0,0 +1,362 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.metrics.stats.Avg;
+import org.apache.kafka.common.metrics.stats.Max;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A token bucket that bounds the rate of requests the whole process sends to the metadata server,
+ * STS and the Google token endpoints.
+ *
+ * <p>The metadata server and STS limit the requests of a host. When many clients need a token at
+ * once, for instance after a network outage, their refreshes would otherwise exceed that limit
+ * together and all fail. Every request of the shared transports takes a permit first. Up to {@link
+ * Policy#burst} permits are available at once, and they are replenished at {@link
+ * Policy#permitsPerSecond}. A request without a permit queues until one becomes available, unless
+ * that would take longer than {@link Policy#maxWaitMs}, in which case it is shed: it fails right
+ * away with a {@link ShedException}, and its caller keeps serving its last token. A shed request
+ * never reached the endpoint, so {@link RefreshGuard} does not count it as a failed refresh.
+ *
+ * <p>The limit is on by default. Clients of the process can only tighten it once it has been
+ * configured, see {@link #configure}.
+ *
+ * <p>The saturation of the limiter is reported in the process-wide metrics registry, see {@link
+ * #registerMetrics}.
+ */
+final class TokenRequestLimiter {
+  private static final Logger logger = LoggerFactory.getLogger(TokenRequestLimiter.class);
+
+  /** Thrown for a request that is shed rather than queued for the limit. */
+  static final class ShedException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    ShedException(String message) {
+      super(message);
+    }
+  }
+
+  /** Limiter settings, read from the client configuration. */
+  static final class Policy {
+    static final Policy DEFAULT =
+        new Policy(
+            GcpAuthConfig.DEFAULT_TOKEN_REQUESTS_PER_SECOND,
+            GcpAuthConfig.DEFAULT_TOKEN_REQUESTS_BURST,
+            GcpAuthConfig.DEFAULT_TOKEN_REQUESTS_MAX_WAIT_MS);
+
+    // 0 means requests are not limited.
+    final double permitsPerSecond;
+    final int burst;
+    final long maxWaitMs;
+
+    Policy(double permitsPerSecond, int burst, long maxWaitMs) {
+      this.permitsPerSecond = permitsPerSecond;
+      this.burst = burst;
+      this.maxWaitMs = maxWaitMs;
+    }
+
+    /** Returns the configured policy, or null if the configuration sets none of its options. */
+    static Policy fromConfig(GcpAuthConfig config) {
+      if (config.getString(GcpAuthConfig.TOKEN_REQUESTS_PER_SECOND_CONFIG) == null
+          && config.getString(GcpAuthConfig.TOKEN_REQUESTS_BURST_CONFIG) == null
+          && config.getString(GcpAuthConfig.TOKEN_REQUESTS_MAX_WAIT_MS_CONFIG) == null) {
+        return null;
+      }
+      return new Policy(
+          config.getDouble(
+              GcpAuthConfig.TOKEN_REQUESTS_PER_SECOND_CONFIG,
+              GcpAuthConfig.DEFAULT_TOKEN_REQUESTS_PER_SECOND,
+              0,
+              Double.MAX_VALUE),
+          (int)
+              config.getLong(
+                  GcpAuthConfig.TOKEN_REQUESTS_BURST_CONFIG,
+                  GcpAuthConfig.DEFAULT_TOKEN_REQUESTS_BURST,
+                  1,
+                  Integer.MAX_VALUE),
+          config.getLong(
+              GcpAuthConfig.TOKEN_REQUESTS_MAX_WAIT_MS_CONFIG,
+              GcpAuthConfig.DEFAULT_TOKEN_REQUESTS_MAX_WAIT_MS,
+              0,
+              Long.MAX_VALUE));
+    }
+
+    /** Returns the stricter of the two values of each setting. */
+    Policy strictest(Policy other) {
+      double stricterRate;
+      if (permitsPerSecond == 0 || other.permitsPerSecond == 0) {
+        // 0 means requests are not limited.
+        stricterRate = Math.max(permitsPerSecond, other.permitsPerSecond);
+      } else {
+        stricterRate = Math.min(permitsPerSecond, other.permitsPerSecond);
+      }
+      return new Policy(
+          stricterRate, Math.min(burst, other.burst), Math.min(maxWaitMs, other.maxWaitMs));
+    }
+
+    boolean sameAs(Policy other) {
+      return permitsPerSecond == other.permitsPerSecond
+          && burst == other.burst
+          && maxWaitMs == other.maxWaitMs;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%s requests per second, burst %d, max wait %d ms", permitsPerSecond, burst, maxWaitMs);
+    }
+  }
+
+  /** The limiter shared by every transport in the process. */
+  static final TokenRequestLimiter SHARED = new TokenRequestLimiter(System::currentTimeMillis);
+
+  static {
+    SHARED.registerMetrics(TokenMetrics.registry());
+  }
+
+  private final LongSupplier clock;
+  // Guarded by this.
+  private Policy policy = Policy.DEFAULT;
+  // The strictest settings clients have configured, or null while the defaults apply. Guarded by
+  // this.
+  private Policy configuredPolicy;
+  // Negative while requests are queued for permits they have reserved.
+  private double permits = Policy.DEFAULT.burst;
+  private long updatedAtMs;
+  private final AtomicInteger queued = new AtomicInteger();
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder shed = new LongAdder();
+  private volatile Sensor waitSensor;
+
+  @VisibleForTesting
+  TokenRequestLimiter(LongSupplier clock) {
+    this.clock = clock;
+    this.updatedAtMs = clock.getAsLong();
+  }
+
+  /**
+   * Applies the settings of a client to the limiter shared by the whole process, if its
+   * configuration sets any of them. Configurations that set none leave the limiter as it is. The
+   * first client to set them replaces the defaults. After that, each setting keeps the strictest
+   * value any client has configured, so that one client cannot loosen the limit of the others.
+   */
+  static void configure(GcpAuthConfig config) {
+    Policy policy = Policy.fromConfig(config);
+    if (policy != null) {
+      SHARED.configurePolicy(policy);
+    }
+  }
+
+  /** Tightens the settings to the strictest of those configured so far and the given ones. */
+  @VisibleForTesting
+  synchronized void configurePolicy(Policy requested) {
+    if (configuredPolicy == null) {
+      configuredPolicy = requested;
+    } else if (!requested.sameAs(configuredPolicy)) {
+      Policy strictest = configuredPolicy.strictest(requested);
+      logger.warn(
+          "Clients of this process configure different limits on Google token requests: {} and {}."
+              + " The limit is shared by the whole process, so it applies {}.",
+          configuredPolicy,
+          requested,
+          strictest);
+      configuredPolicy = strictest;
+    }
+    setPolicy(configuredPolicy);
+  }
+
+  /** Replaces the settings. The permits available are kept, up to the new burst. */
+  synchronized void setPolicy(Policy policy) {
+    refill(clock.getAsLong());
+    this.policy = policy;
+    permits = Math.min(permits, policy.burst);
+  }
+
+  /**
+   * Waits for a permit to send a request.
+   *
+   * @throws ShedException if the request is shed
+   * @throws InterruptedIOException if the thread is interrupted while it waits, in which case its
+   *     permit is given back
+   */
+  void acquire() throws IOException {
+    long waitMs = reserve(clock.getAsLong());
+    if (waitMs < 0) {
+      shed.increment();
+      Policy current = policy();
+      throw new ShedException(
+          String.format(
+              "Shed a request for a Google token, which would have waited more than %d ms for the"
+                  + " limit of %s requests per second",
+              current.maxWaitMs, current.permitsPerSecond));
+    }
+    requests.increment();
+    Sensor sensor = waitSensor;
+    if (sensor != null) {
+      sensor.record(waitMs);
+    }
+    if (waitMs == 0) {
+      return;
+    }
+    queued.incrementAndGet();
+    try {
+      Thread.sleep(waitMs);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      release();
+      throw new InterruptedIOException("Interrupted while waiting to request a Google token");
+    } finally {
+      queued.decrementAndGet();
+    }
+  }
+
+  /**
+   * Reserves a permit and returns how long to wait for it, in milliseconds, or -1 if the request
+   * must be shed. Shed requests reserve nothing.
+   */
+  synchronized long reserve(long nowMs) {
+    if (policy.permitsPerSecond == 0) {
+      return 0;
+    }
+    refill(nowMs);
+    if (permits >= 1) {
+      permits--;
+      return 0;
+    }
+    double waitMs = (1 - permits) * 1000 / policy.permitsPerSecond;
+    if (waitMs > policy.maxWaitMs) {
+      return -1;
+    }
+    permits--;
+    return (long) Math.ceil(waitMs);
+  }
+
+  /** Gives back a permit that was reserved for a request that will not be sent. */
+  synchronized void release() {
+    if (policy.permitsPerSecond != 0) {
+      permits = Math.min(policy.burst, permits + 1);
+    }
+  }
+
+  /** Returns whether the given failure, or one of its causes, is a request that was shed. */
+  static boolean isShed(Throwable failure) {
+    for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+      if (cause instanceof ShedException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Must be called while holding the lock on this.
+  private void refill(long nowMs) {
+    if (nowMs > updatedAtMs) {
+      permits =
+          Math.min(policy.burst, permits + (nowMs - updatedAtMs) * policy.permitsPerSecond / 1000);
+      updatedAtMs = nowMs;
+    }
+  }
+
+  private synchronized Policy policy() {
+    return policy;
+  }
+
+  /** Returns the permits available right now, or a negative number if requests are queued. */
+  synchronized double availablePermits(long nowMs) {
+    refill(nowMs);
+    return policy.permitsPerSecond == 0 ? policy.burst : permits;
+  }
+
+  /**
+   * Returns the fraction of the burst in use right now: 0 when every permit is available, 1 when
+   * none is, and more than 1 when requests are queued for permits.
+   */
+  synchronized double saturation(long nowMs) {
+    return 1 - availablePermits(nowMs) / policy.burst;
+  }
+
+  /**
+   * Registers the metrics of the limiter, exported over JMX as <code>
+   * kafka.auth:type=gcp-auth-metrics,component=token-request-limiter</code>:
+   *
+   * <ul>
+   *   <li><code>token-request-saturation</code>: the fraction of the burst in use, above 1 while
+   *       requests queue.
+   *   <li><code>token-request-permits-available</code>: the permits available right now.
+   *   <li><code>token-request-queued</code>: the requests waiting for a permit.
+   *   <li><code>token-request-wait-time-avg</code>, <code>-max</code>: time requests waited for a
+   *       permit, in milliseconds.
+   *   <li><code>token-request-total</code>: the requests that got a permit.
+   *   <li><code>token-request-shed-total</code>: the requests shed.
+   * </ul>
+   */
+  @VisibleForTesting
+  void registerMetrics(Metrics registry) {
+    Map<String, String> tags =
+        Collections.singletonMap(TokenMetrics.COMPONENT_TAG, "token-request-limiter");
+    registry.addMetric(
+        metricName(registry, tags, "token-request-saturation", "The fraction of the burst in use."),
+        (config, now) -> saturation(clock.getAsLong()));
+    registry.addMetric(
+        metricName(
+            registry, tags, "token-request-permits-available", "The permits available right now."),
+        (config, now) -> availablePermits(clock.getAsLong()));
+    registry.addMetric(
+        metricName(registry, tags, "token-request-queued", "The requests waiting for a permit."),
+        (config, now) -> queued.get());
+    registry.addMetric(
+        metricName(registry, tags, "token-request-total", "The requests that got a permit."),
+        (config, now) -> requests.sum());
+    registry.addMetric(
+        metricName(registry, tags, "token-request-shed-total", "The requests shed."),
+        (config, now) -> shed.sum());
+    Sensor sensor = registry.sensor("gcp-auth.token-request-limiter.wait");
+    sensor.add(
+        metricName(
+            registry,
+            tags,
+            "token-request-wait-time-avg",
+            "The average time requests waited for a permit in ms."),
+        new Avg());
+    sensor.add(
+        metricName(
+            registry,
+            tags,
+            "token-request-wait-time-max",
+            "The maximum time requests waited for a permit in ms."),
+        new Max());
+    waitSensor = sensor;
+  }
+
+  private static MetricName metricName(
+      Metrics registry, Map<String, String> tags, String name, String description) {
+    return registry.metricName(name, TokenMetrics.METRIC_GROUP, description, tags);
+  }
+}
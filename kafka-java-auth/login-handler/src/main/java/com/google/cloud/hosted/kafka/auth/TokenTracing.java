@@ -0,0 +1,192 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import java.time.Instant;
+import java.util.concurrent.Callable;
+
+/**
+ * OpenTelemetry tracing of token acquisition.
+ *
+ * <p>The OpenTelemetry API is an optional dependency. Once the application has passed its
+ * OpenTelemetry instance to {@link GcpAuthTracing#setOpenTelemetry}, spans are created with its
+ * tracer, so they are exported wherever the application exports its own spans:
+ *
+ * <ul>
+ *   <li><code>gcp.auth.handle_token_callback</code>, <code>gcp.auth.get_bearer_token</code>: a
+ *       token request of a Kafka client or a Schema Registry client, with the attributes <code>
+ *       gcp.auth.credential_type</code> and <code>gcp.auth.cache_hit</code>, and <code>
+ *       gcp.auth.hedged</code> when more than one source of tokens was asked.
+ *   <li><code>gcp.auth.load_credentials</code>: waiting for the credentials to be discovered and
+ *       loaded, e.g. application default credentials probing the metadata server.
+ *   <li><code>gcp.auth.refresh</code>: an access token refresh.
+ *   <li><code>gcp.auth.resolve_principal</code>, <code>gcp.auth.fetch_id_token</code>: determining
+ *       the principal of the credentials, which may fetch an ID token.
+ *   <li><code>gcp.auth.encode_token</code>: encoding the Kafka token.
+ * </ul>
+ *
+ * <p>Until then, every method does nothing and no OpenTelemetry classes are loaded. The global
+ * OpenTelemetry instance is never looked up: doing so before the application registered its own
+ * would install a no-op instance, and make the registration fail.
+ */
+class TokenTracing {
+  static final String INSTRUMENTATION_NAME = "com.google.cloud.hosted.kafka.auth";
+
+  static final String HANDLE_TOKEN_CALLBACK_SPAN = "gcp.auth.handle_token_callback";
+  static final String GET_BEARER_TOKEN_SPAN = "gcp.auth.get_bearer_token";
+  static final String LOAD_CREDENTIALS_SPAN = "gcp.auth.load_credentials";
+  static final String REFRESH_SPAN = "gcp.auth.refresh";
+  static final String RESOLVE_PRINCIPAL_SPAN = "gcp.auth.resolve_principal";
+  static final String FETCH_ID_TOKEN_SPAN = "gcp.auth.fetch_id_token";
+  static final String ENCODE_TOKEN_SPAN = "gcp.auth.encode_token";
+
+  static final String CREDENTIAL_TYPE_ATTRIBUTE = "gcp.auth.credential_type";
+  static final String CACHE_HIT_ATTRIBUTE = "gcp.auth.cache_hit";
+  static final String HEDGED_ATTRIBUTE = "gcp.auth.hedged";
+
+  /** Tracing that creates no spans. */
+  static final TokenTracing NONE = new TokenTracing();
+
+  private static volatile TokenTracing current = NONE;
+
+  /** A span that is current on the calling thread until it is closed. */
+  static class Span implements AutoCloseable {
+    private static final Span NONE = new Span();
+
+    void setAttribute(String key, String value) {}
+
+    void setAttribute(String key, boolean value) {}
+
+    /** Marks the span as failed with the given exception. */
+    void recordFailure(Throwable failure) {}
+
+    /** Ends the span and restores the span that was current before it. */
+    @Override
+    public void close() {}
+  }
+
+  /** Returns the tracing used by all clients in the process. */
+  static TokenTracing get() {
+    return current;
+  }
+
+  static void set(TokenTracing tracing) {
+    current = tracing;
+  }
+
+  /** Returns tracing that creates its spans with the given OpenTelemetry instance. */
+  static TokenTracing forOpenTelemetry(OpenTelemetry openTelemetry) {
+    return new OpenTelemetryTracing(openTelemetry);
+  }
+
+  /** Starts a span, as a child of the current span if there is one, and makes it current. */
+  Span start(String name) {
+    return Span.NONE;
+  }
+
+  /**
+   * Records a span that started at the given time and ends now, failed if a failure is given. Used
+   * for phases that are only known to have happened once they are over.
+   */
+  void record(String name, Instant startTime, Throwable failure) {}
+
+  /** Records on the current span whether the token was served without a refresh. */
+  void recordCacheHit(boolean hit) {}
+
+  /**
+   * Returns a task that runs the given one with the span that is current now as its current span,
+   * so that the spans it creates on another thread are children of it.
+   */
+  <T> Callable<T> wrap(Callable<T> task) {
+    return task;
+  }
+
+  /**
+   * Creates spans with the OpenTelemetry API. Only loaded once the application has passed an
+   * OpenTelemetry instance.
+   */
+  private static final class OpenTelemetryTracing extends TokenTracing {
+    private final Tracer tracer;
+
+    OpenTelemetryTracing(OpenTelemetry openTelemetry) {
+      this.tracer = openTelemetry.getTracer(INSTRUMENTATION_NAME);
+    }
+
+    @Override
+    Span start(String name) {
+      return new OpenTelemetrySpan(tracer.spanBuilder(name).startSpan());
+    }
+
+    @Override
+    void record(String name, Instant startTime, Throwable failure) {
+      io.opentelemetry.api.trace.Span span =
+          tracer.spanBuilder(name).setStartTimestamp(startTime).startSpan();
+      if (failure != null) {
+        span.recordException(failure);
+        span.setStatus(StatusCode.ERROR);
+      }
+      span.end();
+    }
+
+    @Override
+    void recordCacheHit(boolean hit) {
+      io.opentelemetry.api.trace.Span.current().setAttribute(CACHE_HIT_ATTRIBUTE, hit);
+    }
+
+    @Override
+    <T> Callable<T> wrap(Callable<T> task) {
+      return Context.current().wrap(task);
+    }
+  }
+
+  private static final class OpenTelemetrySpan extends Span {
+    private final io.opentelemetry.api.trace.Span span;
+    private final Scope scope;
+
+    OpenTelemetrySpan(io.opentelemetry.api.trace.Span span) {
+      this.span = span;
+      this.scope = span.makeCurrent();
+    }
+
+    @Override
+    void setAttribute(String key, String value) {
+      span.setAttribute(key, value);
+    }
+
+    @Override
+    void setAttribute(String key, boolean value) {
+      span.setAttribute(key, value);
+    }
+
+    @Override
+    void recordFailure(Throwable failure) {
+      span.recordException(failure);
+      span.setStatus(StatusCode.ERROR);
+    }
+
+    @Override
+    public void close() {
+      scope.close();
+      span.end();
+    }
+  }
+}
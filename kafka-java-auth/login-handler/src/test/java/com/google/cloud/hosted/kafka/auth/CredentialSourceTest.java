@@ -0,0 +1,208 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import org.apache.kafka.common.config.ConfigException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit test for CredentialSource. */
+@RunWith(JUnit4.class)
+public final class CredentialSourceTest {
+  private static final String SCOPE = "https://www.googleapis.com/auth/cloud-platform";
+
+  private static CredentialSource fromConfig(ImmutableMap<String, String> options) {
+    return CredentialSource.fromConfig(new GcpAuthConfig(options));
+  }
+
+  @Test
+  public void fromConfig_defaultsToApplicationDefault() {
+    assertThat(CredentialSource.fromConfig(new GcpAuthConfig(Collections.emptyMap())).identity())
+        .isEqualTo(CredentialSource.APPLICATION_DEFAULT.identity());
+  }
+
+  @Test
+  public void fromConfig_identityDistinguishesSources() {
+    assertThat(
+            fromConfig(
+                    ImmutableMap.of(
+                        GcpAuthConfig.CREDENTIALS_SOURCE_CONFIG, "service_account",
+                        GcpAuthConfig.CREDENTIALS_FILE_CONFIG, "/keys/a.json"))
+                .identity())
+        .isEqualTo("service_account:/keys/a.json");
+    assertThat(
+            fromConfig(
+                    ImmutableMap.of(
+                        GcpAuthConfig.CREDENTIALS_SOURCE_CONFIG, "EXTERNAL_ACCOUNT",
+                        GcpAuthConfig.CREDENTIALS_FILE_CONFIG, "/keys/a.json"))
+                .identity())
+        .isEqualTo("external_account:/keys/a.json");
+    assertThat(
+            fromConfig(
+                    ImmutableMap.of(
+                        GcpAuthConfig.CREDENTIALS_SOURCE_CONFIG, "metadata",
+                        GcpAuthConfig.IMPERSONATE_SERVICE_ACCOUNT_CONFIG, "sa@project.iam"))
+                .identity())
+        .isEqualTo("metadata;impersonate=sa@project.iam");
+  }
+
+  @Test
+  public void fromConfig_identityIncludesDelegates() {
+    assertThat(
+            fromConfig(
+                    ImmutableMap.of(
+                        GcpAuthConfig.CREDENTIALS_SOURCE_CONFIG, "metadata",
+                        GcpAuthConfig.IMPERSONATE_SERVICE_ACCOUNT_CONFIG, "sa@project.iam",
+                        GcpAuthConfig.IMPERSONATE_DELEGATES_CONFIG,
+                        " a@project.iam, b@project.iam"))
+                .identity())
+        .isEqualTo("metadata;impersonate=sa@project.iam,a@project.iam,b@project.iam");
+  }
+
+  @Test
+  public void fromConfig_delegatesWithoutImpersonationFail() {
+    assertThrows(
+        ConfigException.class,
+        () ->
+            fromConfig(
+                ImmutableMap.of(GcpAuthConfig.IMPERSONATE_DELEGATES_CONFIG, "a@project.iam")));
+  }
+
+  @Test
+  public void fromConfig_identityDistinguishesHttpSettings() {
+    CredentialSource source =
+        fromConfig(
+            ImmutableMap.of(
+                GcpAuthConfig.HTTP_CONNECT_TIMEOUT_MS_CONFIG, "500",
+                GcpAuthConfig.HTTP_READ_TIMEOUT_MS_CONFIG, "1000"));
+
+    assertThat(source.identity()).isEqualTo("application_default;http=500/1000/10");
+    assertThat(source.transportFactory())
+        .isSameInstanceAs(
+            fromConfig(
+                    ImmutableMap.of(
+                        GcpAuthConfig.HTTP_CONNECT_TIMEOUT_MS_CONFIG, "500",
+                        GcpAuthConfig.HTTP_READ_TIMEOUT_MS_CONFIG, "1000"))
+                .transportFactory());
+  }
+
+  @Test
+  public void fromConfig_unknownSourceFails() {
+    assertThrows(
+        ConfigException.class,
+        () -> fromConfig(ImmutableMap.of(GcpAuthConfig.CREDENTIALS_SOURCE_CONFIG, "gcloud")));
+  }
+
+  @Test
+  public void fromConfig_fileSourceWithoutFileFails() {
+    assertThrows(
+        ConfigException.class,
+        () ->
+            fromConfig(
+                ImmutableMap.of(GcpAuthConfig.CREDENTIALS_SOURCE_CONFIG, "service_account")));
+  }
+
+  @Test
+  public void fromConfig_fileWithoutFileSourceFails() {
+    assertThrows(
+        ConfigException.class,
+        () ->
+            fromConfig(
+                ImmutableMap.of(
+                    GcpAuthConfig.CREDENTIALS_SOURCE_CONFIG, "metadata",
+                    GcpAuthConfig.CREDENTIALS_FILE_CONFIG, "/keys/a.json")));
+  }
+
+  @Test
+  public void load_missingFileFails() {
+    CredentialSource source =
+        fromConfig(
+            ImmutableMap.of(
+                GcpAuthConfig.CREDENTIALS_SOURCE_CONFIG, "service_account",
+                GcpAuthConfig.CREDENTIALS_FILE_CONFIG, "/nonexistent/key.json"));
+
+    assertThrows(IOException.class, () -> source.load(SCOPE));
+  }
+
+  @Test
+  public void applicationDefaultSource_distinguishesEnvironments() throws Exception {
+    Path directory = Files.createTempDirectory("adc");
+    Path first = Files.write(directory.resolve("first.json"), "{\"a\":1}".getBytes(UTF_8));
+    Path second = Files.write(directory.resolve("second.json"), "{\"a\":2}".getBytes(UTF_8));
+    Path gcloudConfig = Files.createDirectories(directory.resolve("gcloud"));
+    Path gcloudFile = gcloudConfig.resolve("application_default_credentials.json");
+    Files.write(gcloudFile, "{\"account\":\"a@example.com\"}".getBytes(UTF_8));
+
+    String fromFirst = applicationDefaultSource("GOOGLE_APPLICATION_CREDENTIALS", first);
+    String fromSecond = applicationDefaultSource("GOOGLE_APPLICATION_CREDENTIALS", second);
+    String fromGcloud = applicationDefaultSource("CLOUDSDK_CONFIG", gcloudConfig);
+    Files.write(gcloudFile, "{\"account\":\"b@example.com\"}".getBytes(UTF_8));
+    String fromOtherGcloudAccount = applicationDefaultSource("CLOUDSDK_CONFIG", gcloudConfig);
+
+    assertThat(ImmutableSet.of(fromFirst, fromSecond, fromGcloud, fromOtherGcloudAccount))
+        .hasSize(4);
+    assertThat(applicationDefaultSource("GOOGLE_APPLICATION_CREDENTIALS", first))
+        .isEqualTo(fromFirst);
+  }
+
+  @Test
+  public void applicationDefaultSource_fallsBackToMetadataOrRefuses() throws Exception {
+    Path directory = Files.createTempDirectory("adc");
+
+    assertThat(applicationDefaultSource("CLOUDSDK_CONFIG", directory)).isEqualTo("metadata");
+    assertThat(
+            applicationDefaultSource(
+                "GOOGLE_APPLICATION_CREDENTIALS", directory.resolve("missing.json")))
+        .isNull();
+  }
+
+  @Test
+  public void cacheIdentity_changesWithContentsOfKeyFile() throws Exception {
+    Path key = Files.createTempFile("key", ".json");
+    Files.write(key, "{\"private_key_id\":\"first\"}".getBytes(UTF_8));
+    CredentialSource source =
+        fromConfig(
+            ImmutableMap.of(
+                GcpAuthConfig.CREDENTIALS_SOURCE_CONFIG, "service_account",
+                GcpAuthConfig.CREDENTIALS_FILE_CONFIG, key.toString()));
+
+    String first = source.cacheIdentity();
+    Files.write(key, "{\"private_key_id\":\"second\"}".getBytes(UTF_8));
+    String second = source.cacheIdentity();
+    Files.delete(key);
+
+    assertThat(first).startsWith(source.identity());
+    assertThat(second).isNotEqualTo(first);
+    assertThat(source.cacheIdentity()).isNull();
+  }
+
+  private static String applicationDefaultSource(String variable, Path path) {
+    return CredentialSource.applicationDefaultSource(
+        ImmutableMap.of(variable, path.toString()), null, false);
+  }
+}
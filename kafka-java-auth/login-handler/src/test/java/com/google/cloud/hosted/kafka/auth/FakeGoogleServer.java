@@ -0,0 +1,266 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.api.client.http.apache.v2.ApacheHttpTransport;
+import com.google.auth.http.HttpTransportFactory;
+import com.google.auth.oauth2.ComputeEngineCredentials;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+
+/**
+ * A local stand-in for the Compute Engine metadata server and the Google token endpoints, for
+ * tests that exercise the real credentials and their HTTP requests.
+ *
+ * <p>The server issues access tokens from the metadata server paths, and from <code>/token</code>
+ * for OAuth token and STS token exchange requests. Its latency, error rate and rate limit can be
+ * changed while it runs. Credentials reach it through {@link #transportFactory()}, which sends
+ * every request to the server whatever its URL, including <code>metadata.google.internal</code>.
+ */
+final class FakeGoogleServer implements AutoCloseable {
+
+  static final String ACCOUNT = "fake-service-account@project.iam.gserviceaccount.com";
+  static final String METADATA_TOKEN_PATH =
+      "/computeMetadata/v1/instance/service-accounts/default/token";
+  static final String METADATA_SERVICE_ACCOUNTS_PATH =
+      "/computeMetadata/v1/instance/service-accounts/";
+  static final String METADATA_EMAIL_PATH =
+      "/computeMetadata/v1/instance/service-accounts/default/email";
+  static final String TOKEN_PATH = "/token";
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+
+  private volatile long latencyMs;
+  private volatile double errorRate;
+  private volatile long tokenLifetimeSeconds = 3600;
+  // Guarded by this. Requests beyond the rate limit are rejected with HTTP 429.
+  private double maxRequestsPerSecond = Double.POSITIVE_INFINITY;
+  private double permits;
+  private long permitsUpdatedAtNanos;
+
+  private final AtomicInteger tokenRequests = new AtomicInteger();
+  private final AtomicInteger accountRequests = new AtomicInteger();
+  private final AtomicInteger failedRequests = new AtomicInteger();
+  private final AtomicInteger throttledRequests = new AtomicInteger();
+
+  FakeGoogleServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    // Enough threads that the configured latency does not turn into queueing.
+    executor = Executors.newFixedThreadPool(64);
+    server.setExecutor(executor);
+    server.createContext("/", this::handle);
+    server.start();
+  }
+
+  /** Sets how long every request takes, in milliseconds. */
+  FakeGoogleServer setLatencyMs(long latencyMs) {
+    this.latencyMs = latencyMs;
+    return this;
+  }
+
+  /** Sets the fraction of requests that fail with HTTP 503. */
+  FakeGoogleServer setErrorRate(double errorRate) {
+    this.errorRate = errorRate;
+    return this;
+  }
+
+  /** Limits requests to the given rate, rejecting the others with HTTP 429. */
+  synchronized FakeGoogleServer setMaxRequestsPerSecond(double maxRequestsPerSecond) {
+    this.maxRequestsPerSecond = maxRequestsPerSecond;
+    this.permits = Math.min(maxRequestsPerSecond, 1);
+    this.permitsUpdatedAtNanos = System.nanoTime();
+    return this;
+  }
+
+  FakeGoogleServer setTokenLifetimeSeconds(long tokenLifetimeSeconds) {
+    this.tokenLifetimeSeconds = tokenLifetimeSeconds;
+    return this;
+  }
+
+  /** Returns the number of tokens issued or attempted, including failed and throttled ones. */
+  int tokenRequests() {
+    return tokenRequests.get();
+  }
+
+  int accountRequests() {
+    return accountRequests.get();
+  }
+
+  int failedRequests() {
+    return failedRequests.get();
+  }
+
+  int throttledRequests() {
+    return throttledRequests.get();
+  }
+
+  String url() {
+    return "http://" + host().toHostString();
+  }
+
+  private HttpHost host() {
+    return new HttpHost(
+        server.getAddress().getAddress().getHostAddress(), server.getAddress().getPort(), "http");
+  }
+
+  /** Returns a transport factory that sends every request to this server. */
+  HttpTransportFactory transportFactory() {
+    HttpHost target = host();
+    ApacheHttpTransport transport =
+        new ApacheHttpTransport(
+            ApacheHttpTransport.newDefaultHttpClientBuilder()
+                .setMaxConnTotal(256)
+                .setMaxConnPerRoute(256)
+                .setRoutePlanner((host, request, context) -> new HttpRoute(target))
+                .build());
+    return () -> transport;
+  }
+
+  /** Returns metadata server credentials that fetch their tokens from this server. */
+  GoogleCredentials metadataCredentials() {
+    return ComputeEngineCredentials.newBuilder()
+        .setHttpTransportFactory(transportFactory())
+        .build();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try (InputStream in = exchange.getRequestBody()) {
+      while (in.read() != -1) {}
+    }
+    String path = exchange.getRequestURI().getPath();
+    boolean tokenRequest = path.equals(METADATA_TOKEN_PATH) || path.equals(TOKEN_PATH);
+    if (tokenRequest) {
+      tokenRequests.incrementAndGet();
+    } else {
+      accountRequests.incrementAndGet();
+    }
+    sleep(latencyMs);
+    if (path.startsWith("/computeMetadata/")
+        && !"Google".equals(exchange.getRequestHeaders().getFirst("Metadata-Flavor"))) {
+      respond(exchange, 403, "text/plain", "Missing Metadata-Flavor header");
+      return;
+    }
+    if (!tryAcquirePermit()) {
+      throttledRequests.incrementAndGet();
+      respond(exchange, 429, "application/json", error("RESOURCE_EXHAUSTED"));
+      return;
+    }
+    if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+      failedRequests.incrementAndGet();
+      respond(exchange, 503, "application/json", error("UNAVAILABLE"));
+      return;
+    }
+    if (tokenRequest) {
+      respond(exchange, 200, "application/json", tokenResponse());
+    } else if (path.equals(METADATA_EMAIL_PATH)) {
+      respond(exchange, 200, "application/text", ACCOUNT);
+    } else if (path.equals(METADATA_SERVICE_ACCOUNTS_PATH)) {
+      respond(
+          exchange,
+          200,
+          "application/json",
+          "{\"default\":{\"aliases\":[\"default\"],\"email\":\""
+              + ACCOUNT
+              + "\",\"scopes\":[\"https://www.googleapis.com/auth/cloud-platform\"]}}");
+    } else {
+      respond(exchange, 404, "text/plain", "Not found");
+    }
+  }
+
+  private String tokenResponse() {
+    // STS token exchange responses carry the same fields, plus issued_token_type.
+    return "{\"access_token\":\"fake-token-"
+        + tokenRequests.get()
+        + "\",\"expires_in\":"
+        + tokenLifetimeSeconds
+        + ",\"token_type\":\"Bearer\""
+        + ",\"issued_token_type\":\"urn:ietf:params:oauth:token-type:access_token\"}";
+  }
+
+  private static String error(String status) {
+    return "{\"error\":{\"code\":"
+        + (status.equals("UNAVAILABLE") ? 503 : 429)
+        + ",\"status\":\""
+        + status
+        + "\",\"message\":\"Injected by the fake server\"}}";
+  }
+
+  private synchronized boolean tryAcquirePermit() {
+    if (Double.isInfinite(maxRequestsPerSecond)) {
+      return true;
+    }
+    long now = System.nanoTime();
+    permits =
+        Math.min(
+            Math.max(maxRequestsPerSecond, 1),
+            permits + (now - permitsUpdatedAtNanos) * maxRequestsPerSecond / 1e9);
+    permitsUpdatedAtNanos = now;
+    if (permits < 1) {
+      return false;
+    }
+    permits--;
+    return true;
+  }
+
+  private static void respond(HttpExchange exchange, int status, String contentType, String body)
+      throws IOException {
+    byte[] bytes = body.getBytes(UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", contentType);
+    exchange.getResponseHeaders().set("Metadata-Flavor", "Google");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  private static void sleep(long millis) {
+    if (millis > 0) {
+      try {
+        Thread.sleep(millis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+    try {
+      executor.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -27,12 +27,18 @@ import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.security.auth.callback.Callback;
 import javax.security.auth.login.AppConfigurationEntry;
 import javax.security.auth.login.AppConfigurationEntry.LoginModuleControlFlag;
+import org.apache.kafka.common.config.ConfigException;
 import org.apache.kafka.common.security.oauthbearer.OAuthBearerToken;
 import org.apache.kafka.common.security.oauthbearer.OAuthBearerTokenCallback;
 import org.apache.kafka.common.security.oauthbearer.internals.secured.SerializedJwt;
@@ -187,4 +193,195 @@ public final class GcpLoginCallbackHandlerTest {
     assertThat(oauthBearerToken.scope()).isEqualTo(ImmutableSet.of("kafka"));
     assertThat(oauthBearerToken.principalName()).isEqualTo("fake-environment-account@google.com");
   }
+
+  @Test
+  public void fail_withInvalidRefreshWindowFactor() {
+    GcpLoginCallbackHandler gcpOAuthBearerLoginCallbackHandler =
+        new GcpLoginCallbackHandler(new FakeGoogleCredentials());
+    Map<String, String> options = new HashMap<>();
+    options.put(GcpAuthConfig.BACKGROUND_REFRESH_ENABLE_CONFIG, "true");
+    options.put(GcpAuthConfig.REFRESH_WINDOW_FACTOR_CONFIG, "1.5");
+    List<AppConfigurationEntry> jaasConfig =
+        Collections.singletonList(
+            new AppConfigurationEntry(
+                "OAuthBearerLoginModule", LoginModuleControlFlag.REQUIRED, options));
+
+    assertThrows(
+        ConfigException.class,
+        () ->
+            gcpOAuthBearerLoginCallbackHandler.configure(
+                new HashMap<String, Object>(), "OAUTHBEARER", jaasConfig));
+  }
+
+  @Test
+  public void fail_withCredentialsSourceAndSources() {
+    GcpLoginCallbackHandler handler = new GcpLoginCallbackHandler();
+    Map<String, String> options = new HashMap<>();
+    options.put(GcpAuthConfig.CREDENTIALS_SOURCES_CONFIG, "metadata,application_default");
+    options.put(GcpAuthConfig.CREDENTIALS_SOURCE_CONFIG, "metadata");
+    List<AppConfigurationEntry> jaasConfig =
+        Collections.singletonList(
+            new AppConfigurationEntry(
+                "OAuthBearerLoginModule", LoginModuleControlFlag.REQUIRED, options));
+
+    assertThrows(
+        ConfigException.class,
+        () -> handler.configure(new HashMap<String, Object>(), "OAUTHBEARER", jaasConfig));
+  }
+
+  @Test
+  public void fail_withBrokerSourceWithoutUrl() {
+    GcpLoginCallbackHandler handler = new GcpLoginCallbackHandler();
+    Map<String, String> options = new HashMap<>();
+    options.put(GcpAuthConfig.CREDENTIALS_SOURCES_CONFIG, "broker");
+    List<AppConfigurationEntry> jaasConfig =
+        Collections.singletonList(
+            new AppConfigurationEntry(
+                "OAuthBearerLoginModule", LoginModuleControlFlag.REQUIRED, options));
+
+    ConfigException e =
+        assertThrows(
+            ConfigException.class,
+            () -> handler.configure(new HashMap<String, Object>(), "OAUTHBEARER", jaasConfig));
+    assertThat(e).hasMessageThat().contains(GcpAuthConfig.BROKER_URL_CONFIG);
+    handler.close();
+  }
+
+  @Test
+  public void success_principalResolvedOnce() throws Exception {
+    AtomicInteger lookups = new AtomicInteger();
+    FakeGoogleCredentials credentials =
+        new FakeGoogleCredentials() {
+          @Override
+          public String getAccount() {
+            lookups.incrementAndGet();
+            return super.getAccount();
+          }
+        };
+    GcpLoginCallbackHandler gcpOAuthBearerLoginCallbackHandler =
+        createHandlerWithEnv(credentials, null);
+
+    for (int i = 0; i < 3; i++) {
+      OAuthBearerTokenCallback oauthBearerTokenCallback = new OAuthBearerTokenCallback();
+      gcpOAuthBearerLoginCallbackHandler.handle(new Callback[] {oauthBearerTokenCallback});
+      assertThat(oauthBearerTokenCallback.token().principalName())
+          .isEqualTo("fake-account@google.com");
+    }
+    assertThat(lookups.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void success_withConfiguredPrincipal() throws Exception {
+    OAuthBearerTokenCallback oauthBearerTokenCallback = new OAuthBearerTokenCallback();
+    GcpLoginCallbackHandler gcpOAuthBearerLoginCallbackHandler =
+        new GcpLoginCallbackHandlerWithEnv(
+            new UnsupportedCredentials(), "fake-environment-account@google.com");
+    Map<String, String> options = new HashMap<>();
+    options.put(GcpAuthConfig.PRINCIPAL_CONFIG, "fake-configured-account@google.com");
+    gcpOAuthBearerLoginCallbackHandler.configure(
+        new HashMap<String, Object>(),
+        "OAUTHBEARER",
+        Collections.singletonList(
+            new AppConfigurationEntry(
+                "OAuthBearerLoginModule", LoginModuleControlFlag.REQUIRED, options)));
+
+    gcpOAuthBearerLoginCallbackHandler.handle(new Callback[] {oauthBearerTokenCallback});
+
+    assertThat(oauthBearerTokenCallback.token().principalName())
+        .isEqualTo("fake-configured-account@google.com");
+  }
+
+  @Test
+  public void success_reportedLifetimeIsCappedAndSpread() throws Exception {
+    GcpLoginCallbackHandler gcpOAuthBearerLoginCallbackHandler =
+        new GcpLoginCallbackHandler(new FakeGoogleCredentials());
+    Map<String, String> options = new HashMap<>();
+    options.put(GcpAuthConfig.TOKEN_LIFETIME_MAX_MS_CONFIG, "600000");
+    options.put(GcpAuthConfig.TOKEN_LIFETIME_JITTER_CONFIG, "0.2");
+    gcpOAuthBearerLoginCallbackHandler.configure(
+        new HashMap<String, Object>(),
+        "OAUTHBEARER",
+        Collections.singletonList(
+            new AppConfigurationEntry(
+                "OAuthBearerLoginModule", LoginModuleControlFlag.REQUIRED, options)));
+
+    for (int i = 0; i < 10; i++) {
+      OAuthBearerTokenCallback oauthBearerTokenCallback = new OAuthBearerTokenCallback();
+      gcpOAuthBearerLoginCallbackHandler.handle(new Callback[] {oauthBearerTokenCallback});
+      OAuthBearerToken token = oauthBearerTokenCallback.token();
+      long lifetimeMs = token.lifetimeMs() - token.startTimeMs();
+      assertThat(lifetimeMs).isAtMost(600_000L);
+      assertThat(lifetimeMs).isAtLeast(480_000L);
+    }
+  }
+
+  @Test
+  public void success_reportedLifetimeIsSpreadByDefault() throws Exception {
+    GcpLoginCallbackHandler handler = new GcpLoginCallbackHandler(new FakeGoogleCredentials());
+    Map<String, String> options = new HashMap<>();
+    options.put(GcpAuthConfig.TOKEN_LIFETIME_MAX_MS_CONFIG, "600000");
+    handler.configure(
+        new HashMap<String, Object>(),
+        "OAUTHBEARER",
+        Collections.singletonList(
+            new AppConfigurationEntry(
+                "OAuthBearerLoginModule", LoginModuleControlFlag.REQUIRED, options)));
+
+    Set<Long> lifetimesMs = new HashSet<>();
+    for (int i = 0; i < 10; i++) {
+      OAuthBearerTokenCallback callback = new OAuthBearerTokenCallback();
+      handler.handle(new Callback[] {callback});
+      OAuthBearerToken token = callback.token();
+      long lifetimeMs = token.lifetimeMs() - token.startTimeMs();
+      assertThat(lifetimeMs).isAtMost(600_000L);
+      assertThat(lifetimeMs).isAtLeast(540_000L);
+      lifetimesMs.add(lifetimeMs);
+    }
+    assertThat(lifetimesMs.size()).isGreaterThan(1);
+  }
+
+  @Test
+  public void success_reportedLifetimeIsNotSpreadWithoutJitter() throws Exception {
+    GcpLoginCallbackHandler handler = new GcpLoginCallbackHandler(new FakeGoogleCredentials());
+    Map<String, String> options = new HashMap<>();
+    options.put(GcpAuthConfig.TOKEN_LIFETIME_MAX_MS_CONFIG, "600000");
+    options.put(GcpAuthConfig.TOKEN_LIFETIME_JITTER_CONFIG, "0.0");
+    handler.configure(
+        new HashMap<String, Object>(),
+        "OAUTHBEARER",
+        Collections.singletonList(
+            new AppConfigurationEntry(
+                "OAuthBearerLoginModule", LoginModuleControlFlag.REQUIRED, options)));
+
+    for (int i = 0; i < 10; i++) {
+      OAuthBearerTokenCallback callback = new OAuthBearerTokenCallback();
+      handler.handle(new Callback[] {callback});
+      OAuthBearerToken token = callback.token();
+      assertThat(token.lifetimeMs() - token.startTimeMs()).isEqualTo(600_000L);
+    }
+  }
+
+  @Test
+  public void reportedLifetimeMs_capsAndShortensLifetime() {
+    // No cap and no jitter reports the expiry.
+    assertThat(GcpLoginCallbackHandler.reportedLifetimeMs(1000, 5000, Long.MAX_VALUE, 0.0, 0.7))
+        .isEqualTo(5000L);
+    assertThat(GcpLoginCallbackHandler.reportedLifetimeMs(1000, 5000, 2000, 0.0, 0.7))
+        .isEqualTo(3000L);
+    assertThat(GcpLoginCallbackHandler.reportedLifetimeMs(1000, 5000, Long.MAX_VALUE, 0.25, 1.0))
+        .isEqualTo(4000L);
+    assertThat(GcpLoginCallbackHandler.reportedLifetimeMs(1000, 5000, 2000, 0.5, 0.5))
+        .isEqualTo(2500L);
+    // Expired tokens are reported as such.
+    assertThat(GcpLoginCallbackHandler.reportedLifetimeMs(1000, 500, 2000, 0.5, 0.5))
+        .isEqualTo(1000L);
+  }
+
+  @Test
+  public void constructor_doesNotLoadCredentials() {
+    // Construction must not run the application default credentials discovery, so closing an
+    // unconfigured handler succeeds even where no credentials are available.
+    GcpLoginCallbackHandler handler = new GcpLoginCallbackHandler();
+    handler.close();
+  }
 }
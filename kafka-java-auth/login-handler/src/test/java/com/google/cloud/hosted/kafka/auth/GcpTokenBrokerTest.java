@@ -0,0 +1,222 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
+
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.security.auth.callback.Callback;
+import org.apache.kafka.common.security.oauthbearer.OAuthBearerToken;
+import org.apache.kafka.common.security.oauthbearer.OAuthBearerTokenCallback;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit test for GcpTokenBroker. */
+@RunWith(JUnit4.class)
+public final class GcpTokenBrokerTest {
+
+  private static GcpTokenBroker startBroker(RefreshGuardTest.FaultInjectingCredentials credentials)
+      throws IOException {
+    return new GcpTokenBroker(SharedCredentials.unshared(credentials), null, 0, 4);
+  }
+
+  private static URL url(GcpTokenBroker broker) throws IOException {
+    return new URL("http://localhost:" + broker.getPort());
+  }
+
+  private static HttpURLConnection request(GcpTokenBroker broker, String method)
+      throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) url(broker).openConnection();
+    connection.setRequestMethod(method);
+    if (method.equals("POST")) {
+      connection.setDoOutput(true);
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write("grant_type=client_credentials".getBytes(UTF_8));
+      }
+    }
+    return connection;
+  }
+
+  private static GenericJson readJson(HttpURLConnection connection) throws IOException {
+    int status = connection.getResponseCode();
+    try (InputStream in =
+        status == HttpURLConnection.HTTP_OK
+            ? connection.getInputStream()
+            : connection.getErrorStream()) {
+      return GsonFactory.getDefaultInstance()
+          .fromString(new String(ByteStreams.toByteArray(in), UTF_8), GenericJson.class);
+    }
+  }
+
+  private static RefreshGuardTest.FaultInjectingCredentials longLivedCredentials() {
+    RefreshGuardTest.FaultInjectingCredentials credentials =
+        new RefreshGuardTest.FaultInjectingCredentials();
+    credentials.lifetimeSeconds = 3600;
+    return credentials;
+  }
+
+  @Test
+  public void get_returnsKafkaToken() throws Exception {
+    try (GcpTokenBroker broker = startBroker(longLivedCredentials())) {
+      HttpURLConnection connection = request(broker, "GET");
+      GenericJson response = readJson(connection);
+
+      assertThat(connection.getResponseCode()).isEqualTo(200);
+      assertThat(response.get("token_type")).isEqualTo("Bearer");
+      assertThat(((Number) response.get("expires_in")).longValue()).isGreaterThan(3500L);
+      String[] segments = ((String) response.get("access_token")).split("\\.");
+      assertThat(new String(Base64.getUrlDecoder().decode(segments[2]), UTF_8))
+          .isEqualTo("token-1");
+      assertThat(new String(Base64.getUrlDecoder().decode(segments[1]), UTF_8))
+          .contains("\"sub\":\"fake-account@google.com\"");
+    }
+  }
+
+  @Test
+  public void post_returnsKafkaToken() throws Exception {
+    try (GcpTokenBroker broker = startBroker(longLivedCredentials())) {
+      HttpURLConnection connection = request(broker, "POST");
+      GenericJson response = readJson(connection);
+
+      assertThat(connection.getResponseCode()).isEqualTo(200);
+      assertThat(response.get("access_token")).isNotNull();
+    }
+  }
+
+  @Test
+  public void otherMethods_areRejected() throws Exception {
+    try (GcpTokenBroker broker = startBroker(longLivedCredentials())) {
+      HttpURLConnection connection = request(broker, "DELETE");
+
+      assertThat(connection.getResponseCode()).isEqualTo(405);
+      assertThat(readJson(connection).get("error")).isEqualTo("invalid_request");
+    }
+  }
+
+  @Test
+  public void failingCredentials_returnUnavailable() throws Exception {
+    RefreshGuardTest.FaultInjectingCredentials credentials = longLivedCredentials();
+    credentials.failing = true;
+    try (GcpTokenBroker broker = startBroker(credentials)) {
+      HttpURLConnection connection = request(broker, "GET");
+
+      assertThat(connection.getResponseCode()).isEqualTo(503);
+      assertThat(readJson(connection).get("error")).isEqualTo("temporarily_unavailable");
+    }
+  }
+
+  @Test
+  public void concurrentRequests_refreshOnce() throws Exception {
+    RefreshGuardTest.FaultInjectingCredentials credentials = longLivedCredentials();
+    ExecutorService clients = Executors.newFixedThreadPool(8);
+    try (GcpTokenBroker broker = startBroker(credentials)) {
+      List<Future<Integer>> statuses = new ArrayList<>();
+      for (int i = 0; i < 64; i++) {
+        statuses.add(clients.submit(() -> request(broker, "GET").getResponseCode()));
+      }
+      for (Future<Integer> status : statuses) {
+        assertThat(status.get()).isEqualTo(200);
+      }
+    } finally {
+      clients.shutdown();
+    }
+
+    assertThat(credentials.attempts.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void loginCallbackHandler_fetchesTokensFromBroker() throws Exception {
+    RefreshGuardTest.FaultInjectingCredentials credentials = longLivedCredentials();
+    try (GcpTokenBroker broker = startBroker(credentials)) {
+      GcpLoginCallbackHandler handler = new GcpLoginCallbackHandler();
+      handler.configure(
+          ImmutableMap.of(GcpAuthConfig.BROKER_URL_CONFIG, url(broker).toString()),
+          "OAUTHBEARER",
+          null);
+
+      for (int i = 0; i < 5; i++) {
+        OAuthBearerTokenCallback callback = new OAuthBearerTokenCallback();
+        handler.handle(new Callback[] {callback});
+        OAuthBearerToken token = callback.token();
+        assertThat(token.principalName()).isEqualTo("fake-account@google.com");
+        assertThat(token.lifetimeMs()).isGreaterThan(System.currentTimeMillis());
+        String[] segments = token.value().split("\\.");
+        assertThat(new String(Base64.getUrlDecoder().decode(segments[2]), UTF_8))
+            .isEqualTo("token-1");
+      }
+      handler.close();
+    }
+
+    assertThat(credentials.attempts.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void loginCallbackHandler_reportsUnavailableBroker() throws Exception {
+    RefreshGuardTest.FaultInjectingCredentials credentials = longLivedCredentials();
+    credentials.failing = true;
+    try (GcpTokenBroker broker = startBroker(credentials)) {
+      GcpLoginCallbackHandler handler = new GcpLoginCallbackHandler();
+      handler.configure(
+          ImmutableMap.of(GcpAuthConfig.BROKER_URL_CONFIG, url(broker).toString()),
+          "OAUTHBEARER",
+          null);
+
+      IOException e =
+          assertThrows(
+              IOException.class,
+              () -> handler.handle(new Callback[] {new OAuthBearerTokenCallback()}));
+
+      assertThat(e).hasMessageThat().contains("HTTP status 503");
+      handler.close();
+    }
+  }
+
+  @Test
+  public void parse_readsExpiryAndPrincipal() throws Exception {
+    String claims =
+        Base64.getUrlEncoder()
+            .withoutPadding()
+            .encodeToString("{\"exp\":1700000000.5,\"sub\":\"user@example.com\"}".getBytes(UTF_8));
+
+    KafkaToken token = TokenBrokerClient.parse("e30." + claims + ".c2ln");
+
+    assertThat(token.expiresAtMs).isEqualTo(1_700_000_000_500L);
+    assertThat(token.principal).isEqualTo("user@example.com");
+  }
+
+  @Test
+  public void parse_rejectsMalformedTokens() {
+    assertThrows(IOException.class, () -> TokenBrokerClient.parse("not-a-token"));
+  }
+}
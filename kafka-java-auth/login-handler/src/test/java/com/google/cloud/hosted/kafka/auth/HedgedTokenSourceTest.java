@@ -0,0 +1,264 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.auth.oauth2.AccessToken;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit test for HedgedTokenSource. */
+@RunWith(JUnit4.class)
+public final class HedgedTokenSourceTest {
+  private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+
+  private final RecordingSpan span = new RecordingSpan();
+
+  @Test
+  public void getToken_usesFirstSourceWhenItAnswersInTime() throws Exception {
+    FakeSource primary = FakeSource.answering("primary");
+    FakeSource secondary = FakeSource.answering("secondary");
+    HedgedTokenSource hedged =
+        new HedgedTokenSource(ImmutableList.of(primary, secondary), 10_000);
+
+    KafkaToken token = hedged.getToken(TokenMetrics.NONE, span);
+
+    assertThat(token.value).isEqualTo("primary-token");
+    assertThat(secondary.requests.get()).isEqualTo(0);
+    assertThat(span.attributes)
+        .isEqualTo(ImmutableMap.of(TokenTracing.CREDENTIAL_TYPE_ATTRIBUTE, "primary"));
+  }
+
+  @Test
+  public void getToken_hedgesSlowSourceAndLetsItComplete() throws Exception {
+    FakeSource primary = FakeSource.blocking("primary");
+    FakeSource secondary = FakeSource.answering("secondary");
+    HedgedTokenSource hedged = new HedgedTokenSource(ImmutableList.of(primary, secondary), 50);
+
+    KafkaToken token = hedged.getToken(TokenMetrics.NONE, span);
+
+    assertThat(token.value).isEqualTo("secondary-token");
+    assertThat(span.attributes).containsEntry(TokenTracing.CREDENTIAL_TYPE_ATTRIBUTE, "secondary");
+    assertThat(span.attributes).containsEntry(TokenTracing.HEDGED_ATTRIBUTE, "true");
+    primary.release.countDown();
+    assertThat(primary.answered.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(primary.interrupted).isFalse();
+  }
+
+  @Test
+  public void getToken_losingRefreshOfSharedCredentialsIsNotAFailure() throws Exception {
+    CountDownLatch refreshing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger refreshes = new AtomicInteger();
+    SharedCredentials credentials =
+        SharedCredentials.unshared(
+            new GcpLoginCallbackHandler.StubGoogleCredentials() {
+              @Override
+              public AccessToken refreshAccessToken() throws IOException {
+                refreshes.incrementAndGet();
+                refreshing.countDown();
+                try {
+                  release.await();
+                } catch (InterruptedException e) {
+                  // As the limiter and the connection pool report an interrupt.
+                  throw new InterruptedIOException("Interrupted while refreshing");
+                }
+                return new AccessToken(
+                    "shared-token", new Date(System.currentTimeMillis() + HOUR_MS));
+              }
+
+              @Override
+              String getAccount() {
+                return "fake-account@google.com";
+              }
+            });
+    HedgedTokenSource hedged =
+        new HedgedTokenSource(
+            ImmutableList.of(
+                new SharedCredentialsSource(credentials), FakeSource.answering("secondary")),
+            50);
+
+    assertThat(hedged.getToken(TokenMetrics.NONE, span).value).isEqualTo("secondary-token");
+    assertThat(refreshing.await(5, TimeUnit.SECONDS)).isTrue();
+    release.countDown();
+
+    // Waits for the losing refresh, whose token is kept rather than backed off from.
+    assertThat(credentials.getAccessToken(TokenMetrics.NONE).getTokenValue())
+        .isEqualTo("shared-token");
+    assertThat(refreshes.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void getToken_asksNextSourceRightAwayOnFailure() throws Exception {
+    FakeSource primary = FakeSource.failing("primary");
+    FakeSource secondary = FakeSource.answering("secondary");
+    HedgedTokenSource hedged =
+        new HedgedTokenSource(ImmutableList.of(primary, secondary), 60_000);
+
+    long startNanos = System.nanoTime();
+    KafkaToken token = hedged.getToken(TokenMetrics.NONE, span);
+
+    assertThat(token.value).isEqualTo("secondary-token");
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)).isLessThan(30_000L);
+  }
+
+  @Test
+  public void getToken_rejectsExpiredToken() throws Exception {
+    FakeSource primary = new FakeSource("primary", 0, null, -1);
+    FakeSource secondary = FakeSource.answering("secondary");
+    HedgedTokenSource hedged =
+        new HedgedTokenSource(ImmutableList.of(primary, secondary), 60_000);
+
+    assertThat(hedged.getToken(TokenMetrics.NONE, span).value).isEqualTo("secondary-token");
+  }
+
+  @Test
+  public void getToken_throwsWhenEverySourceFails() {
+    HedgedTokenSource hedged =
+        new HedgedTokenSource(
+            ImmutableList.of(
+                FakeSource.failing("primary"),
+                FakeSource.failing("secondary"),
+                FakeSource.failing("tertiary")),
+            10);
+
+    IOException e =
+        assertThrows(IOException.class, () -> hedged.getToken(TokenMetrics.NONE, span));
+    assertThat(e).hasMessageThat().contains("failed");
+    assertThat(e.getSuppressed().length).isEqualTo(2);
+  }
+
+  @Test
+  public void close_closesEverySource() {
+    FakeSource primary = FakeSource.answering("primary");
+    FakeSource secondary = FakeSource.answering("secondary");
+
+    new HedgedTokenSource(ImmutableList.of(primary, secondary), 10).close();
+
+    assertThat(primary.closed).isTrue();
+    assertThat(secondary.closed).isTrue();
+  }
+
+  private static final class FakeSource implements HedgedTokenSource.Source {
+    private final String name;
+    private final long delayMs;
+    private final IOException failure;
+    private final long lifetimeMs;
+    final AtomicInteger requests = new AtomicInteger();
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch answered = new CountDownLatch(1);
+    volatile boolean interrupted;
+    volatile boolean closed;
+
+    FakeSource(String name, long delayMs, IOException failure, long lifetimeMs) {
+      this.name = name;
+      this.delayMs = delayMs;
+      this.failure = failure;
+      this.lifetimeMs = lifetimeMs;
+    }
+
+    static FakeSource answering(String name) {
+      return new FakeSource(name, 0, null, HOUR_MS);
+    }
+
+    static FakeSource blocking(String name) {
+      return new FakeSource(name, HOUR_MS, null, HOUR_MS);
+    }
+
+    static FakeSource failing(String name) {
+      return new FakeSource(name, 0, new IOException(name + " failed"), HOUR_MS);
+    }
+
+    @Override
+    public KafkaToken getToken(TokenMetrics metrics) throws IOException {
+      requests.incrementAndGet();
+      if (delayMs > 0) {
+        try {
+          release.await(delayMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          interrupted = true;
+          throw new IOException("interrupted", e);
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+      answered.countDown();
+      return new KafkaToken(name + "-token", System.currentTimeMillis() + lifetimeMs, name);
+    }
+
+    @Override
+    public String credentialType() {
+      return name;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+
+  private static final class SharedCredentialsSource implements HedgedTokenSource.Source {
+    private final SharedCredentials credentials;
+
+    SharedCredentialsSource(SharedCredentials credentials) {
+      this.credentials = credentials;
+    }
+
+    @Override
+    public KafkaToken getToken(TokenMetrics metrics) throws IOException {
+      AccessToken token = credentials.getAccessToken(metrics);
+      return new KafkaToken(
+          token.getTokenValue(), token.getExpirationTime().getTime(), "shared-account");
+    }
+
+    @Override
+    public String credentialType() {
+      return "shared";
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  private static final class RecordingSpan extends TokenTracing.Span {
+    final Map<String, String> attributes = new HashMap<>();
+
+    @Override
+    void setAttribute(String key, String value) {
+      attributes.put(key, value);
+    }
+
+    @Override
+    void setAttribute(String key, boolean value) {
+      attributes.put(key, String.valueOf(value));
+    }
+  }
+}
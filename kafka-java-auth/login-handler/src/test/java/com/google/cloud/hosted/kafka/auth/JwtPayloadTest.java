@@ -0,0 +1,80 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.util.Base64;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit test for JwtPayload. */
+@RunWith(JUnit4.class)
+public final class JwtPayloadTest {
+
+  private static String jwt(String claims) {
+    Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    return encoder.encodeToString("{\"alg\":\"RS256\"}".getBytes(UTF_8))
+        + "."
+        + encoder.encodeToString(claims.getBytes(UTF_8))
+        + "."
+        + encoder.encodeToString("signature".getBytes(UTF_8));
+  }
+
+  @Test
+  public void decode_readsTopLevelClaims() throws Exception {
+    JwtPayload payload =
+        JwtPayload.decode(
+            jwt(
+                "{\"aud\":[\"a\",\"b\"],\"email\":\"user@example.com\",\"exp\":1700000000,"
+                    + "\"iat\":1699996400.5,\"email_verified\":true,"
+                    + "\"google\":{\"compute_engine\":{\"project_id\":\"p\"}}}"));
+
+    assertThat(payload.getString("email")).isEqualTo("user@example.com");
+    assertThat(payload.getNumber("exp").longValue()).isEqualTo(1700000000L);
+    assertThat(payload.getNumber("iat").doubleValue()).isEqualTo(1699996400.5);
+    // Claims of other types are skipped.
+    assertThat(payload.getString("aud")).isNull();
+    assertThat(payload.getString("google")).isNull();
+    assertThat(payload.getString("email_verified")).isNull();
+    assertThat(payload.getNumber("email")).isNull();
+    assertThat(payload.getString("missing")).isNull();
+  }
+
+  @Test
+  public void decode_readsUnpaddedAndUrlSafePayloads() throws Exception {
+    // Encodes to a payload with '-' and '_', and without padding.
+    String subject = "?>>~~~?";
+
+    JwtPayload payload = JwtPayload.decode(jwt("{\"sub\":\"" + subject + "\"}"));
+
+    assertThat(payload.getString("sub")).isEqualTo(subject);
+  }
+
+  @Test
+  public void decode_rejectsMalformedTokens() {
+    assertThrows(IOException.class, () -> JwtPayload.decode("not-a-token"));
+    assertThrows(IOException.class, () -> JwtPayload.decode("a.b"));
+    assertThrows(IOException.class, () -> JwtPayload.decode("a.!!!.c"));
+    assertThrows(IOException.class, () -> JwtPayload.decode(jwt("[1, 2]")));
+    assertThrows(IOException.class, () -> JwtPayload.decode(jwt("{\"sub\":")));
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.auth.oauth2.AccessToken;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import javax.security.auth.callback.Callback;
+import org.apache.kafka.common.security.oauthbearer.OAuthBearerTokenCallback;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit test for KafkaTokenEncoder. */
+@RunWith(JUnit4.class)
+public final class KafkaTokenEncoderTest {
+  private static final int WARMUP_ITERATIONS = 20_000;
+  private static final int MEASURED_ITERATIONS = 100_000;
+
+  // The encoding used by earlier versions of this library, kept as a reference.
+  private static String encodeWithGson(
+      String tokenValue, long expirationEpochSeconds, long issuedAtEpochSeconds, String subject) {
+    Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    String header = new Gson().toJson(ImmutableMap.of("typ", "JWT", "alg", "GOOG_OAUTH2_TOKEN"));
+    String claims =
+        new Gson()
+            .toJson(
+                ImmutableMap.of(
+                    "exp", expirationEpochSeconds,
+                    "iat", issuedAtEpochSeconds,
+                    "scope", "kafka",
+                    "sub", subject));
+    return String.join(
+        ".",
+        encoder.encodeToString(header.getBytes(UTF_8)),
+        encoder.encodeToString(claims.getBytes(UTF_8)),
+        encoder.encodeToString(tokenValue.getBytes(UTF_8)));
+  }
+
+  private static AccessToken newAccessToken(String value) {
+    return new AccessToken(value, Date.from(Instant.now().plusSeconds(3600)));
+  }
+
+  @Test
+  public void encode_matchesReferenceEncoding() {
+    String[] subjects = {
+      "fake-account@google.com",
+      "principal://iam.googleapis.com/locations/global/workforcePools/pool/subject/a=b&c<d>'e'",
+      "quote\"backslash\\tab\tnewline\ncontrol\u0001separator\u2028\u2029",
+      "unicode-\u00f1-\u65e5\u672c-\ud83d\ude00",
+      ""
+    };
+    for (String subject : subjects) {
+      assertThat(KafkaTokenEncoder.encode("ya29.token", 1_900_000_000L, 1_800_000_000L, subject))
+          .isEqualTo(encodeWithGson("ya29.token", 1_900_000_000L, 1_800_000_000L, subject));
+    }
+  }
+
+  @Test
+  public void encode_reusesEncodingUntilTokenRotates() {
+    KafkaTokenEncoder encoder = new KafkaTokenEncoder();
+    AccessToken token = newAccessToken("first-token");
+
+    String first = encoder.encode(token, "fake-account@google.com");
+    assertThat(encoder.encode(token, "fake-account@google.com")).isSameInstanceAs(first);
+
+    String otherSubject = encoder.encode(token, "other-account@google.com");
+    assertThat(otherSubject).isNotEqualTo(first);
+
+    String rotated = encoder.encode(newAccessToken("second-token"), "other-account@google.com");
+    assertThat(rotated).isNotEqualTo(otherSubject);
+    assertThat(new String(Base64.getUrlDecoder().decode(rotated.split("\\.")[2]), UTF_8))
+        .isEqualTo("second-token");
+  }
+
+  @Test
+  public void tokenCallback_reusesCachedEncoding() throws Exception {
+    GcpLoginCallbackHandler handler =
+        new GcpLoginCallbackHandler(new GcpLoginCallbackHandlerTest.FakeGoogleCredentials());
+    handler.configure(new HashMap<String, Object>(), "OAUTHBEARER", null);
+    OAuthBearerTokenCallback first = new OAuthBearerTokenCallback();
+    OAuthBearerTokenCallback second = new OAuthBearerTokenCallback();
+
+    handler.handle(new Callback[] {first});
+    handler.handle(new Callback[] {second});
+
+    // A callback served from the cached access token does not encode the Kafka token again.
+    assertThat(second.token().value()).isSameInstanceAs(first.token().value());
+    handler.close();
+  }
+
+  // The bounds of the allocation tests are several times what a warmed-up HotSpot JVM allocates,
+  // so that they catch a regression such as encoding the token on every call, and not differences
+  // between JITs.
+
+  @Test
+  public void allocationProfile_cachedEncodeAllocatesAlmostNothing() {
+    KafkaTokenEncoder encoder = new KafkaTokenEncoder();
+    AccessToken token = newAccessToken("fake-access-token");
+
+    double bytesPerCall =
+        allocatedBytesPerCall(() -> encoder.encode(token, "fake-account@google.com"));
+
+    assertThat(bytesPerCall).isLessThan(64.0);
+  }
+
+  @Test
+  public void allocationProfile_tokenCallbackAllocatesLittle() throws Exception {
+    GcpLoginCallbackHandler handler =
+        new GcpLoginCallbackHandler(new GcpLoginCallbackHandlerTest.FakeGoogleCredentials());
+    handler.configure(new HashMap<String, Object>(), "OAUTHBEARER", null);
+    Callback[] callbacks = {new OAuthBearerTokenCallback()};
+
+    double bytesPerCall =
+        allocatedBytesPerCall(
+            () -> {
+              try {
+                handler.handle(callbacks);
+              } catch (Exception e) {
+                throw new AssertionError(e);
+              }
+            });
+
+    // A callback served from the cached encoding only allocates the returned token and a few small
+    // objects; encoding the token again on every callback would exceed the bound.
+    assertThat(bytesPerCall).isLessThan(2048.0);
+    handler.close();
+  }
+
+  // Skips the test where allocations cannot be measured per thread, or where an agent, such as a
+  // coverage tool, instruments the code and allocates on its own.
+  private static double allocatedBytesPerCall(Runnable call) {
+    assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    assumeTrue(threads.isThreadAllocatedMemorySupported());
+    for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+      assumeTrue(!argument.startsWith("-javaagent") && !argument.startsWith("-agentlib"));
+    }
+    threads.setThreadAllocatedMemoryEnabled(true);
+
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      call.run();
+    }
+    long threadId = Thread.currentThread().getId();
+    long before = threads.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+      call.run();
+    }
+    long after = threads.getThreadAllocatedBytes(threadId);
+    return (double) (after - before) / MEASURED_ITERATIONS;
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.auth.oauth2.GoogleCredentials;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit test for LazyCredentials. */
+@RunWith(JUnit4.class)
+public final class LazyCredentialsTest {
+
+  @Test
+  public void get_loadsOnFirstUseOnly() throws Exception {
+    AtomicInteger loads = new AtomicInteger();
+    GoogleCredentials credentials = new GcpLoginCallbackHandlerTest.FakeGoogleCredentials();
+    LazyCredentials lazy =
+        new LazyCredentials(
+            () -> {
+              loads.incrementAndGet();
+              return credentials;
+            });
+
+    assertThat(loads.get()).isEqualTo(0);
+    assertThat(lazy.getIfLoaded()).isNull();
+    assertThat(lazy.get()).isSameInstanceAs(credentials);
+    assertThat(lazy.get()).isSameInstanceAs(credentials);
+    assertThat(lazy.getIfLoaded()).isSameInstanceAs(credentials);
+    assertThat(loads.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void get_concurrentCallersShareOneLoad() throws Exception {
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch loading = new CountDownLatch(1);
+    LazyCredentials lazy =
+        new LazyCredentials(
+            () -> {
+              loads.incrementAndGet();
+              try {
+                loading.await();
+              } catch (InterruptedException e) {
+                throw new IOException(e);
+              }
+              return new GcpLoginCallbackHandlerTest.FakeGoogleCredentials();
+            });
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<GoogleCredentials>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        results.add(executor.submit(lazy::get));
+      }
+      Thread.sleep(50);
+      loading.countDown();
+      for (Future<GoogleCredentials> result : results) {
+        assertThat(result.get()).isSameInstanceAs(lazy.getIfLoaded());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(loads.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void startLoading_loadsInBackground() throws Exception {
+    AtomicReference<String> loadThread = new AtomicReference<>();
+    LazyCredentials lazy =
+        new LazyCredentials(
+            () -> {
+              loadThread.set(Thread.currentThread().getName());
+              return new GcpLoginCallbackHandlerTest.FakeGoogleCredentials();
+            });
+
+    lazy.startLoading(SharedCredentials.LOAD_EXECUTOR);
+
+    assertThat(lazy.get()).isNotNull();
+    assertThat(loadThread.get()).isEqualTo("gcp-kafka-auth-credentials-loader");
+  }
+
+  @Test
+  public void get_failedLoadIsRetried() throws Exception {
+    AtomicInteger loads = new AtomicInteger();
+    LazyCredentials lazy =
+        new LazyCredentials(
+            () -> {
+              if (loads.incrementAndGet() == 1) {
+                throw new IOException("metadata server unavailable");
+              }
+              return new GcpLoginCallbackHandlerTest.FakeGoogleCredentials();
+            });
+
+    IOException e = assertThrows(IOException.class, lazy::get);
+    assertThat(e).hasCauseThat().hasMessageThat().isEqualTo("metadata server unavailable");
+    assertThat(lazy.get()).isNotNull();
+    assertThat(loads.get()).isEqualTo(2);
+  }
+}
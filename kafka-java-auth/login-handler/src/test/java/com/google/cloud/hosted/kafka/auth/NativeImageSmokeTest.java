@@ -0,0 +1,108 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.auth.oauth2.IdToken;
+import com.google.auth.oauth2.IdTokenProvider;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.security.auth.callback.Callback;
+import org.apache.kafka.common.security.oauthbearer.OAuthBearerToken;
+import org.apache.kafka.common.security.oauthbearer.OAuthBearerTokenCallback;
+import org.apache.kafka.common.security.oauthbearer.internals.secured.SerializedJwt;
+import org.apache.kafka.common.security.oauthbearer.internals.unsecured.OAuthBearerUnsecuredJws;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Smoke test of the code paths that depend on the native-image metadata of the module. Runs with
+ * the other unit tests, and as a native image with <code>mvn -Pnative test</code>.
+ */
+@RunWith(JUnit4.class)
+public final class NativeImageSmokeTest {
+  private static final String ACCOUNT = "native-account@project.iam.gserviceaccount.com";
+
+  /** Credentials whose principal is only known from the email claim of their ID token. */
+  private static class IdTokenGoogleCredentials extends GoogleCredentials
+      implements IdTokenProvider {
+    @Override
+    public AccessToken refreshAccessToken() {
+      return new AccessToken("native-access-token", Date.from(Instant.now().plusSeconds(3600)));
+    }
+
+    @Override
+    public IdToken idTokenWithAudience(String audience, List<IdTokenProvider.Option> options)
+        throws IOException {
+      Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+      String claims =
+          String.format(
+              "{\"aud\":\"%s\",\"email\":\"%s\",\"exp\":%d}",
+              audience, ACCOUNT, Instant.now().plusSeconds(3600).getEpochSecond());
+      return IdToken.create(
+          encoder.encodeToString("{\"alg\":\"RS256\",\"typ\":\"JWT\"}".getBytes(UTF_8))
+              + "."
+              + encoder.encodeToString(claims.getBytes(UTF_8))
+              + "."
+              + encoder.encodeToString("signature".getBytes(UTF_8)));
+    }
+  }
+
+  @Test
+  public void handle_encodesTokenOfStubCredentials() throws Exception {
+    GcpLoginCallbackHandler handler =
+        new GcpLoginCallbackHandler(new SharedCredentialsTest.CountingGoogleCredentials());
+    handler.configure(new HashMap<String, Object>(), "OAUTHBEARER", null);
+    OAuthBearerTokenCallback callback = new OAuthBearerTokenCallback();
+
+    handler.handle(new Callback[] {callback});
+
+    OAuthBearerToken token = callback.token();
+    Map<String, Object> payload =
+        OAuthBearerUnsecuredJws.toMap(new SerializedJwt(token.value()).getPayload());
+    assertThat(payload.get("sub")).isEqualTo("fake-account@google.com");
+    assertThat(token.principalName()).isEqualTo("fake-account@google.com");
+    assertThat(
+            new String(
+                Base64.getUrlDecoder().decode(new SerializedJwt(token.value()).getSignature()),
+                UTF_8))
+        .isEqualTo("fake-access-token-1");
+    handler.close();
+  }
+
+  @Test
+  public void handle_resolvesPrincipalFromIdToken() throws Exception {
+    GcpLoginCallbackHandler handler = new GcpLoginCallbackHandler(new IdTokenGoogleCredentials());
+    handler.configure(new HashMap<String, Object>(), "OAUTHBEARER", null);
+    OAuthBearerTokenCallback callback = new OAuthBearerTokenCallback();
+
+    handler.handle(new Callback[] {callback});
+
+    assertThat(callback.token().principalName()).isEqualTo(ACCOUNT);
+    handler.close();
+  }
+}
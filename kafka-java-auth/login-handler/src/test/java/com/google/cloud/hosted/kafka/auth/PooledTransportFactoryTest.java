@@ -0,0 +1,146 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpTransport;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit test for PooledTransportFactory. */
+@RunWith(JUnit4.class)
+public final class PooledTransportFactoryTest {
+  private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger requests = new AtomicInteger();
+  private volatile long responseDelayMs;
+  private HttpServer server;
+
+  @Before
+  public void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext(
+        "/",
+        exchange -> {
+          clientPorts.add(exchange.getRemoteAddress().getPort());
+          requests.incrementAndGet();
+          try {
+            Thread.sleep(responseDelayMs);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          byte[] body = "{}".getBytes(UTF_8);
+          exchange.sendResponseHeaders(200, body.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+          }
+        });
+    server.start();
+  }
+
+  @After
+  public void stopServer() {
+    server.stop(0);
+  }
+
+  private GenericUrl url() {
+    return new GenericUrl("http://localhost:" + server.getAddress().getPort() + "/token");
+  }
+
+  @Test
+  public void get_sharesTransportBetweenEqualSettings() {
+    PooledTransportFactory factory =
+        PooledTransportFactory.get(new PooledTransportFactory.Settings(1000, 2000, 3));
+
+    assertThat(PooledTransportFactory.get(new PooledTransportFactory.Settings(1000, 2000, 3)))
+        .isSameInstanceAs(factory);
+    assertThat(factory.create()).isSameInstanceAs(factory.create());
+    assertThat(PooledTransportFactory.get(new PooledTransportFactory.Settings(1000, 2000, 4)))
+        .isNotSameInstanceAs(factory);
+  }
+
+  @Test
+  public void transport_reusesConnections() throws Exception {
+    HttpTransport transport =
+        PooledTransportFactory.newTransport(new PooledTransportFactory.Settings(1000, 2000, 2));
+
+    for (int i = 0; i < 5; i++) {
+      HttpResponse response = transport.createRequestFactory().buildGetRequest(url()).execute();
+      assertThat(response.parseAsString()).isEqualTo("{}");
+    }
+
+    assertThat(clientPorts).hasSize(1);
+    transport.shutdown();
+  }
+
+  @Test
+  public void transport_boundsRequestedReadTimeout() throws Exception {
+    responseDelayMs = 2000;
+    HttpTransport transport =
+        PooledTransportFactory.newTransport(new PooledTransportFactory.Settings(1000, 100, 2));
+    long startMs = System.currentTimeMillis();
+
+    assertThrows(
+        SocketTimeoutException.class,
+        () ->
+            transport
+                .createRequestFactory()
+                .buildGetRequest(url())
+                .setReadTimeout(60_000)
+                .execute());
+
+    assertThat(System.currentTimeMillis() - startMs).isLessThan(1500L);
+    transport.shutdown();
+  }
+
+  @Test
+  public void transport_shedsRequestsOverRateLimit() throws Exception {
+    TokenRequestLimiter limiter = new TokenRequestLimiter(System::currentTimeMillis);
+    limiter.setPolicy(new TokenRequestLimiter.Policy(0.001, 2, 0));
+    HttpTransport transport =
+        PooledTransportFactory.newTransport(
+            new PooledTransportFactory.Settings(1000, 2000, 2), limiter);
+
+    for (int i = 0; i < 2; i++) {
+      transport.createRequestFactory().buildGetRequest(url()).execute().disconnect();
+    }
+    IOException e =
+        assertThrows(
+            IOException.class,
+            () -> transport.createRequestFactory().buildGetRequest(url()).execute());
+
+    assertThat(e).hasMessageThat().contains("Shed a request");
+    assertThat(requests.get()).isEqualTo(2);
+    transport.shutdown();
+  }
+}
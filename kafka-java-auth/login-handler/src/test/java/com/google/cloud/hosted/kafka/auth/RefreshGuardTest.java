@@ -0,0 +1,262 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.auth.oauth2.AccessToken;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.security.auth.callback.Callback;
+import org.apache.kafka.common.security.oauthbearer.OAuthBearerTokenCallback;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit test for RefreshGuard. */
+@RunWith(JUnit4.class)
+public final class RefreshGuardTest {
+
+  /** Issues short-lived tokens, or fails every refresh while a fault is injected. */
+  static class FaultInjectingCredentials extends GcpLoginCallbackHandler.StubGoogleCredentials {
+    final AtomicInteger attempts = new AtomicInteger();
+    volatile boolean failing;
+    // Inside the expiration margin of the credentials, so that every request refreshes, but long
+    // enough to be served while refreshes fail.
+    volatile long lifetimeSeconds = 120;
+
+    @Override
+    public AccessToken refreshAccessToken() throws IOException {
+      int attempt = attempts.incrementAndGet();
+      if (failing) {
+        throw new IOException("injected fault");
+      }
+      return new AccessToken(
+          "token-" + attempt, Date.from(Instant.now().plusSeconds(lifetimeSeconds)));
+    }
+
+    @Override
+    String getAccount() {
+      return "fake-account@google.com";
+    }
+  }
+
+  private static RefreshGuard.Policy policy(
+      long backoffMs, long maxBackoffMs, int failureThreshold, long gracePeriodMs) {
+    return new RefreshGuard.Policy(backoffMs, maxBackoffMs, failureThreshold, gracePeriodMs);
+  }
+
+  static Map<String, Object> options(
+      long backoffMs, long maxBackoffMs, int failureThreshold, long gracePeriodMs) {
+    return ImmutableMap.of(
+        GcpAuthConfig.RETRY_BACKOFF_MS_CONFIG, backoffMs,
+        GcpAuthConfig.RETRY_BACKOFF_MAX_MS_CONFIG, maxBackoffMs,
+        GcpAuthConfig.CIRCUIT_BREAKER_FAILURE_THRESHOLD_CONFIG, failureThreshold,
+        GcpAuthConfig.TOKEN_GRACE_PERIOD_MS_CONFIG, gracePeriodMs);
+  }
+
+  @Test
+  public void onFailure_backoffGrowsExponentiallyWithinJitter() {
+    RefreshGuard guard = new RefreshGuard(new Random(42));
+    guard.setPolicy(policy(1000, 60_000, 10, 0));
+
+    long previous = 0;
+    for (int failure = 1; failure <= 5; failure++) {
+      long expected = 1000L << (failure - 1);
+      long delay = guard.onFailure(new IOException(), 0);
+      assertThat(delay).isAtLeast((long) (expected * 0.8));
+      assertThat(delay).isAtMost((long) (expected * 1.2));
+      assertThat(delay).isGreaterThan(previous);
+      previous = delay;
+    }
+  }
+
+  @Test
+  public void onFailure_backoffIsCapped() {
+    RefreshGuard guard = new RefreshGuard(new Random(42));
+    guard.setPolicy(policy(1000, 5000, 100, 0));
+
+    for (int failure = 1; failure < 10; failure++) {
+      assertThat(guard.onFailure(new IOException(), 0)).isAtMost(5000L);
+    }
+  }
+
+  @Test
+  public void tryAcquire_allowsOneAttemptAfterBackoff() {
+    RefreshGuard guard = new RefreshGuard(new Random(42));
+    guard.setPolicy(policy(1000, 60_000, 10, 0));
+    assertThat(guard.tryAcquire(0)).isTrue();
+    assertThat(guard.tryAcquire(0)).isTrue();
+
+    long delay = guard.onFailure(new IOException(), 0);
+
+    assertThat(guard.tryAcquire(delay - 1)).isFalse();
+    assertThat(guard.tryAcquire(delay)).isTrue();
+    assertThat(guard.tryAcquire(delay)).isFalse();
+    guard.onSuccess();
+    assertThat(guard.tryAcquire(delay)).isTrue();
+    assertThat(guard.tryAcquire(delay)).isTrue();
+  }
+
+  @Test
+  public void onFailure_opensCircuitAtThreshold() {
+    RefreshGuard guard = new RefreshGuard(new Random(42));
+    guard.setPolicy(policy(10, 60_000, 3, 0));
+
+    guard.onFailure(new IOException(), 0);
+    guard.onFailure(new IOException(), 0);
+    assertThat(guard.isCircuitOpen()).isFalse();
+    assertThat(guard.onFailure(new IOException(), 0)).isEqualTo(60_000L);
+    assertThat(guard.isCircuitOpen()).isTrue();
+
+    assertThat(guard.tryAcquire(59_999)).isFalse();
+    // The trial refresh after the open period closes the circuit if it succeeds.
+    assertThat(guard.tryAcquire(60_000)).isTrue();
+    guard.onSuccess();
+    assertThat(guard.isCircuitOpen()).isFalse();
+  }
+
+  @Test
+  public void canServe_onlyValidTokensWithinGracePeriod() {
+    RefreshGuard guard = new RefreshGuard(new Random(42));
+    guard.setPolicy(policy(10, 60_000, 3, 1000));
+    assertThat(guard.canServe(100_000, 0)).isFalse();
+
+    guard.onFailure(new IOException(), 0);
+
+    assertThat(guard.canServe(100_000, 0)).isTrue();
+    assertThat(guard.canServe(100_000, 1000)).isTrue();
+    assertThat(guard.canServe(100_000, 1001)).isFalse();
+    // Tokens about to expire are not served.
+    assertThat(guard.canServe(5_000, 0)).isFalse();
+  }
+
+  @Test
+  public void onFailure_shedRequestIsNotCounted() {
+    RefreshGuard guard = new RefreshGuard(new Random(42));
+    guard.setPolicy(policy(1000, 60_000, 2, 0));
+    IOException shed =
+        new IOException("Failed to refresh", new TokenRequestLimiter.ShedException("Shed"));
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(guard.tryAcquire(0)).isTrue();
+      assertThat(guard.onFailure(shed, 0)).isEqualTo(1000L);
+    }
+
+    assertThat(guard.isCircuitOpen()).isFalse();
+    assertThat(guard.millisUntilNextAttempt(0)).isEqualTo(0L);
+    // The last token is served until a refresh completes, even without a grace period.
+    assertThat(guard.canServe(100_000, 0)).isTrue();
+    guard.onSuccess();
+    assertThat(guard.canServe(100_000, 0)).isFalse();
+  }
+
+  @Test
+  public void rejection_reportsLastFailure() {
+    RefreshGuard guard = new RefreshGuard(new Random(42));
+    IOException failure = new IOException("metadata server unavailable");
+    guard.onFailure(failure, 0);
+
+    IOException rejection = guard.rejection(0);
+
+    assertThat(rejection).hasMessageThat().contains("1 consecutive failures");
+    assertThat(rejection).hasCauseThat().isSameInstanceAs(failure);
+  }
+
+  @Test
+  public void loginCallbackHandler_servesLastTokenWhileRefreshesFail() throws Exception {
+    FaultInjectingCredentials credentials = new FaultInjectingCredentials();
+    GcpLoginCallbackHandler handler = new GcpLoginCallbackHandler(credentials);
+    handler.configure(options(60_000, 60_000, 5, 300_000), "OAUTHBEARER", null);
+    OAuthBearerTokenCallback callback = new OAuthBearerTokenCallback();
+    handler.handle(new Callback[] {callback});
+    String token = callback.token().value();
+
+    credentials.failing = true;
+    for (int i = 0; i < 10; i++) {
+      callback = new OAuthBearerTokenCallback();
+      handler.handle(new Callback[] {callback});
+      assertThat(callback.token().value()).isEqualTo(token);
+    }
+
+    // A single refresh was attempted; the others waited for the backoff to elapse.
+    assertThat(credentials.attempts.get()).isEqualTo(2);
+    handler.close();
+  }
+
+  @Test
+  public void loginCallbackHandler_failsFastWithoutGracePeriod() throws Exception {
+    FaultInjectingCredentials credentials = new FaultInjectingCredentials();
+    credentials.failing = true;
+    GcpLoginCallbackHandler handler = new GcpLoginCallbackHandler(credentials);
+    handler.configure(options(60_000, 60_000, 5, 0), "OAUTHBEARER", null);
+    Callback[] callbacks = {new OAuthBearerTokenCallback()};
+
+    IOException first = assertThrows(IOException.class, () -> handler.handle(callbacks));
+    IOException second = assertThrows(IOException.class, () -> handler.handle(callbacks));
+
+    assertThat(first).hasMessageThat().isEqualTo("injected fault");
+    assertThat(second).hasMessageThat().contains("consecutive failures");
+    assertThat(second).hasCauseThat().isSameInstanceAs(first);
+    assertThat(credentials.attempts.get()).isEqualTo(1);
+    handler.close();
+  }
+
+  @Test
+  public void loginCallbackHandler_recoversAfterBackoff() throws Exception {
+    FaultInjectingCredentials credentials = new FaultInjectingCredentials();
+    credentials.failing = true;
+    GcpLoginCallbackHandler handler = new GcpLoginCallbackHandler(credentials);
+    handler.configure(options(20, 20, 5, 0), "OAUTHBEARER", null);
+    OAuthBearerTokenCallback callback = new OAuthBearerTokenCallback();
+    assertThrows(IOException.class, () -> handler.handle(new Callback[] {callback}));
+
+    credentials.failing = false;
+    Thread.sleep(50);
+    handler.handle(new Callback[] {callback});
+
+    assertThat(callback.token()).isNotNull();
+    assertThat(credentials.attempts.get()).isEqualTo(2);
+    handler.close();
+  }
+
+  @Test
+  public void loginCallbackHandler_circuitStopsRefreshes() throws Exception {
+    FaultInjectingCredentials credentials = new FaultInjectingCredentials();
+    credentials.failing = true;
+    GcpLoginCallbackHandler handler = new GcpLoginCallbackHandler(credentials);
+    handler.configure(options(1, 60_000, 3, 0), "OAUTHBEARER", null);
+    Callback[] callbacks = {new OAuthBearerTokenCallback()};
+
+    for (int i = 0; i < 3; i++) {
+      assertThrows(IOException.class, () -> handler.handle(callbacks));
+      Thread.sleep(10);
+    }
+    for (int i = 0; i < 10; i++) {
+      assertThrows(IOException.class, () -> handler.handle(callbacks));
+    }
+
+    assertThat(credentials.attempts.get()).isEqualTo(3);
+    handler.close();
+  }
+}
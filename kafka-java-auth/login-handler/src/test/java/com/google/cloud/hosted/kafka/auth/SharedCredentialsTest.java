@@ -0,0 +1,322 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.auth.oauth2.AccessToken;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.security.auth.callback.Callback;
+import org.apache.kafka.common.security.oauthbearer.OAuthBearerTokenCallback;
+import org.apache.kafka.common.security.oauthbearer.internals.secured.SerializedJwt;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit test for SharedCredentials. */
+@RunWith(JUnit4.class)
+public final class SharedCredentialsTest {
+  private static final String SCOPE = "https://www.googleapis.com/auth/cloud-platform";
+
+  static class CountingGoogleCredentials extends GcpLoginCallbackHandler.StubGoogleCredentials {
+    final AtomicInteger refreshes = new AtomicInteger();
+    final Set<String> refreshThreads = ConcurrentHashMap.newKeySet();
+    volatile long lifetimeSeconds = 3600;
+
+    @Override
+    public AccessToken refreshAccessToken() throws IOException {
+      refreshThreads.add(Thread.currentThread().getName());
+      return new AccessToken(
+          "fake-access-token-" + refreshes.incrementAndGet(),
+          Date.from(Instant.now().plusSeconds(lifetimeSeconds)));
+    }
+
+    @Override
+    public String getAccount() {
+      return "fake-account@google.com";
+    }
+  }
+
+  @Test
+  public void acquire_sameIdentityAndScopeSharesCredentials() throws Exception {
+    AtomicInteger loads = new AtomicInteger();
+    SharedCredentials.Loader loader =
+        () -> {
+          loads.incrementAndGet();
+          return new CountingGoogleCredentials();
+        };
+
+    SharedCredentials first = SharedCredentials.acquire("shared", SCOPE, loader);
+    SharedCredentials second = SharedCredentials.acquire("shared", SCOPE, loader);
+
+    assertThat(second).isSameInstanceAs(first);
+    // The credentials are only loaded once they are first used.
+    assertThat(loads.get()).isEqualTo(0);
+    assertThat(second.getAccessToken()).isSameInstanceAs(first.getAccessToken());
+    assertThat(loads.get()).isEqualTo(1);
+
+    first.release();
+    second.release();
+  }
+
+  @Test
+  public void acquire_differentScopeDoesNotShareCredentials() throws Exception {
+    SharedCredentials.Loader loader = CountingGoogleCredentials::new;
+
+    SharedCredentials first = SharedCredentials.acquire("scoped", SCOPE, loader);
+    SharedCredentials second = SharedCredentials.acquire("scoped", "other-scope", loader);
+
+    assertThat(second).isNotSameInstanceAs(first);
+
+    first.release();
+    second.release();
+  }
+
+  @Test
+  public void release_lastReferenceKeepsEntryIdle() throws Exception {
+    int initialSize = SharedCredentials.size();
+    CountingGoogleCredentials credentials = new CountingGoogleCredentials();
+    SharedCredentials.Loader loader = () -> credentials;
+    SharedCredentials first = SharedCredentials.acquire("idle", SCOPE, loader);
+    SharedCredentials second = SharedCredentials.acquire("idle", SCOPE, loader);
+    AccessToken token = first.getAccessToken();
+    assertThat(SharedCredentials.size()).isEqualTo(initialSize + 1);
+
+    first.release();
+    assertThat(SharedCredentials.size()).isEqualTo(initialSize + 1);
+    second.release();
+    assertThat(SharedCredentials.size()).isEqualTo(initialSize);
+
+    // A client connecting again as the same principal reuses the token.
+    SharedCredentials third = SharedCredentials.acquire("idle", SCOPE, loader);
+    assertThat(third).isSameInstanceAs(first);
+    assertThat(third.getAccessToken()).isSameInstanceAs(token);
+    assertThat(credentials.refreshes.get()).isEqualTo(1);
+    third.release();
+  }
+
+  @Test
+  public void release_dropsLeastRecentlyReleasedIdleEntries() throws Exception {
+    // Drops the idle entries of other tests.
+    SharedCredentials.setMaxIdle(0);
+    try {
+      SharedCredentials.Loader loader = CountingGoogleCredentials::new;
+      SharedCredentials.setMaxIdle(2);
+      SharedCredentials first = SharedCredentials.acquire("lru-1", SCOPE, loader);
+      SharedCredentials second = SharedCredentials.acquire("lru-2", SCOPE, loader);
+      SharedCredentials third = SharedCredentials.acquire("lru-3", SCOPE, loader);
+
+      first.release();
+      second.release();
+      // Reusing the first entry makes the second one the least recently released.
+      assertThat(SharedCredentials.acquire("lru-1", SCOPE, loader)).isSameInstanceAs(first);
+      first.release();
+      third.release();
+
+      assertThat(SharedCredentials.idleSize()).isEqualTo(2);
+      SharedCredentials reacquired = SharedCredentials.acquire("lru-2", SCOPE, loader);
+      assertThat(reacquired).isNotSameInstanceAs(second);
+      reacquired.release();
+      assertThat(SharedCredentials.acquire("lru-3", SCOPE, loader)).isSameInstanceAs(third);
+      third.release();
+    } finally {
+      SharedCredentials.setMaxIdle(GcpAuthConfig.DEFAULT_CREDENTIALS_POOL_MAX_IDLE);
+    }
+  }
+
+  @Test
+  public void setMaxIdle_neverDropsEntriesInUse() throws Exception {
+    SharedCredentials.Loader loader = CountingGoogleCredentials::new;
+    SharedCredentials shared = SharedCredentials.acquire("in-use", SCOPE, loader);
+    try {
+      SharedCredentials.setMaxIdle(0);
+      assertThat(SharedCredentials.idleSize()).isEqualTo(0);
+      assertThat(SharedCredentials.acquire("in-use", SCOPE, loader)).isSameInstanceAs(shared);
+      shared.release();
+      shared.release();
+
+      SharedCredentials reacquired = SharedCredentials.acquire("in-use", SCOPE, loader);
+      assertThat(reacquired).isNotSameInstanceAs(shared);
+      reacquired.release();
+    } finally {
+      SharedCredentials.setMaxIdle(GcpAuthConfig.DEFAULT_CREDENTIALS_POOL_MAX_IDLE);
+    }
+  }
+
+  @Test
+  public void getAccessToken_loaderFailureIsRetried() throws Exception {
+    AtomicInteger loads = new AtomicInteger();
+    SharedCredentials shared =
+        SharedCredentials.acquire(
+            "failing",
+            SCOPE,
+            () -> {
+              if (loads.incrementAndGet() == 1) {
+                throw new IOException("no credentials");
+              }
+              return new CountingGoogleCredentials();
+            });
+
+    assertThrows(IOException.class, shared::getAccessToken);
+    assertThat(shared.getAccessToken().getTokenValue()).isEqualTo("fake-access-token-1");
+    assertThat(loads.get()).isEqualTo(2);
+
+    shared.release();
+  }
+
+  @Test
+  public void handlers_shareOneRefreshAndReleaseOnClose() throws Exception {
+    CountingGoogleCredentials credentials = new CountingGoogleCredentials();
+    SharedCredentials.Loader loader = () -> credentials;
+    int initialSize = SharedCredentials.size();
+
+    GcpLoginCallbackHandler first =
+        new GcpLoginCallbackHandler(SharedCredentials.acquire("handlers", SCOPE, loader));
+    GcpLoginCallbackHandler second =
+        new GcpLoginCallbackHandler(SharedCredentials.acquire("handlers", SCOPE, loader));
+    first.configure(new HashMap<String, Object>(), "OAUTHBEARER", null);
+    second.configure(new HashMap<String, Object>(), "OAUTHBEARER", null);
+
+    OAuthBearerTokenCallback firstCallback = new OAuthBearerTokenCallback();
+    OAuthBearerTokenCallback secondCallback = new OAuthBearerTokenCallback();
+    first.handle(new Callback[] {firstCallback});
+    second.handle(new Callback[] {secondCallback});
+
+    assertThat(credentials.refreshes.get()).isEqualTo(1);
+    // The token is encoded once for both handlers.
+    assertThat(secondCallback.token().value()).isSameInstanceAs(firstCallback.token().value());
+    assertThat(new SerializedJwt(secondCallback.token().value()).getSignature())
+        .isEqualTo(new SerializedJwt(firstCallback.token().value()).getSignature());
+
+    first.close();
+    // Closing twice must not release the reference held by the second handler.
+    first.close();
+    assertThat(SharedCredentials.size()).isEqualTo(initialSize + 1);
+    second.close();
+    assertThat(SharedCredentials.size()).isEqualTo(initialSize);
+  }
+
+  @Test
+  public void backgroundRefresh_callersReadPreRefreshedToken() throws Exception {
+    CountingGoogleCredentials credentials = new CountingGoogleCredentials();
+    SharedCredentials shared = SharedCredentials.unshared(credentials);
+
+    shared.enableBackgroundRefresh(0.8, 0.05);
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (credentials.getAccessToken() == null && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+
+    AccessToken token = shared.getAccessToken();
+    assertThat(token).isSameInstanceAs(credentials.getAccessToken());
+    assertThat(shared.getAccessToken()).isSameInstanceAs(token);
+    assertThat(credentials.refreshes.get()).isEqualTo(1);
+    assertThat(credentials.refreshThreads).containsExactly("gcp-kafka-auth-token-refresh");
+
+    shared.release();
+  }
+
+  @Test
+  public void getAccessToken_refreshesTokenWithoutMinRemainingLifetime() throws Exception {
+    CountingGoogleCredentials credentials = new CountingGoogleCredentials();
+    // Refreshed by the owner of the credentials rather than through the shared credentials.
+    credentials.refresh();
+    SharedCredentials shared = SharedCredentials.unshared(credentials);
+    AccessToken first = shared.getAccessToken();
+
+    assertThat(shared.getAccessToken(TokenMetrics.NONE, 60_000)).isSameInstanceAs(first);
+    AccessToken refreshed = shared.getAccessToken(TokenMetrics.NONE, 3600_000);
+
+    assertThat(refreshed).isNotSameInstanceAs(first);
+    assertThat(shared.getAccessToken()).isSameInstanceAs(refreshed);
+    assertThat(credentials.refreshes.get()).isEqualTo(2);
+    shared.release();
+  }
+
+  @Test
+  public void getAccessToken_doesNotRefreshTokenIssuedWithoutMinRemainingLifetime()
+      throws Exception {
+    CountingGoogleCredentials credentials = new CountingGoogleCredentials();
+    credentials.lifetimeSeconds = 600;
+    SharedCredentials shared = SharedCredentials.unshared(credentials);
+
+    AccessToken first = shared.getAccessToken(TokenMetrics.NONE, 900_000);
+    for (int i = 0; i < 100; i++) {
+      assertThat(shared.getAccessToken(TokenMetrics.NONE, 900_000)).isSameInstanceAs(first);
+    }
+
+    assertThat(credentials.refreshes.get()).isEqualTo(1);
+    shared.release();
+  }
+
+  @Test
+  public void refreshAheadAtMillis_waitsForHalfOfLifetime() {
+    // Issued with more than the minimum remaining lifetime.
+    assertThat(SharedCredentials.refreshAheadAtMillis(0, 3600_000, 300_000)).isEqualTo(3300_000);
+    // Issued with less.
+    assertThat(SharedCredentials.refreshAheadAtMillis(0, 600_000, 900_000)).isEqualTo(300_000);
+    assertThat(SharedCredentials.refreshAheadAtMillis(0, Long.MAX_VALUE, 300_000))
+        .isEqualTo(Long.MAX_VALUE);
+  }
+
+  @Test
+  public void warmUp_fetchesTokenOnceForAllClients() throws Exception {
+    CountingGoogleCredentials credentials = new CountingGoogleCredentials();
+    SharedCredentials shared = SharedCredentials.acquire("warm-up", SCOPE, () -> credentials);
+
+    shared.warmUp().get();
+    shared.warmUp().get();
+    GcpLoginCallbackHandler handler =
+        new GcpLoginCallbackHandler(SharedCredentials.acquire("warm-up", SCOPE, () -> credentials));
+    handler.configure(
+        ImmutableMap.of(GcpAuthConfig.WARMUP_ENABLE_CONFIG, "true"), "OAUTHBEARER", null);
+    handler.handle(new Callback[] {new OAuthBearerTokenCallback()});
+
+    assertThat(credentials.refreshes.get()).isEqualTo(1);
+    assertThat(credentials.refreshThreads).containsExactly("gcp-kafka-auth-credentials-loader");
+    handler.close();
+    shared.release();
+  }
+
+  @Test
+  public void nextRefreshDelayMillis_appliesWindowFactorAndJitter() {
+    assertThat(SharedCredentials.nextRefreshDelayMillis(1000, 0.8, 0.05, 0.0, 100)).isEqualTo(800L);
+    assertThat(SharedCredentials.nextRefreshDelayMillis(1000, 0.8, 0.05, 1.0, 100)).isEqualTo(850L);
+    assertThat(SharedCredentials.nextRefreshDelayMillis(-1000, 0.8, 0.05, 0.5, 100)).isEqualTo(0L);
+  }
+
+  @Test
+  public void nextRefreshDelayMillis_refreshesAheadOfExpiryWhenWindowReachesIt() {
+    long hourMillis = 60 * 60 * 1000L;
+    long aheadMillis = 6 * 60 * 1000L;
+    assertThat(SharedCredentials.nextRefreshDelayMillis(hourMillis, 1.0, 0.25, 1.0, aheadMillis))
+        .isEqualTo(hourMillis - aheadMillis);
+    assertThat(SharedCredentials.nextRefreshDelayMillis(hourMillis, 1.0, 0.1, 0.0, aheadMillis))
+        .isEqualTo(hourMillis - aheadMillis);
+    // Too little lifetime left to refresh that far ahead.
+    assertThat(SharedCredentials.nextRefreshDelayMillis(600_000, 1.0, 0.25, 1.0, aheadMillis))
+        .isEqualTo(300_000L);
+  }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.auth.oauth2.AccessToken;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit test for TokenFileCache. */
+@RunWith(JUnit4.class)
+public final class TokenFileCacheTest {
+  private static final String SCOPE = "https://www.googleapis.com/auth/cloud-platform";
+
+  private Path directory;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("token-cache");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  private static AccessToken token(String value, long lifetimeSeconds) {
+    return new AccessToken(value, Date.from(Instant.now().plusSeconds(lifetimeSeconds)));
+  }
+
+  private static boolean isPosix() {
+    return FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+  }
+
+  @Test
+  public void write_thenRead_returnsTokenAndPrincipal() {
+    TokenFileCache cache = new TokenFileCache(directory, "metadata", SCOPE);
+    AccessToken token = token("cached-token", 3600);
+
+    cache.write(token, "sa@project.iam");
+    TokenFileCache.CachedToken cached =
+        new TokenFileCache(directory, "metadata", SCOPE).read();
+
+    assertThat(cached.token.getTokenValue()).isEqualTo("cached-token");
+    assertThat(cached.token.getExpirationTime()).isEqualTo(token.getExpirationTime());
+    assertThat(cached.principal).isEqualTo("sa@project.iam");
+  }
+
+  @Test
+  public void read_identitiesAndScopesHaveSeparateFiles() {
+    new TokenFileCache(directory, "metadata", SCOPE).write(token("cached-token", 3600), null);
+
+    assertThat(new TokenFileCache(directory, "service_account:/a.json", SCOPE).read()).isNull();
+    assertThat(new TokenFileCache(directory, "metadata", "other-scope").read()).isNull();
+  }
+
+  @Test
+  public void write_restrictsPermissionsToOwner() throws IOException {
+    assumeTrue(isPosix());
+    Path nested = directory.resolve("nested");
+    TokenFileCache cache = new TokenFileCache(nested, "metadata", SCOPE);
+
+    cache.write(token("cached-token", 3600), null);
+
+    assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(nested)))
+        .isEqualTo("rwx------");
+    assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(cache.file())))
+        .isEqualTo("rw-------");
+    // Only the token file is left behind.
+    try (Stream<Path> files = Files.list(nested)) {
+      assertThat(files.count()).isEqualTo(1L);
+    }
+  }
+
+  @Test
+  public void read_ignoresFilesAccessibleToOthers() throws IOException {
+    assumeTrue(isPosix());
+    TokenFileCache cache = new TokenFileCache(directory, "metadata", SCOPE);
+    cache.write(token("cached-token", 3600), null);
+
+    Files.setPosixFilePermissions(cache.file(), PosixFilePermissions.fromString("rw-r--r--"));
+
+    assertThat(cache.read()).isNull();
+  }
+
+  @Test
+  public void readAndWrite_ignoreDirectoriesAccessibleToOthers() throws IOException {
+    assumeTrue(isPosix());
+    TokenFileCache cache = new TokenFileCache(directory, "metadata", SCOPE);
+    cache.write(token("cached-token", 3600), null);
+    Path shared = Files.createDirectory(directory.resolve("shared"));
+    TokenFileCache sharedCache = new TokenFileCache(shared, "metadata", SCOPE);
+
+    Files.setPosixFilePermissions(directory, PosixFilePermissions.fromString("rwxr-xr-x"));
+    Files.setPosixFilePermissions(shared, PosixFilePermissions.fromString("rwxrwxrwx"));
+    sharedCache.write(token("cached-token", 3600), null);
+
+    assertThat(new TokenFileCache(directory, "metadata", SCOPE).read()).isNull();
+    assertThat(Files.exists(sharedCache.file())).isFalse();
+  }
+
+  @Test
+  public void read_doesNotDependOnUserNameProperty() {
+    String userName = System.getProperty("user.name");
+    System.setProperty("user.name", "?");
+    try {
+      TokenFileCache cache = new TokenFileCache(directory, "metadata", SCOPE);
+      cache.write(token("cached-token", 3600), null);
+
+      assertThat(new TokenFileCache(directory, "metadata", SCOPE).read()).isNotNull();
+    } finally {
+      System.setProperty("user.name", userName);
+    }
+  }
+
+  @Test
+  public void read_ignoresTokensCloseToExpiry() {
+    TokenFileCache cache = new TokenFileCache(directory, "metadata", SCOPE);
+
+    cache.write(token("cached-token", 60), null);
+
+    assertThat(cache.read()).isNull();
+  }
+
+  @Test
+  public void read_ignoresMissingAndMalformedFiles() throws IOException {
+    TokenFileCache cache = new TokenFileCache(directory, "metadata", SCOPE);
+    assertThat(cache.read()).isNull();
+
+    cache.write(token("cached-token", 3600), null);
+    Files.write(cache.file(), "{\"access_token\":".getBytes(UTF_8));
+
+    assertThat(cache.read()).isNull();
+  }
+
+  @Test
+  public void write_withoutPrincipalKeepsCachedPrincipal() {
+    TokenFileCache cache = new TokenFileCache(directory, "metadata", SCOPE);
+    cache.write(token("first-token", 3600), "sa@project.iam");
+
+    cache.write(token("second-token", 3600), null);
+
+    TokenFileCache.CachedToken cached = cache.read();
+    assertThat(cached.token.getTokenValue()).isEqualTo("second-token");
+    assertThat(cached.principal).isEqualTo("sa@project.iam");
+  }
+
+  @Test
+  public void sharedCredentials_serveCachedTokenWithoutWaitingForCredentials() throws Exception {
+    TokenFileCache cache = new TokenFileCache(directory, "file-cached", SCOPE);
+    cache.write(token("cached-token", 3600), "sa@project.iam");
+    CountDownLatch loaded = new CountDownLatch(1);
+    SharedCredentials shared =
+        SharedCredentials.acquire(
+            "file-cached",
+            SCOPE,
+            () -> {
+              try {
+                loaded.await();
+              } catch (InterruptedException e) {
+                throw new IOException(e);
+              }
+              return new SharedCredentialsTest.CountingGoogleCredentials();
+            });
+    try {
+      shared.useFileCache(cache);
+      shared.startLoading();
+
+      assertThat(shared.getAccessToken().getTokenValue()).isEqualTo("cached-token");
+      assertThat(shared.getPrincipal(credentials -> null)).isEqualTo("sa@project.iam");
+    } finally {
+      loaded.countDown();
+      shared.release();
+    }
+  }
+
+  @Test
+  public void sharedCredentials_writeRefreshedTokens() throws Exception {
+    TokenFileCache cache = new TokenFileCache(directory, "file-written", SCOPE);
+    SharedCredentials shared =
+        SharedCredentials.acquire(
+            "file-written", SCOPE, SharedCredentialsTest.CountingGoogleCredentials::new);
+    try {
+      shared.useFileCache(cache);
+
+      assertThat(shared.getPrincipal(GcpLoginCallbackHandler::resolvePrincipal))
+          .isEqualTo("fake-account@google.com");
+      AccessToken token = shared.getAccessToken();
+
+      TokenFileCache.CachedToken cached = cache.read();
+      assertThat(cached.token.getTokenValue()).isEqualTo(token.getTokenValue());
+      assertThat(cached.principal).isEqualTo("fake-account@google.com");
+    } finally {
+      shared.release();
+    }
+  }
+}
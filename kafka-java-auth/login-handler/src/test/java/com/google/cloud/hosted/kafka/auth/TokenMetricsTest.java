@@ -0,0 +1,216 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.security.auth.callback.Callback;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.KafkaMetric;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.security.oauthbearer.OAuthBearerTokenCallback;
+import org.apache.kafka.common.utils.Time;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit test for TokenMetrics. */
+@RunWith(JUnit4.class)
+public final class TokenMetricsTest {
+
+  /** A clock that only moves when the test sleeps. */
+  private static final class FakeTime implements Time {
+    private long nowMs = 1_000_000L;
+
+    @Override
+    public long milliseconds() {
+      return nowMs;
+    }
+
+    @Override
+    public long nanoseconds() {
+      return TimeUnit.MILLISECONDS.toNanos(nowMs);
+    }
+
+    @Override
+    public void sleep(long ms) {
+      nowMs += ms;
+    }
+
+    @Override
+    public void waitObject(Object obj, Supplier<Boolean> condition, long deadlineMs) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static Object metricValue(Metrics registry, TokenMetrics metrics, String name) {
+    KafkaMetric metric =
+        registry.metric(
+            registry.metricName(name, TokenMetrics.METRIC_GROUP, "", metrics.tags()));
+    return metric == null ? null : metric.metricValue();
+  }
+
+  // The registry keeps a metric of its own, so only the metrics of the group are of interest.
+  private static Map<MetricName, KafkaMetric> groupMetrics(Metrics registry) {
+    return Maps.filterKeys(
+        registry.metrics(), name -> name.group().equals(TokenMetrics.METRIC_GROUP));
+  }
+
+  @Test
+  public void register_duplicateClientIdGetsSuffix() {
+    Metrics registry = new Metrics();
+
+    TokenMetrics first = TokenMetrics.register(registry, "component", "client");
+    TokenMetrics second = TokenMetrics.register(registry, "component", "client");
+    TokenMetrics other = TokenMetrics.register(registry, "other-component", "client");
+    TokenMetrics unnamed = TokenMetrics.register(registry, "component", null);
+
+    assertThat(first.tags()).containsEntry(TokenMetrics.CLIENT_ID_TAG, "client");
+    assertThat(second.tags()).containsEntry(TokenMetrics.CLIENT_ID_TAG, "client-2");
+    assertThat(other.tags()).containsEntry(TokenMetrics.CLIENT_ID_TAG, "client");
+    assertThat(unnamed.tags()).containsEntry(TokenMetrics.CLIENT_ID_TAG, "unknown");
+  }
+
+  @Test
+  public void close_removesMetrics() {
+    Metrics registry = new Metrics();
+    TokenMetrics metrics = TokenMetrics.register(registry, "component", "client");
+    assertThat(groupMetrics(registry)).isNotEmpty();
+
+    metrics.close();
+
+    assertThat(groupMetrics(registry)).isEmpty();
+    assertThat(TokenMetrics.register(registry, "component", "client").tags())
+        .containsEntry(TokenMetrics.CLIENT_ID_TAG, "client");
+  }
+
+  @Test
+  public void record_updatesMetrics() {
+    Metrics registry = new Metrics();
+    TokenMetrics metrics = TokenMetrics.register(registry, "component", "client");
+
+    metrics.recordRefresh(TimeUnit.MILLISECONDS.toNanos(20));
+    metrics.recordRefresh(TimeUnit.MILLISECONDS.toNanos(40));
+    metrics.recordRefreshFailure();
+    metrics.recordCacheHit();
+    metrics.recordCacheHit();
+    metrics.recordCacheHit();
+    metrics.recordTokenIssued(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(10));
+
+    assertThat(metricValue(registry, metrics, "refresh-total")).isEqualTo(2.0);
+    assertThat(metricValue(registry, metrics, "refresh-latency-avg")).isEqualTo(30.0);
+    assertThat(metricValue(registry, metrics, "refresh-latency-max")).isEqualTo(40.0);
+    assertThat(metricValue(registry, metrics, "refresh-failure-total")).isEqualTo(1.0);
+    assertThat(metricValue(registry, metrics, "cache-hit-total")).isEqualTo(3.0);
+    assertThat((Double) metricValue(registry, metrics, "token-expiry-seconds"))
+        .isWithin(5.0)
+        .of(600.0);
+    assertThat((Double) metricValue(registry, metrics, "token-remaining-lifetime-seconds-min"))
+        .isWithin(5.0)
+        .of(600.0);
+  }
+
+  @Test
+  public void record_keepsRefreshLatencyUntilNextRefresh() {
+    FakeTime time = new FakeTime();
+    Metrics registry = new Metrics(time);
+    TokenMetrics metrics = TokenMetrics.register(registry, "component", "client");
+
+    metrics.recordRefresh(TimeUnit.MILLISECONDS.toNanos(20));
+    // Access tokens are refreshed about once an hour.
+    time.sleep(TimeUnit.MINUTES.toMillis(50));
+
+    assertThat(metricValue(registry, metrics, "refresh-latency-avg")).isEqualTo(20.0);
+    assertThat(metricValue(registry, metrics, "refresh-latency-max")).isEqualTo(20.0);
+    // Percentiles are estimated from buckets wider than the latency.
+    assertThat((Double) metricValue(registry, metrics, "refresh-latency-p50")).isNotNaN();
+  }
+
+  @Test
+  public void none_discardsRecords() {
+    TokenMetrics.NONE.recordRefresh(1);
+    TokenMetrics.NONE.recordRefreshFailure();
+    TokenMetrics.NONE.recordTokenIssued(System.currentTimeMillis());
+    TokenMetrics.NONE.close();
+
+    assertThat(TokenMetrics.NONE.tags()).isEmpty();
+  }
+
+  @Test
+  public void loginCallbackHandler_recordsRefreshesAndCacheHits() throws Exception {
+    GcpLoginCallbackHandler handler =
+        new GcpLoginCallbackHandler(new GcpLoginCallbackHandlerTest.FakeGoogleCredentials());
+    handler.configure(
+        ImmutableMap.of("client.id", "metrics-test-producer"), "OAUTHBEARER", null);
+    Callback[] callbacks = {new OAuthBearerTokenCallback()};
+
+    handler.handle(callbacks);
+    handler.handle(callbacks);
+    handler.handle(callbacks);
+
+    Map<String, String> tags =
+        ImmutableMap.of(
+            TokenMetrics.CLIENT_ID_TAG, "metrics-test-producer",
+            TokenMetrics.COMPONENT_TAG, "login-callback-handler");
+    assertThat(globalMetricValue("refresh-total", tags)).isEqualTo(1.0);
+    assertThat(globalMetricValue("cache-hit-total", tags)).isEqualTo(2.0);
+    assertThat((Double) globalMetricValue("token-expiry-seconds", tags)).isGreaterThan(0.0);
+
+    handler.close();
+    assertThat(globalMetricValue("refresh-total", tags)).isNull();
+  }
+
+  @Test
+  public void loginCallbackHandler_recordsFailures() throws Exception {
+    GcpLoginCallbackHandler handler =
+        new GcpLoginCallbackHandler(
+            new GcpLoginCallbackHandlerTest.FakeGoogleCredentials() {
+              @Override
+              public AccessToken refreshAccessToken() throws IOException {
+                throw new IOException("refresh failed");
+              }
+            });
+    handler.configure(ImmutableMap.of("client.id", "metrics-test-failing"), "OAUTHBEARER", null);
+    Callback[] callbacks = {new OAuthBearerTokenCallback()};
+
+    assertThrows(IOException.class, () -> handler.handle(callbacks));
+
+    Map<String, String> tags =
+        ImmutableMap.of(
+            TokenMetrics.CLIENT_ID_TAG, "metrics-test-failing",
+            TokenMetrics.COMPONENT_TAG, "login-callback-handler");
+    assertThat(globalMetricValue("refresh-failure-total", tags)).isEqualTo(1.0);
+    assertThat(globalMetricValue("refresh-total", tags)).isEqualTo(0.0);
+    handler.close();
+  }
+
+  static Object globalMetricValue(String name, Map<String, String> tags) {
+    Metrics registry = TokenMetrics.registry();
+    MetricName metricName = registry.metricName(name, TokenMetrics.METRIC_GROUP, "", tags);
+    KafkaMetric metric = registry.metric(metricName);
+    return metric == null ? null : metric.metricValue();
+  }
+}
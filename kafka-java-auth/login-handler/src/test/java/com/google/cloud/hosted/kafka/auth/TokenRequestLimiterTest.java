@@ -0,0 +1,194 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.kafka.common.metrics.Metrics;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit test for TokenRequestLimiter. */
+@RunWith(JUnit4.class)
+public final class TokenRequestLimiterTest {
+  private final AtomicLong nowMs = new AtomicLong(1_000_000);
+  private final TokenRequestLimiter limiter = new TokenRequestLimiter(nowMs::get);
+
+  @Test
+  public void reserve_allowsBurstThenPacesAtRate() {
+    limiter.setPolicy(new TokenRequestLimiter.Policy(10, 3, 1000));
+
+    assertThat(limiter.reserve(nowMs.get())).isEqualTo(0L);
+    assertThat(limiter.reserve(nowMs.get())).isEqualTo(0L);
+    assertThat(limiter.reserve(nowMs.get())).isEqualTo(0L);
+    assertThat(limiter.reserve(nowMs.get())).isEqualTo(100L);
+    assertThat(limiter.reserve(nowMs.get())).isEqualTo(200L);
+  }
+
+  @Test
+  public void reserve_replenishesPermitsUpToBurst() {
+    limiter.setPolicy(new TokenRequestLimiter.Policy(10, 3, 1000));
+    for (int i = 0; i < 3; i++) {
+      limiter.reserve(nowMs.get());
+    }
+
+    nowMs.addAndGet(250);
+    assertThat(limiter.reserve(nowMs.get())).isEqualTo(0L);
+    assertThat(limiter.reserve(nowMs.get())).isEqualTo(0L);
+    assertThat(limiter.reserve(nowMs.get())).isEqualTo(50L);
+
+    nowMs.addAndGet(60_000);
+    assertThat(limiter.availablePermits(nowMs.get())).isEqualTo(3.0);
+  }
+
+  @Test
+  public void reserve_shedsRequestsThatWouldWaitTooLong() {
+    limiter.setPolicy(new TokenRequestLimiter.Policy(10, 1, 150));
+
+    assertThat(limiter.reserve(nowMs.get())).isEqualTo(0L);
+    assertThat(limiter.reserve(nowMs.get())).isEqualTo(100L);
+    assertThat(limiter.reserve(nowMs.get())).isEqualTo(-1L);
+    // Shed requests reserve nothing.
+    nowMs.addAndGet(100);
+    assertThat(limiter.reserve(nowMs.get())).isEqualTo(100L);
+  }
+
+  @Test
+  public void reserve_doesNotLimitWithoutRate() {
+    limiter.setPolicy(new TokenRequestLimiter.Policy(0, 1, 0));
+
+    for (int i = 0; i < 1000; i++) {
+      assertThat(limiter.reserve(nowMs.get())).isEqualTo(0L);
+    }
+    assertThat(limiter.saturation(nowMs.get())).isEqualTo(0.0);
+  }
+
+  @Test
+  public void acquire_throwsWhenShed() throws Exception {
+    limiter.setPolicy(new TokenRequestLimiter.Policy(1, 1, 0));
+
+    limiter.acquire();
+
+    IOException e = assertThrows(TokenRequestLimiter.ShedException.class, limiter::acquire);
+    assertThat(e).hasMessageThat().contains("Shed a request");
+    assertThat(TokenRequestLimiter.isShed(new IOException("Failed to refresh", e))).isTrue();
+    assertThat(TokenRequestLimiter.isShed(new IOException("Failed to refresh"))).isFalse();
+  }
+
+  @Test
+  public void acquire_givesBackPermitWhenInterrupted() throws Exception {
+    limiter.setPolicy(new TokenRequestLimiter.Policy(1, 1, 5000));
+    limiter.acquire();
+
+    Thread.currentThread().interrupt();
+    try {
+      assertThrows(InterruptedIOException.class, limiter::acquire);
+    } finally {
+      Thread.interrupted();
+    }
+
+    assertThat(limiter.availablePermits(nowMs.get())).isEqualTo(0.0);
+  }
+
+  @Test
+  public void metrics_reportSaturationAndShedRequests() throws Exception {
+    Metrics registry = new Metrics();
+    limiter.registerMetrics(registry);
+    limiter.setPolicy(new TokenRequestLimiter.Policy(1, 4, 0));
+
+    limiter.acquire();
+    limiter.acquire();
+    assertThat(metricValue(registry, "token-request-saturation")).isEqualTo(0.5);
+    assertThat(metricValue(registry, "token-request-permits-available")).isEqualTo(2.0);
+
+    limiter.acquire();
+    limiter.acquire();
+    assertThrows(IOException.class, limiter::acquire);
+    assertThat(metricValue(registry, "token-request-saturation")).isEqualTo(1.0);
+    assertThat(metricValue(registry, "token-request-total")).isEqualTo(4.0);
+    assertThat(metricValue(registry, "token-request-shed-total")).isEqualTo(1.0);
+    assertThat(metricValue(registry, "token-request-queued")).isEqualTo(0.0);
+    assertThat(metricValue(registry, "token-request-wait-time-max")).isEqualTo(0.0);
+    registry.close();
+  }
+
+  @Test
+  public void policyFromConfig_isNullUnlessAnOptionIsSet() {
+    assertThat(
+            TokenRequestLimiter.Policy.fromConfig(new GcpAuthConfig(Collections.emptyMap())))
+        .isNull();
+
+    TokenRequestLimiter.Policy policy =
+        TokenRequestLimiter.Policy.fromConfig(
+            new GcpAuthConfig(
+                ImmutableMap.of(GcpAuthConfig.TOKEN_REQUESTS_PER_SECOND_CONFIG, "5")));
+
+    assertThat(policy.permitsPerSecond).isEqualTo(5.0);
+    assertThat(policy.burst).isEqualTo(GcpAuthConfig.DEFAULT_TOKEN_REQUESTS_BURST);
+    assertThat(policy.maxWaitMs).isEqualTo(GcpAuthConfig.DEFAULT_TOKEN_REQUESTS_MAX_WAIT_MS);
+  }
+
+  @Test
+  public void configurePolicy_firstPolicyReplacesDefault() {
+    limiter.configurePolicy(new TokenRequestLimiter.Policy(100, 200, 10_000));
+
+    assertThat(limiter.availablePermits(nowMs.get())).isEqualTo(40.0);
+    nowMs.addAndGet(1000);
+    assertThat(limiter.availablePermits(nowMs.get())).isEqualTo(140.0);
+  }
+
+  @Test
+  public void configurePolicy_keepsStrictestSettings() {
+    limiter.configurePolicy(new TokenRequestLimiter.Policy(10, 3, 5000));
+    limiter.configurePolicy(new TokenRequestLimiter.Policy(100, 2, 10_000));
+    // A client that disables the limit does not disable it for the others.
+    limiter.configurePolicy(new TokenRequestLimiter.Policy(0, 50, 10_000));
+
+    assertThat(limiter.reserve(nowMs.get())).isEqualTo(0L);
+    assertThat(limiter.reserve(nowMs.get())).isEqualTo(0L);
+    assertThat(limiter.reserve(nowMs.get())).isEqualTo(100L);
+  }
+
+  @Test
+  public void policyStrictest_takesStricterValueOfEachSetting() {
+    TokenRequestLimiter.Policy strictest =
+        new TokenRequestLimiter.Policy(10, 50, 1000)
+            .strictest(new TokenRequestLimiter.Policy(0, 5, 2000));
+
+    assertThat(strictest.permitsPerSecond).isEqualTo(10.0);
+    assertThat(strictest.burst).isEqualTo(5);
+    assertThat(strictest.maxWaitMs).isEqualTo(1000L);
+  }
+
+  private static Object metricValue(Metrics registry, String name) {
+    return registry
+        .metric(
+            registry.metricName(
+                name,
+                TokenMetrics.METRIC_GROUP,
+                "",
+                Collections.singletonMap(TokenMetrics.COMPONENT_TAG, "token-request-limiter")))
+        .metricValue();
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.auth.oauth2.AccessToken;
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import javax.security.auth.callback.Callback;
+import org.apache.kafka.common.security.oauthbearer.OAuthBearerTokenCallback;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit test for TokenTracing. */
+@RunWith(JUnit4.class)
+public final class TokenTracingTest {
+  private static final String SCOPE = "https://www.googleapis.com/auth/cloud-platform";
+  private static final AttributeKey<String> CREDENTIAL_TYPE =
+      AttributeKey.stringKey(TokenTracing.CREDENTIAL_TYPE_ATTRIBUTE);
+  private static final AttributeKey<Boolean> CACHE_HIT =
+      AttributeKey.booleanKey(TokenTracing.CACHE_HIT_ATTRIBUTE);
+
+  private final InMemorySpanExporter exporter = InMemorySpanExporter.create();
+
+  @Before
+  public void setUp() {
+    GcpAuthTracing.setOpenTelemetry(
+        OpenTelemetrySdk.builder()
+            .setTracerProvider(
+                SdkTracerProvider.builder()
+                    .addSpanProcessor(SimpleSpanProcessor.create(exporter))
+                    .build())
+            .build());
+  }
+
+  @After
+  public void tearDown() {
+    GcpAuthTracing.setOpenTelemetry(null);
+  }
+
+  private static class FailingCredentials extends SharedCredentialsTest.CountingGoogleCredentials {
+    @Override
+    public AccessToken refreshAccessToken() throws IOException {
+      throw new IOException("Metadata server unavailable");
+    }
+  }
+
+  private static void handle(GcpLoginCallbackHandler handler) throws Exception {
+    handler.handle(new Callback[] {new OAuthBearerTokenCallback()});
+  }
+
+  private SpanData span(String name) {
+    List<SpanData> matching = spans(name);
+    assertThat(matching).hasSize(1);
+    return matching.get(0);
+  }
+
+  private List<SpanData> spans(String name) {
+    List<SpanData> matching = new ArrayList<>();
+    for (SpanData span : exporter.getFinishedSpanItems()) {
+      if (span.getName().equals(name)) {
+        matching.add(span);
+      }
+    }
+    return matching;
+  }
+
+  @Test
+  public void none_createsNoSpans() throws Exception {
+    TokenTracing.set(TokenTracing.NONE);
+    GcpLoginCallbackHandler handler =
+        new GcpLoginCallbackHandler(new SharedCredentialsTest.CountingGoogleCredentials());
+    handler.configure(new HashMap<String, Object>(), "OAUTHBEARER", null);
+
+    handle(handler);
+
+    assertThat(exporter.getFinishedSpanItems()).isEmpty();
+    handler.close();
+  }
+
+  @Test
+  public void none_leavesGlobalOpenTelemetryToTheApplication() throws Exception {
+    GcpAuthTracing.setOpenTelemetry(null);
+    GlobalOpenTelemetry.resetForTest();
+    GcpLoginCallbackHandler handler =
+        new GcpLoginCallbackHandler(new SharedCredentialsTest.CountingGoogleCredentials());
+    handler.configure(new HashMap<String, Object>(), "OAUTHBEARER", null);
+    try {
+      handle(handler);
+
+      // Throws if the token request had installed a global instance.
+      GlobalOpenTelemetry.set(OpenTelemetrySdk.builder().build());
+    } finally {
+      GlobalOpenTelemetry.resetForTest();
+      handler.close();
+    }
+  }
+
+  @Test
+  public void handleTokenCallback_tracesEveryPhase() throws Exception {
+    GcpLoginCallbackHandler handler =
+        new GcpLoginCallbackHandler(new SharedCredentialsTest.CountingGoogleCredentials());
+    handler.configure(new HashMap<String, Object>(), "OAUTHBEARER", null);
+
+    handle(handler);
+
+    SpanData root = span(TokenTracing.HANDLE_TOKEN_CALLBACK_SPAN);
+    assertThat(root.getAttributes().get(CREDENTIAL_TYPE)).isEqualTo("CountingGoogleCredentials");
+    assertThat(root.getAttributes().get(CACHE_HIT)).isFalse();
+    assertThat(root.getStatus().getStatusCode()).isEqualTo(StatusCode.UNSET);
+    for (String phase :
+        new String[] {
+          TokenTracing.RESOLVE_PRINCIPAL_SPAN,
+          TokenTracing.REFRESH_SPAN,
+          TokenTracing.ENCODE_TOKEN_SPAN
+        }) {
+      assertThat(span(phase).getParentSpanId()).isEqualTo(root.getSpanId());
+    }
+    handler.close();
+  }
+
+  @Test
+  public void handleTokenCallback_recordsCacheHit() throws Exception {
+    GcpLoginCallbackHandler handler =
+        new GcpLoginCallbackHandler(new SharedCredentialsTest.CountingGoogleCredentials());
+    handler.configure(new HashMap<String, Object>(), "OAUTHBEARER", null);
+    handle(handler);
+    exporter.reset();
+
+    handle(handler);
+
+    assertThat(span(TokenTracing.HANDLE_TOKEN_CALLBACK_SPAN).getAttributes().get(CACHE_HIT))
+        .isTrue();
+    assertThat(spans(TokenTracing.REFRESH_SPAN)).isEmpty();
+    assertThat(spans(TokenTracing.RESOLVE_PRINCIPAL_SPAN)).isEmpty();
+    handler.close();
+  }
+
+  @Test
+  public void handleTokenCallback_tracesWaitForCredentials() throws Exception {
+    GcpLoginCallbackHandler handler =
+        new GcpLoginCallbackHandler(
+            SharedCredentials.acquire(
+                "traced-loading",
+                SCOPE,
+                () -> {
+                  try {
+                    Thread.sleep(100);
+                  } catch (InterruptedException e) {
+                    throw new IOException(e);
+                  }
+                  return new SharedCredentialsTest.CountingGoogleCredentials();
+                }));
+    handler.configure(new HashMap<String, Object>(), "OAUTHBEARER", null);
+
+    handle(handler);
+
+    // The principal is resolved first, so that is where the callback waits for the credentials.
+    assertThat(span(TokenTracing.LOAD_CREDENTIALS_SPAN).getParentSpanId())
+        .isEqualTo(span(TokenTracing.RESOLVE_PRINCIPAL_SPAN).getSpanId());
+    assertThat(span(TokenTracing.RESOLVE_PRINCIPAL_SPAN).getParentSpanId())
+        .isEqualTo(span(TokenTracing.HANDLE_TOKEN_CALLBACK_SPAN).getSpanId());
+    handler.close();
+  }
+
+  @Test
+  public void handleTokenCallback_failedRefreshMarksSpansFailed() throws Exception {
+    GcpLoginCallbackHandler handler = new GcpLoginCallbackHandler(new FailingCredentials());
+    handler.configure(new HashMap<String, Object>(), "OAUTHBEARER", null);
+
+    assertThrows(IOException.class, () -> handle(handler));
+
+    assertThat(span(TokenTracing.HANDLE_TOKEN_CALLBACK_SPAN).getStatus().getStatusCode())
+        .isEqualTo(StatusCode.ERROR);
+    assertThat(span(TokenTracing.REFRESH_SPAN).getStatus().getStatusCode())
+        .isEqualTo(StatusCode.ERROR);
+    handler.close();
+  }
+}
@@ -0,0 +1,560 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.auth.oauth2.IdTokenProvider;
+import com.google.common.annotations.VisibleForTesting;
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClientConfig;
+import io.confluent.kafka.schemaregistry.client.security.bearerauth.BearerAuthCredentialProvider;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.apache.kafka.clients.CommonClientConfigs;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.security.oauthbearer.internals.secured.ConfigurationUtils;
+
+/**
+ * A Bearer Auth Credential Provider that provides a Google OAuth token to a Schema Registry client.
+ *
+ * <p>This callback handler is used by the Schema Registry client to authenticate to a Google's
+ * Schema Registry server using OAuth.
+ *
+ * <p>Requests read an immutable snapshot of the current token without taking any lock. Only when
+ * the token nears its expiry is a lock taken: shortly before the expiry, the token is refreshed in
+ * the background while requests keep using the current token, and requests that find the token
+ * expired wait on a single shared refresh. Failed refreshes are retried with backoff, during which
+ * the last token keeps being served for a grace period while it is still valid.
+ *
+ * <p>By default, the same access token is sent to every registry. With {@link
+ * GcpAuthConfig#SCHEMA_REGISTRY_TOKEN_TYPE_CONFIG} set to <code>id_token</code>, each registry is
+ * sent an ID token whose audience is the registry's origin, such as <code>
+ * https://managedkafka.googleapis.com</code>. The tokens of up to {@link
+ * GcpAuthConfig#SCHEMA_REGISTRY_TOKEN_TARGETS_MAX_CONFIG} registries are kept, each refreshed
+ * independently. The logical cluster and identity pool are the same for every request of a
+ * provider, and are sent separately from the token, so they do not select a token.
+ *
+ * <p>Unless {@link GcpAuthConfig#SCHEMA_REGISTRY_TOKEN_PREFETCH_ENABLE_CONFIG} is disabled, every
+ * token is also refreshed in the background once it enters the early refresh window, so that even
+ * a registry that is rarely used has a valid token when the next request comes.
+ *
+ * <p>The access token comes from the same {@link SharedCredentials} as the one of the login
+ * callback handlers with the same credentials, so a client that talks to both Kafka and Schema
+ * Registry refreshes a single token. With {@link GcpAuthConfig#TOKEN_CACHE_DIR_CONFIG}, an access
+ * token kept on disk by an earlier process is used until it nears its expiry, and refreshed access
+ * tokens are kept for later processes.
+ *
+ * <p>Since a token is requested before every Schema Registry request, the provider can also pace
+ * the requests to a registry that throttles them, with {@link
+ * GcpAuthConfig#SCHEMA_REGISTRY_RATE_LIMIT_ENABLE_CONFIG}, see {@link SchemaRegistryRetryPolicy}.
+ */
+public class GcpBearerAuthCredentialProvider implements BearerAuthCredentialProvider {
+
+  private static final String GOOGLE_CLOUD_PLATFORM_SCOPE =
+      "https://www.googleapis.com/auth/cloud-platform";
+  private static final String CREDENTIAL_PROVIDER_ALIAS = "GOOGLE_CLOUD_OAUTH";
+  // Tokens closer than this to their expiry are not handed out, so that they cannot expire while
+  // a request is in flight.
+  private static final long MIN_REMAINING_LIFETIME_MS = 30 * 1000L;
+  // The shortest wait before a failed background refresh is retried.
+  private static final long MIN_PREFETCH_RETRY_DELAY_MS = 1000L;
+  private static final String METRICS_COMPONENT = "bearer-auth-credential-provider";
+
+  /** The kinds of token that can be sent to Schema Registry. */
+  enum TokenType {
+    ACCESS_TOKEN,
+    ID_TOKEN
+  }
+
+  // Replaced in configure() by the configured credentials, unless injected for testing.
+  private SharedCredentials sharedCredentials;
+  private final boolean credentialsInjected;
+  private final LongSupplier clock;
+  private boolean closed;
+  private String targetSchemaRegistry;
+  private String targetIdentityPoolId;
+  private long earlyRefreshWindowMs = GcpAuthConfig.DEFAULT_EARLY_REFRESH_WINDOW_MS;
+  private TokenMetrics metrics = TokenMetrics.NONE;
+  private boolean rateLimitEnabled = false;
+  private TokenType tokenType = TokenType.ACCESS_TOKEN;
+  private int maxTargets = GcpAuthConfig.DEFAULT_SCHEMA_REGISTRY_TOKEN_TARGETS_MAX;
+  private boolean prefetchEnabled = true;
+  private RefreshGuard.Policy refreshPolicy = RefreshGuard.Policy.DEFAULT;
+
+  // The access token, which is the same for every registry.
+  private final TargetToken accessToken = new TargetToken(null);
+  // ID tokens by audience. Replaced as a whole under targetsLock, so that requests look up their
+  // token without taking a lock.
+  private volatile Map<String, TargetToken> idTokens = Collections.emptyMap();
+  private final Object targetsLock = new Object();
+
+  /**
+   * Creates a new credential provider using the credentials configured by {@link
+   * GcpAuthConfig#CREDENTIALS_SOURCE_CONFIG}, by default the application default credentials.
+   * The credentials are loaded in the background once the provider is configured.
+   */
+  public GcpBearerAuthCredentialProvider() {
+    this.sharedCredentials = acquire(CredentialSource.APPLICATION_DEFAULT);
+    this.credentialsInjected = false;
+    this.clock = System::currentTimeMillis;
+  }
+
+  @VisibleForTesting
+  public GcpBearerAuthCredentialProvider(GoogleCredentials credentials) {
+    this(SharedCredentials.unshared(credentials));
+  }
+
+  @VisibleForTesting
+  GcpBearerAuthCredentialProvider(SharedCredentials sharedCredentials) {
+    this(sharedCredentials, System::currentTimeMillis);
+  }
+
+  @VisibleForTesting
+  GcpBearerAuthCredentialProvider(SharedCredentials sharedCredentials, LongSupplier clock) {
+    this.sharedCredentials = sharedCredentials;
+    this.credentialsInjected = true;
+    this.clock = clock;
+  }
+
+  // The login callback handler acquires the same entry for the same credentials.
+  private static SharedCredentials acquire(CredentialSource source) {
+    return SharedCredentials.acquire(
+        source.identity(),
+        GOOGLE_CLOUD_PLATFORM_SCOPE,
+        () -> source.load(GOOGLE_CLOUD_PLATFORM_SCOPE));
+  }
+
+  @Override
+  public String alias() {
+    return CREDENTIAL_PROVIDER_ALIAS;
+  }
+
+  @Override
+  public String getTargetSchemaRegistry() {
+    return this.targetSchemaRegistry;
+  }
+
+  @Override
+  public String getTargetIdentityPoolId() {
+    return this.targetIdentityPoolId;
+  }
+
+  @Override
+  public String getBearerToken(URL url) {
+    try (TokenTracing.Span span = TokenTracing.get().start(TokenTracing.GET_BEARER_TOKEN_SPAN)) {
+      GoogleCredentials loaded = sharedCredentials.getCredentialsIfLoaded();
+      if (loaded != null) {
+        span.setAttribute(
+            TokenTracing.CREDENTIAL_TYPE_ATTRIBUTE, loaded.getClass().getSimpleName());
+      }
+      try {
+        if (rateLimitEnabled && url != null) {
+          RegistryRateLimiter.forUrl(url).acquire();
+        }
+        return target(url).getToken(span);
+      } catch (RuntimeException e) {
+        span.recordFailure(e);
+        throw e;
+      }
+    }
+  }
+
+  private TargetToken target(URL url) {
+    if (tokenType == TokenType.ACCESS_TOKEN) {
+      return accessToken;
+    }
+    if (url == null) {
+      throw new IllegalStateException("ID tokens can only be issued for a Schema Registry URL");
+    }
+    String audience = audience(url);
+    TargetToken target = idTokens.get(audience);
+    if (target == null) {
+      synchronized (targetsLock) {
+        target = idTokens.get(audience);
+        if (target == null) {
+          Map<String, TargetToken> updated = new HashMap<>(idTokens);
+          target = new TargetToken(audience);
+          updated.put(audience, target);
+          while (updated.size() > maxTargets) {
+            leastRecentlyUsed(updated).close();
+          }
+          idTokens = updated;
+        }
+      }
+    }
+    target.lastUsedNanos = System.nanoTime();
+    return target;
+  }
+
+  // Removes and returns the target that was used least recently.
+  private static TargetToken leastRecentlyUsed(Map<String, TargetToken> targets) {
+    Map.Entry<String, TargetToken> eldest = null;
+    for (Map.Entry<String, TargetToken> entry : targets.entrySet()) {
+      if (eldest == null
+          || entry.getValue().lastUsedNanos - eldest.getValue().lastUsedNanos < 0) {
+        eldest = entry;
+      }
+    }
+    return targets.remove(eldest.getKey());
+  }
+
+  /** Returns the origin of the URL, which is the audience of the ID tokens sent to it. */
+  @VisibleForTesting
+  static String audience(URL url) {
+    String origin =
+        url.getProtocol().toLowerCase(Locale.ROOT) + "://" + url.getHost().toLowerCase(Locale.ROOT);
+    return url.getPort() == -1 ? origin : origin + ":" + url.getPort();
+  }
+
+  /**
+   * Returns a new token for the audience. If the audience is null, returns the shared access token
+   * instead, refreshing it unless another client already has, so that it is valid beyond the early
+   * refresh window.
+   */
+  private AccessToken fetchToken(String audience) throws IOException {
+    if (audience == null) {
+      // Refreshes of the shared token are recorded in the metrics of all its clients.
+      return sharedCredentials.getAccessToken(
+          TokenMetrics.NONE, Math.max(earlyRefreshWindowMs, MIN_REMAINING_LIFETIME_MS));
+    }
+    GoogleCredentials loaded = sharedCredentials.getCredentials();
+    if (!(loaded instanceof IdTokenProvider)) {
+      throw new IOException(
+          "Credentials of type "
+              + loaded.getClass().getName()
+              + " cannot issue ID tokens. Set "
+              + GcpAuthConfig.SCHEMA_REGISTRY_TOKEN_TYPE_CONFIG
+              + " to access_token, or use service account, impersonated or metadata server"
+              + " credentials.");
+    }
+    return ((IdTokenProvider) loaded)
+        .idTokenWithAudience(audience, Collections.<IdTokenProvider.Option>emptyList());
+  }
+
+  /** The token of one target, with its refresh state. */
+  private final class TargetToken {
+    // Null for the access token.
+    private final String audience;
+    private volatile TokenSnapshot snapshot;
+    private final Object refreshLock = new Object();
+    // Guarded by refreshLock.
+    private CompletableFuture<TokenSnapshot> inflightRefresh;
+    // Guarded by refreshLock.
+    private ScheduledFuture<?> prefetch;
+    // Guarded by refreshLock.
+    private boolean closed;
+    private final RefreshGuard refreshGuard = new RefreshGuard();
+    // When a request last looked up the token, to keep the tokens of the registries in use.
+    private volatile long lastUsedNanos;
+
+    TargetToken(String audience) {
+      this.audience = audience;
+      this.lastUsedNanos = System.nanoTime();
+      this.refreshGuard.setPolicy(refreshPolicy);
+    }
+
+    String getToken(TokenTracing.Span span) {
+      // Fast path: a plain volatile read, without taking any lock.
+      TokenSnapshot current = this.snapshot;
+      long now = clock.getAsLong();
+      if (current != null && now < current.refreshAtMs) {
+        metrics.recordCacheHit();
+        span.setAttribute(TokenTracing.CACHE_HIT_ATTRIBUTE, true);
+        return current.tokenValue;
+      }
+      if (current != null && now < current.usableUntilMs) {
+        // Refresh ahead of the expiry without making this request wait for it.
+        startRefresh(true);
+        metrics.recordCacheHit();
+        span.setAttribute(TokenTracing.CACHE_HIT_ATTRIBUTE, true);
+        return current.tokenValue;
+      }
+      span.setAttribute(TokenTracing.CACHE_HIT_ATTRIBUTE, false);
+      try {
+        return startRefresh(false).join().tokenValue;
+      } catch (CompletionException e) {
+        throw new IllegalStateException(
+            "Failed to refresh or fetch Google credentials ", e.getCause());
+      }
+    }
+
+    /**
+     * Returns the in-flight refresh, starting one if there is none. The refresh runs on the
+     * calling thread, or in the background if <code>async</code> is set. If another caller
+     * completed a refresh in the meantime, its token is returned without refreshing again.
+     */
+    private CompletableFuture<TokenSnapshot> startRefresh(boolean async) {
+      CompletableFuture<TokenSnapshot> refresh;
+      synchronized (refreshLock) {
+        if (inflightRefresh != null) {
+          return inflightRefresh;
+        }
+        TokenSnapshot current = this.snapshot;
+        GoogleCredentials loaded = sharedCredentials.getCredentialsIfLoaded();
+        if (current == null && audience == null && loaded != null) {
+          // The credentials may already hold a token, e.g. if they were refreshed by their owner.
+          AccessToken token = loaded.getAccessToken();
+          if (token != null) {
+            current = publish(token);
+          }
+        }
+        long now = clock.getAsLong();
+        if (current != null && now < current.refreshAtMs) {
+          return CompletableFuture.completedFuture(current);
+        }
+        if (!refreshGuard.tryAcquire(now)) {
+          // Backing off from failed refreshes.
+          if (current != null && refreshGuard.canServe(current.expiresAtMs, now)) {
+            return CompletableFuture.completedFuture(current);
+          }
+          CompletableFuture<TokenSnapshot> rejected = new CompletableFuture<>();
+          rejected.completeExceptionally(refreshGuard.rejection(now));
+          return rejected;
+        }
+        refresh = new CompletableFuture<>();
+        inflightRefresh = refresh;
+      }
+      if (async) {
+        // Not on the single refresh thread, where a slow ID token fetch would hold up the refreshes
+        // of every other target and client.
+        SharedCredentials.LOAD_EXECUTOR.execute(() -> refresh(refresh));
+      } else {
+        refresh(refresh);
+      }
+      return refresh;
+    }
+
+    private void refresh(CompletableFuture<TokenSnapshot> refresh) {
+      long startNanos = System.nanoTime();
+      // The shared access token traces its own refreshes, and only those that reach the server.
+      TokenTracing tracing = audience != null ? TokenTracing.get() : TokenTracing.NONE;
+      try (TokenTracing.Span span = tracing.start(TokenTracing.REFRESH_SPAN)) {
+        try {
+          AccessToken token = fetchToken(audience);
+          refreshGuard.onSuccess();
+          if (audience != null) {
+            metrics.recordRefresh(System.nanoTime() - startNanos);
+          }
+          TokenSnapshot published = publish(token);
+          schedulePrefetch(published.refreshAtMs - clock.getAsLong());
+          refresh.complete(published);
+        } catch (IOException | RuntimeException e) {
+          span.recordFailure(e);
+          onRefreshFailure(refresh, e);
+        }
+      } finally {
+        synchronized (refreshLock) {
+          inflightRefresh = null;
+        }
+      }
+    }
+
+    private void onRefreshFailure(CompletableFuture<TokenSnapshot> refresh, Exception e) {
+      long now = clock.getAsLong();
+      long retryDelayMs = refreshGuard.onFailure(e, now);
+      if (audience != null) {
+        metrics.recordRefreshFailure();
+      }
+      TokenSnapshot current = this.snapshot;
+      if (current != null && refreshGuard.canServe(current.expiresAtMs, now)) {
+        // Keep trying in the background while the last token is served.
+        schedulePrefetch(Math.max(retryDelayMs, MIN_PREFETCH_RETRY_DELAY_MS));
+        refresh.complete(current);
+      } else {
+        refresh.completeExceptionally(e);
+      }
+    }
+
+    private TokenSnapshot publish(AccessToken token) {
+      TokenSnapshot published =
+          new TokenSnapshot(token, earlyRefreshWindowMs, clock.getAsLong());
+      this.snapshot = published;
+      if (token.getExpirationTime() != null) {
+        metrics.recordTokenIssued(token.getExpirationTime().getTime());
+      }
+      return published;
+    }
+
+    /**
+     * Refreshes the token in the background after the given delay. Tokens that are received too
+     * close to their expiry to be handed out, or never expire, are not refreshed ahead, but on the
+     * next request.
+     */
+    private void schedulePrefetch(long delayMs) {
+      if (!prefetchEnabled || delayMs <= 0 || snapshot.refreshAtMs == Long.MAX_VALUE) {
+        return;
+      }
+      synchronized (refreshLock) {
+        if (closed) {
+          return;
+        }
+        if (prefetch != null) {
+          prefetch.cancel(false);
+        }
+        prefetch =
+            SharedCredentials.REFRESH_EXECUTOR.schedule(
+                this::prefetch, delayMs, TimeUnit.MILLISECONDS);
+      }
+    }
+
+    private void prefetch() {
+      TokenSnapshot current = this.snapshot;
+      long now = clock.getAsLong();
+      if (current != null && now < current.refreshAtMs) {
+        // The wall clock was behind the scheduler's clock, or a request refreshed the token.
+        schedulePrefetch(current.refreshAtMs - now);
+        return;
+      }
+      startRefresh(true);
+    }
+
+    void close() {
+      synchronized (refreshLock) {
+        closed = true;
+        if (prefetch != null) {
+          prefetch.cancel(false);
+          prefetch = null;
+        }
+      }
+    }
+  }
+
+  /** An immutable view of an access token, with its refresh deadlines computed up front. */
+  private static final class TokenSnapshot {
+    private final String tokenValue;
+    private final long expiresAtMs;
+    // The token is refreshed in the background from this point on. A token that is received
+    // inside the early refresh window is not due before half of its lifetime has passed, so that
+    // a window longer than the token lifetime does not refresh the token on every request.
+    private final long refreshAtMs;
+    // The token is no longer handed out from this point on.
+    private final long usableUntilMs;
+
+    TokenSnapshot(AccessToken token, long earlyRefreshWindowMs, long receivedAtMs) {
+      this.tokenValue = token.getTokenValue();
+      this.expiresAtMs =
+          token.getExpirationTime() == null ? Long.MAX_VALUE : token.getExpirationTime().getTime();
+      this.usableUntilMs = saturatedSubtract(expiresAtMs, MIN_REMAINING_LIFETIME_MS);
+      this.refreshAtMs =
+          Math.min(
+              usableUntilMs,
+              SharedCredentials.refreshAheadAtMillis(
+                  receivedAtMs, expiresAtMs, earlyRefreshWindowMs));
+    }
+
+    private static long saturatedSubtract(long a, long b) {
+      return a == Long.MAX_VALUE ? a : a - b;
+    }
+  }
+
+  @Override
+  public void configure(Map<String, ?> configs) {
+    ConfigurationUtils cu = new ConfigurationUtils(configs);
+    this.targetSchemaRegistry =
+        cu.validateString(SchemaRegistryClientConfig.BEARER_AUTH_LOGICAL_CLUSTER, false);
+    this.targetIdentityPoolId =
+        cu.validateString(SchemaRegistryClientConfig.BEARER_AUTH_IDENTITY_POOL_ID, false);
+    GcpAuthConfig config = new GcpAuthConfig(configs);
+    this.earlyRefreshWindowMs =
+        config.getLong(
+            GcpAuthConfig.EARLY_REFRESH_WINDOW_MS_CONFIG,
+            GcpAuthConfig.DEFAULT_EARLY_REFRESH_WINDOW_MS,
+            0,
+            GcpAuthConfig.MAX_EARLY_REFRESH_WINDOW_MS);
+    this.refreshPolicy = RefreshGuard.Policy.fromConfig(config);
+    this.accessToken.refreshGuard.setPolicy(refreshPolicy);
+    TokenRequestLimiter.configure(config);
+    this.rateLimitEnabled =
+        config.getBoolean(GcpAuthConfig.SCHEMA_REGISTRY_RATE_LIMIT_ENABLE_CONFIG, false);
+    this.tokenType = tokenTypeFromConfig(config);
+    this.maxTargets =
+        (int)
+            config.getLong(
+                GcpAuthConfig.SCHEMA_REGISTRY_TOKEN_TARGETS_MAX_CONFIG,
+                GcpAuthConfig.DEFAULT_SCHEMA_REGISTRY_TOKEN_TARGETS_MAX,
+                1,
+                Integer.MAX_VALUE);
+    this.prefetchEnabled =
+        config.getBoolean(GcpAuthConfig.SCHEMA_REGISTRY_TOKEN_PREFETCH_ENABLE_CONFIG, true);
+    if (!credentialsInjected) {
+      CredentialSource source = CredentialSource.fromConfig(config);
+      SharedCredentials previous = this.sharedCredentials;
+      this.sharedCredentials = acquire(source);
+      previous.release();
+      TokenFileCache fileCache =
+          TokenFileCache.fromConfig(config, source, GOOGLE_CLOUD_PLATFORM_SCOPE);
+      if (fileCache != null) {
+        this.sharedCredentials.useFileCache(fileCache);
+      }
+    }
+    // Overlap loading the credentials with the rest of the client's startup.
+    this.sharedCredentials.startLoading();
+    this.sharedCredentials.setRefreshPolicy(refreshPolicy);
+    this.sharedCredentials.removeMetrics(metrics);
+    this.metrics.close();
+    this.metrics =
+        TokenMetrics.register(
+            METRICS_COMPONENT, config.getString(CommonClientConfigs.CLIENT_ID_CONFIG));
+    this.sharedCredentials.addMetrics(metrics);
+    if (config.getBoolean(GcpAuthConfig.WARMUP_ENABLE_CONFIG, false)) {
+      this.sharedCredentials.warmUp();
+    }
+  }
+
+  private static TokenType tokenTypeFromConfig(GcpAuthConfig config) {
+    String typeName = config.getString(GcpAuthConfig.SCHEMA_REGISTRY_TOKEN_TYPE_CONFIG);
+    if (typeName == null) {
+      return TokenType.ACCESS_TOKEN;
+    }
+    try {
+      return TokenType.valueOf(typeName.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new ConfigException(
+          GcpAuthConfig.SCHEMA_REGISTRY_TOKEN_TYPE_CONFIG,
+          typeName,
+          "Expected access_token or id_token");
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    sharedCredentials.removeMetrics(metrics);
+    sharedCredentials.release();
+    metrics.close();
+    metrics = TokenMetrics.NONE;
+    accessToken.close();
+    synchronized (targetsLock) {
+      for (TargetToken target : idTokens.values()) {
+        target.close();
+      }
+      idTokens = Collections.emptyMap();
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Paces the requests of the whole process to a Schema Registry that is throttling them.
+ *
+ * <p>Requests are not paced until the registry throttles one. The allowed request rate then drops
+ * to {@link #INITIAL_THROTTLED_RATE}, halves on every further throttled request, and doubles every
+ * {@link #RECOVERY_INTERVAL_MS} without one, until requests are no longer paced. A request that
+ * would wait longer than {@link #MAX_WAIT_MS} fails right away instead. There is one limiter per
+ * registry, shared by every client in the process.
+ *
+ * <p>Throttled requests are recorded by {@link SchemaRegistryRetryPolicy#call}, which knows the
+ * registry of the request. The requests that the Schema Registry client sends on its own, such as
+ * those of the serializers, are paced, but their throttled responses are not recorded.
+ */
+final class RegistryRateLimiter {
+
+  // Requests per second allowed right after the registry first throttles.
+  static final double INITIAL_THROTTLED_RATE = 50;
+  static final double MIN_RATE = 1;
+  // Once the rate recovers to this many requests per second, requests are no longer paced.
+  static final double MAX_RATE = 1000;
+  static final long RECOVERY_INTERVAL_MS = 5000;
+  // The rate is halved at most this often, so that the throttled responses to requests that were
+  // already in flight do not count again.
+  static final long DECREASE_INTERVAL_MS = 1000;
+  // The longest a single request is delayed. Requests that would wait longer fail instead.
+  static final long MAX_WAIT_MS = 30 * 1000L;
+
+  private static final ConcurrentMap<String, RegistryRateLimiter> LIMITERS =
+      new ConcurrentHashMap<>();
+
+  private final LongSupplier clock;
+  // Guarded by this. The rate is unlimited while throttledRate is infinite.
+  private double throttledRate = Double.POSITIVE_INFINITY;
+  // The rate recovers from throttledRate since this point.
+  private long throttledAtMs;
+  private long decreasedAtMs;
+  private double nextPermitAtMs;
+
+  @VisibleForTesting
+  RegistryRateLimiter(LongSupplier clock) {
+    this.clock = clock;
+  }
+
+  /** Returns the shared limiter of the registry that serves the given URL. */
+  static RegistryRateLimiter forUrl(URL url) {
+    int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+    String registry = url.getProtocol() + "://" + url.getHost() + ":" + port;
+    return LIMITERS.computeIfAbsent(
+        registry, unused -> new RegistryRateLimiter(System::currentTimeMillis));
+  }
+
+  /**
+   * Waits until a request may be sent to the registry.
+   *
+   * @throws IllegalStateException if the request would wait longer than {@link #MAX_WAIT_MS}
+   */
+  void acquire() {
+    long waitMs = reserve(clock.getAsLong());
+    if (waitMs < 0) {
+      throw new IllegalStateException(
+          String.format(
+              "Shed a Schema Registry request, which would have waited more than %d ms for the"
+                  + " registry to stop throttling",
+              MAX_WAIT_MS));
+    }
+    if (waitMs > 0) {
+      try {
+        Thread.sleep(waitMs);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Reserves the next request and returns how long it must wait, in milliseconds, or -1 if it must
+   * be shed. Shed requests reserve nothing.
+   */
+  synchronized long reserve(long nowMs) {
+    double rate = rate(nowMs);
+    if (Double.isInfinite(rate)) {
+      return 0;
+    }
+    double startMs = Math.max(nowMs, nextPermitAtMs);
+    if (startMs - nowMs >= MAX_WAIT_MS) {
+      return -1;
+    }
+    nextPermitAtMs = startMs + 1000 / rate;
+    return (long) Math.ceil(startMs - nowMs);
+  }
+
+  /** Slows down requests after the registry throttled one. */
+  synchronized void onThrottled(long nowMs) {
+    double rate = rate(nowMs);
+    if (Double.isInfinite(rate)) {
+      throttledRate = INITIAL_THROTTLED_RATE;
+      decreasedAtMs = nowMs;
+      nextPermitAtMs = nowMs;
+    } else if (nowMs - decreasedAtMs >= DECREASE_INTERVAL_MS) {
+      throttledRate = Math.max(MIN_RATE, rate / 2);
+      decreasedAtMs = nowMs;
+    } else {
+      // Restart the recovery from the current rate.
+      throttledRate = rate;
+    }
+    throttledAtMs = nowMs;
+  }
+
+  /** Returns the allowed requests per second, or infinity if requests are not paced. */
+  synchronized double rate(long nowMs) {
+    if (Double.isInfinite(throttledRate)) {
+      return throttledRate;
+    }
+    double recoveryIntervals = Math.max(0, nowMs - throttledAtMs) / (double) RECOVERY_INTERVAL_MS;
+    double recovered = throttledRate * Math.pow(2, recoveryIntervals);
+    if (recovered >= MAX_RATE) {
+      throttledRate = Double.POSITIVE_INFINITY;
+    }
+    return Double.isInfinite(throttledRate) ? throttledRate : recovered;
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.confluent.kafka.schemaregistry.client.rest.entities.ErrorMessage;
+import io.confluent.kafka.schemaregistry.client.rest.exceptions.RestClientException;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides which Schema Registry errors are worth retrying, and retries them.
+ *
+ * <p>Errors are classified by the Google status of the error response, such as
+ * <code>RESOURCE_EXHAUSTED</code>, or by its HTTP status code if it has none:
+ *
+ * <ul>
+ *   <li>{@link ErrorKind#THROTTLED}: <code>RESOURCE_EXHAUSTED</code> and <code>UNAVAILABLE</code>,
+ *       or HTTP 429 and 503. The registry asks its clients to slow down.
+ *   <li>{@link ErrorKind#TRANSIENT}: <code>DEADLINE_EXCEEDED</code> and <code>ABORTED</code>, or
+ *       HTTP 408, 502 and 504.
+ *   <li>{@link ErrorKind#FATAL}: everything else, such as <code>INVALID_ARGUMENT</code> or
+ *       <code>PERMISSION_DENIED</code>, which fail the same way when retried.
+ * </ul>
+ *
+ * <p>Requests made with {@link #call} are retried with exponential backoff. The throttled
+ * responses they get are recorded for their registry, and when {@link
+ * GcpAuthConfig#SCHEMA_REGISTRY_RATE_LIMIT_ENABLE_CONFIG} is set, {@link
+ * GcpBearerAuthCredentialProvider}, which is asked for a token before every request, then paces
+ * all requests of the process to that registry, including those of the serializers. The requests
+ * that the serializers send on their own are not made with {@link #call}, so their throttled
+ * responses are neither retried nor recorded.
+ */
+public final class SchemaRegistryRetryPolicy {
+
+  /** How a Schema Registry error should be handled. */
+  public enum ErrorKind {
+    /** The registry is overloaded or out of quota. Retry, and slow down. */
+    THROTTLED,
+    /** The request may succeed if retried. */
+    TRANSIENT,
+    /** The request will fail again if retried. */
+    FATAL;
+
+    public boolean isRetryable() {
+      return this != FATAL;
+    }
+  }
+
+  private final int maxRetries;
+  private final long backoffMs;
+  private final long maxBackoffMs;
+
+  /** Creates a retry policy from the {@link GcpAuthConfig} options in the given configuration. */
+  public SchemaRegistryRetryPolicy(Map<String, ?> configs) {
+    GcpAuthConfig config = new GcpAuthConfig(configs);
+    this.maxRetries =
+        (int)
+            config.getLong(
+                GcpAuthConfig.SCHEMA_REGISTRY_MAX_RETRIES_CONFIG,
+                GcpAuthConfig.DEFAULT_SCHEMA_REGISTRY_MAX_RETRIES,
+                0,
+                Integer.MAX_VALUE);
+    this.backoffMs =
+        config.getLong(
+            GcpAuthConfig.SCHEMA_REGISTRY_RETRY_BACKOFF_MS_CONFIG,
+            GcpAuthConfig.DEFAULT_SCHEMA_REGISTRY_RETRY_BACKOFF_MS,
+            0,
+            Long.MAX_VALUE);
+    this.maxBackoffMs =
+        Math.max(
+            backoffMs,
+            config.getLong(
+                GcpAuthConfig.SCHEMA_REGISTRY_RETRY_BACKOFF_MAX_MS_CONFIG,
+                GcpAuthConfig.DEFAULT_SCHEMA_REGISTRY_RETRY_BACKOFF_MAX_MS,
+                0,
+                Long.MAX_VALUE));
+  }
+
+  /** Classifies a parsed error response. */
+  public static ErrorKind classify(ErrorMessage error) {
+    return classify(error.getErrorCode(), error.getStatus());
+  }
+
+  /**
+   * Classifies an error reported by the Schema Registry client. The Google status is read from the
+   * start of the exception message, where {@link ErrorMessage} puts it.
+   */
+  public static ErrorKind classify(RestClientException e) {
+    return classify(e.getStatus(), statusOf(e.getMessage()));
+  }
+
+  /**
+   * Classifies an error by its Google status, if not null, or else by its code. The code is either
+   * an HTTP status code or a Schema Registry error code, such as 40401, whose first three digits
+   * are the HTTP status code.
+   */
+  public static ErrorKind classify(int code, String status) {
+    if (status != null) {
+      switch (status) {
+        case "RESOURCE_EXHAUSTED":
+        case "UNAVAILABLE":
+          return ErrorKind.THROTTLED;
+        case "DEADLINE_EXCEEDED":
+        case "ABORTED":
+          return ErrorKind.TRANSIENT;
+        default:
+          return ErrorKind.FATAL;
+      }
+    }
+    int httpStatus = code >= 10000 ? code / 100 : code;
+    switch (httpStatus) {
+      case 429:
+      case 503:
+        return ErrorKind.THROTTLED;
+      case 408:
+      case 502:
+      case 504:
+        return ErrorKind.TRANSIENT;
+      default:
+        return ErrorKind.FATAL;
+    }
+  }
+
+  /**
+   * Runs a request to the given registry, retrying it with exponential backoff while it fails with
+   * retryable errors. Network errors are retried as well. Throttled responses are recorded for the
+   * registry.
+   */
+  public <T> T call(URL registryUrl, Callable<T> request) throws Exception {
+    RegistryRateLimiter limiter = RegistryRateLimiter.forUrl(registryUrl);
+    for (int retry = 0; ; retry++) {
+      try {
+        return request.call();
+      } catch (RestClientException e) {
+        ErrorKind kind = classify(e);
+        if (kind == ErrorKind.THROTTLED) {
+          limiter.onThrottled(System.currentTimeMillis());
+        }
+        if (!kind.isRetryable() || retry >= maxRetries) {
+          throw e;
+        }
+      } catch (IOException e) {
+        if (retry >= maxRetries) {
+          throw e;
+        }
+      }
+      Thread.sleep(backoffMillis(retry));
+    }
+  }
+
+  /** Returns a random wait of up to the exponential backoff, so that clients spread out. */
+  @VisibleForTesting
+  long backoffMillis(int retry) {
+    double backoff = Math.min(maxBackoffMs, backoffMs * Math.pow(2, retry));
+    return (long) (ThreadLocalRandom.current().nextDouble() * backoff);
+  }
+
+  // Reads the Google status from a message such as "RESOURCE_EXHAUSTED: Quota exceeded".
+  private static String statusOf(String message) {
+    if (message == null) {
+      return null;
+    }
+    int end = message.indexOf(':');
+    if (end <= 0) {
+      return null;
+    }
+    for (int i = 0; i < end; i++) {
+      char c = message.charAt(i);
+      if ((c < 'A' || c > 'Z') && c != '_') {
+        return null;
+      }
+    }
+    return message.substring(0, end);
+  }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2018 Confluent Inc.
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.confluent.kafka.schemaregistry.client.rest.entities;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Generic JSON error message.
+ *
+ * <p>This is an updated version of the original
+ * <code>io.confluent.kafka.schemaregistry.client.rest.entities.ErrorMessage</code>
+ * class from the Confluent Schema Registry Client, which has the same
+ * structure in Java and is still fully compatible with the client code,
+ * but supports parsing the source JSON error message in more formats
+ * via Jackson annotations (see {@link #unpackNestedError}).
+ *
+ * <p>In additional to the original error format:
+ * <pre>
+ *   {
+ *     "error_code": 400,
+ *     "message": "..."
+ *   }
+ * </pre>
+ * It also supports this format:
+ * <pre>
+ *   {
+ *     "error: {
+ *       "code": 400,
+ *       "message": "..."
+ *     }
+ *   }
+ * </pre>
+ *
+ * Since the class is in the same package
+ * <code>io.confluent.kafka.schemaregistry.client.rest.entities</code>,
+ * pre-pending this library to the classpath will override its implementation
+ * from the Schema Registry Client library and allow parsing Managed Kafka
+ * style error messages.
+ */
+@Schema(description = "Error message")
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ErrorMessage {
+
+  private int errorCode;
+  private String message;
+  private String status;
+
+  public ErrorMessage() {}
+
+  // Required for compatibility with the original class.
+  // @JsonProperty("error_code") and @JsonProperty("message") annotations
+  // have been removed to force Jackson always use the default constructor
+  // and then set the values via either setErrorCode/setMessage or
+  // unpackNestedError methods.
+  public ErrorMessage(int errorCode, String message) {
+      this.errorCode = errorCode;
+      this.message = message;
+  }
+
+  @Schema(description = "Error code")
+  @JsonProperty("error_code")
+  public int getErrorCode() {
+    return errorCode;
+  }
+
+  @JsonProperty("error_code")
+  public void setErrorCode(int errorCode) {
+    this.errorCode = errorCode;
+  }
+
+  @Schema(description = "Detailed error message")
+  @JsonProperty
+  public String getMessage() {
+    return message;
+  }
+
+  @JsonProperty
+  public void setMessage(String message) {
+    this.message = message;
+  }
+
+  /**
+   * Returns the Google status of a nested error, such as
+   * <code>RESOURCE_EXHAUSTED</code>, or null if there is none.
+   */
+  @JsonIgnore
+  public String getStatus() {
+    return status;
+  }
+
+  /**
+   * Sets the error code and message from a nested Google error object, as
+   * parsed into a map.
+   *
+   * <p>Jackson reads the nested error with {@link NestedErrorDeserializer}
+   * instead, which has the same effect without building the map.
+   */
+  public void unpackNestedError(Map<String, Object> error) {
+    applyNestedError(NestedError.fromMap(error));
+  }
+
+  @JsonProperty("error")
+  @JsonDeserialize(using = NestedErrorDeserializer.class)
+  private void setNestedError(NestedError error) {
+    applyNestedError(error);
+  }
+
+  private void applyNestedError(NestedError error) {
+    if (error.code != null) {
+      this.errorCode = error.code;
+    }
+    if (error.status != null) {
+      this.status = error.status;
+    }
+
+    if (error.message != null && error.status != null) {
+      this.message = error.status + ": " + error.message;
+    } else if (error.message != null) {
+      this.message = error.message;
+    } else if (error.status != null) {
+      this.message = error.status;
+    }
+  }
+
+  private static String tryGetNonEmptyString(Object object) {
+    if (object != null) {
+      String s = object.toString();
+      if (s.length() > 0) {
+        return s;
+      }
+    }
+    return null;
+  }
+
+  private static Integer tryGetErrorCode(Object code) {
+    if (code == null || code instanceof Integer) {
+      return (Integer) code;
+    }
+    return tryParseInt(code.toString());
+  }
+
+  /**
+   * Parses a decimal integer the way {@link Integer#parseInt(String)} does,
+   * but returns null instead of throwing if it cannot.
+   */
+  static Integer tryParseInt(String s) {
+    int length = s.length();
+    if (length == 0) {
+      return null;
+    }
+    int i = 0;
+    boolean negative = false;
+    char first = s.charAt(0);
+    if (first < '0') {
+      if (first == '-') {
+        negative = true;
+      } else if (first != '+') {
+        return null;
+      }
+      if (length == 1) {
+        return null;
+      }
+      i++;
+    }
+    long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+    long result = 0;
+    for (; i < length; i++) {
+      int digit = Character.digit(s.charAt(i), 10);
+      if (digit < 0) {
+        return null;
+      }
+      result = result * 10 + digit;
+      if (result > limit) {
+        return null;
+      }
+    }
+    return (int) (negative ? -result : result);
+  }
+
+  /** The fields of a nested Google error object that an error message uses. */
+  static final class NestedError {
+    final Integer code;
+    final String status;
+    final String message;
+
+    NestedError(Integer code, String status, String message) {
+      this.code = code;
+      this.status = status;
+      this.message = message;
+    }
+
+    static NestedError fromMap(Map<String, Object> error) {
+      return new NestedError(
+          tryGetErrorCode(error.get("code")),
+          tryGetNonEmptyString(error.get("status")),
+          tryGetNonEmptyString(error.get("message")));
+    }
+  }
+
+  /**
+   * Reads a nested Google error object field by field, skipping the fields it
+   * does not use, such as <code>details</code>.
+   *
+   * <p>Values are interpreted exactly as {@link #unpackNestedError} would:
+   * only unusual values, such as a code given as an object, are read as they
+   * would be into the map.
+   */
+  static final class NestedErrorDeserializer extends StdDeserializer<NestedError> {
+    private static final long serialVersionUID = 1L;
+
+    public NestedErrorDeserializer() {
+      super(NestedError.class);
+    }
+
+    @Override
+    public NestedError deserialize(JsonParser p, DeserializationContext ctxt)
+        throws IOException {
+      JsonToken token = p.currentToken();
+      if (token == JsonToken.START_OBJECT) {
+        token = p.nextToken();
+      } else if (token != JsonToken.FIELD_NAME && token != JsonToken.END_OBJECT) {
+        // Not an object: fail, or coerce, exactly as the map would.
+        Map<String, Object> error = ctxt.readValue(
+            p, ctxt.getTypeFactory().constructMapType(Map.class, String.class, Object.class));
+        return error == null ? null : NestedError.fromMap(error);
+      }
+
+      // Like the map, the last value of a repeated field wins.
+      Integer code = null;
+      String status = null;
+      String message = null;
+      for (; token == JsonToken.FIELD_NAME; token = p.nextToken()) {
+        String name = p.currentName();
+        JsonToken value = p.nextToken();
+        switch (name) {
+          case "code":
+            code = readCode(p, ctxt, value);
+            break;
+          case "status":
+            status = readNonEmptyString(p, ctxt, value);
+            break;
+          case "message":
+            message = readNonEmptyString(p, ctxt, value);
+            break;
+          default:
+            p.skipChildren();
+        }
+      }
+      return new NestedError(code, status, message);
+    }
+
+    private static Integer readCode(JsonParser p, DeserializationContext ctxt, JsonToken value)
+        throws IOException {
+      switch (value) {
+        case VALUE_NULL:
+          return null;
+        case VALUE_NUMBER_INT:
+          // Larger integers do not parse as an int either.
+          return p.getNumberType() == JsonParser.NumberType.INT ? p.getIntValue() : null;
+        case VALUE_STRING:
+          return tryParseInt(p.getText());
+        default:
+          return tryGetErrorCode(ctxt.readValue(p, Object.class));
+      }
+    }
+
+    private static String readNonEmptyString(
+        JsonParser p, DeserializationContext ctxt, JsonToken value) throws IOException {
+      switch (value) {
+        case VALUE_NULL:
+          return null;
+        case VALUE_STRING:
+          String s = p.getText();
+          return s.isEmpty() ? null : s;
+        default:
+          return tryGetNonEmptyString(ctxt.readValue(p, Object.class));
+      }
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    ErrorMessage that = (ErrorMessage) o;
+    return errorCode == that.errorCode
+        && Objects.equals(message, that.message);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(errorCode, message);
+  }
+}
@@ -0,0 +1,654 @@
+/*
+ * Copyright 2024 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.auth.oauth2.IdToken;
+import com.google.auth.oauth2.IdTokenProvider;
+import com.google.common.collect.ImmutableMap;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import javax.security.auth.callback.Callback;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.security.oauthbearer.OAuthBearerTokenCallback;
+import org.apache.kafka.common.security.oauthbearer.internals.secured.SerializedJwt;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit test for GcpBearerAuthCredentialProvider. */
+@RunWith(JUnit4.class)
+public class GcpBearerAuthCredentialProviderTest {
+
+  private static final String SCOPE = "https://www.googleapis.com/auth/cloud-platform";
+  private static String FAKE_ACESS_TOKEN = "fake-access-token";
+
+  static class FakeGoogleCredentials extends GoogleCredentials {
+    @Override
+    public AccessToken refreshAccessToken() throws IOException {
+      return new AccessToken(FAKE_ACESS_TOKEN, Date.from(Instant.now().plusSeconds(3600)));
+    }
+  }
+
+  static class UnsupportedCredentials extends GoogleCredentials {}
+
+  /** Issues tokens with a configurable lifetime, counting and slowing down every refresh. */
+  static class CountingGoogleCredentials extends GoogleCredentials {
+    final AtomicInteger refreshes = new AtomicInteger();
+    volatile long lifetimeSeconds = 3600;
+    volatile CountDownLatch refreshGate = new CountDownLatch(0);
+
+    @Override
+    public AccessToken refreshAccessToken() throws IOException {
+      int refresh = refreshes.incrementAndGet();
+      try {
+        Thread.sleep(50);
+        refreshGate.await();
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      return new AccessToken(
+          "token-" + refresh, Date.from(Instant.now().plusSeconds(lifetimeSeconds)));
+    }
+  }
+
+  /** Issues ID tokens for any audience, counting them by audience. */
+  static class FakeIdTokenCredentials extends GoogleCredentials implements IdTokenProvider {
+    final Map<String, AtomicInteger> idTokens = new ConcurrentHashMap<>();
+    volatile long lifetimeSeconds = 3600;
+
+    @Override
+    public IdToken idTokenWithAudience(String audience, List<IdTokenProvider.Option> options)
+        throws IOException {
+      int count = idTokens.computeIfAbsent(audience, key -> new AtomicInteger()).incrementAndGet();
+      Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+      String claims =
+          String.format(
+              "{\"aud\":\"%s\",\"exp\":%d,\"n\":%d}",
+              audience, Instant.now().plusSeconds(lifetimeSeconds).getEpochSecond(), count);
+      return IdToken.create(
+          encoder.encodeToString("{\"alg\":\"RS256\"}".getBytes(UTF_8))
+              + "."
+              + encoder.encodeToString(claims.getBytes(UTF_8))
+              + "."
+              + encoder.encodeToString("signature".getBytes(UTF_8)));
+    }
+
+    int idTokens(String audience) {
+      AtomicInteger count = idTokens.get(audience);
+      return count == null ? 0 : count.get();
+    }
+  }
+
+  private static String claims(String token) {
+    return new String(Base64.getUrlDecoder().decode(token.split("\\.")[1]), UTF_8);
+  }
+
+  private GcpBearerAuthCredentialProvider createProvider(GoogleCredentials credentials) {
+    GcpBearerAuthCredentialProvider gcpBearerAuthCredentialProvider =
+        new GcpBearerAuthCredentialProvider(credentials);
+    return gcpBearerAuthCredentialProvider;
+  }
+
+  @Test
+  public void success() throws MalformedURLException {
+    GcpBearerAuthCredentialProvider gcpBearerAuthCredentialProvider =
+        createProvider(new FakeGoogleCredentials());
+    String token = gcpBearerAuthCredentialProvider.getBearerToken(new URL("https://test"));
+
+    // Validate the token.
+    assertEquals(FAKE_ACESS_TOKEN, token);
+  }
+
+  @Test
+  public void failure() throws MalformedURLException {
+    GcpBearerAuthCredentialProvider gcpBearerAuthCredentialProvider =
+        createProvider(new UnsupportedCredentials());
+
+    // Validate the token.
+    assertThrows(
+        IllegalStateException.class,
+        () -> gcpBearerAuthCredentialProvider.getBearerToken(new URL("https://test")));
+  }
+
+  private static Set<String> getBearerTokenConcurrently(
+      GcpBearerAuthCredentialProvider provider, int threads) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<String>> tokens = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        tokens.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  return provider.getBearerToken(new URL("https://test"));
+                }));
+      }
+      start.countDown();
+      Set<String> distinctTokens = ConcurrentHashMap.newKeySet();
+      for (Future<String> token : tokens) {
+        distinctTokens.add(token.get());
+      }
+      return distinctTokens;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void concurrentRequests_shareSingleRefresh() throws Exception {
+    CountingGoogleCredentials credentials = new CountingGoogleCredentials();
+    GcpBearerAuthCredentialProvider provider = createProvider(credentials);
+    provider.configure(Collections.emptyMap());
+
+    Set<String> tokens = getBearerTokenConcurrently(provider, 32);
+
+    assertThat(credentials.refreshes.get()).isEqualTo(1);
+    assertThat(tokens).containsExactly("token-1");
+  }
+
+  @Test
+  public void concurrentRequests_refreshEarlyOncePerRotation() throws Exception {
+    CountingGoogleCredentials credentials = new CountingGoogleCredentials();
+    // The credentials hold a token that expires within the early refresh window.
+    credentials.lifetimeSeconds = 600;
+    credentials.refresh();
+    credentials.lifetimeSeconds = 3600;
+    AtomicLong nowMs = new AtomicLong(System.currentTimeMillis());
+    GcpBearerAuthCredentialProvider provider =
+        new GcpBearerAuthCredentialProvider(SharedCredentials.unshared(credentials), nowMs::get);
+    provider.configure(
+        Collections.singletonMap(GcpAuthConfig.EARLY_REFRESH_WINDOW_MS_CONFIG, "900000"));
+    assertEquals("token-1", provider.getBearerToken(new URL("https://test")));
+
+    // Half of the token lifetime passes, after which the token is due for a refresh.
+    nowMs.addAndGet(301_000);
+    // Requests keep using the current token while a single background refresh runs.
+    Set<String> tokens = getBearerTokenConcurrently(provider, 32);
+    assertThat(tokens).containsExactly("token-1");
+
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (!"token-2".equals(provider.getBearerToken(new URL("https://test")))
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(getBearerTokenConcurrently(provider, 32)).containsExactly("token-2");
+    assertThat(credentials.refreshes.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void fastPath_doesNotWaitOnRefresh() throws Exception {
+    CountingGoogleCredentials credentials = new CountingGoogleCredentials();
+    credentials.lifetimeSeconds = 600;
+    credentials.refresh();
+    AtomicLong nowMs = new AtomicLong(System.currentTimeMillis());
+    GcpBearerAuthCredentialProvider provider =
+        new GcpBearerAuthCredentialProvider(SharedCredentials.unshared(credentials), nowMs::get);
+    provider.configure(
+        Collections.singletonMap(GcpAuthConfig.EARLY_REFRESH_WINDOW_MS_CONFIG, "900000"));
+    assertEquals("token-1", provider.getBearerToken(new URL("https://test")));
+
+    // Block the background refresh triggered by the early refresh window.
+    nowMs.addAndGet(301_000);
+    credentials.lifetimeSeconds = 3600;
+    credentials.refreshGate = new CountDownLatch(1);
+    for (int i = 0; i < 10_000; i++) {
+      assertEquals("token-1", provider.getBearerToken(new URL("https://test")));
+    }
+    assertThat(credentials.refreshes.get()).isAtMost(2);
+
+    credentials.refreshGate.countDown();
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (!"token-2".equals(provider.getBearerToken(new URL("https://test")))
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals("token-2", provider.getBearerToken(new URL("https://test")));
+  }
+
+  @Test
+  public void earlyRefreshWindow_longerThanLifetimeDoesNotRefreshOnEveryRequest() throws Exception {
+    FakeIdTokenCredentials credentials = new FakeIdTokenCredentials();
+    credentials.lifetimeSeconds = 600;
+    AtomicLong nowMs = new AtomicLong(System.currentTimeMillis());
+    GcpBearerAuthCredentialProvider provider =
+        new GcpBearerAuthCredentialProvider(SharedCredentials.unshared(credentials), nowMs::get);
+    provider.configure(
+        ImmutableMap.of(
+            GcpAuthConfig.SCHEMA_REGISTRY_TOKEN_TYPE_CONFIG, "id_token",
+            GcpAuthConfig.EARLY_REFRESH_WINDOW_MS_CONFIG, "900000",
+            GcpAuthConfig.SCHEMA_REGISTRY_TOKEN_PREFETCH_ENABLE_CONFIG, "false"));
+
+    for (int i = 0; i < 1000; i++) {
+      provider.getBearerToken(new URL("https://registry.test"));
+    }
+    assertThat(credentials.idTokens("https://registry.test")).isEqualTo(1);
+
+    // Once half of the lifetime has passed, requests refresh the token once.
+    nowMs.addAndGet(301_000);
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (credentials.idTokens("https://registry.test") < 2
+        && System.currentTimeMillis() < deadline) {
+      provider.getBearerToken(new URL("https://registry.test"));
+      Thread.sleep(10);
+    }
+    for (int i = 0; i < 1000; i++) {
+      provider.getBearerToken(new URL("https://registry.test"));
+    }
+    assertThat(credentials.idTokens("https://registry.test")).isEqualTo(2);
+    provider.close();
+  }
+
+  @Test
+  public void configure_earlyRefreshWindowOverMaximumFails() {
+    GcpBearerAuthCredentialProvider provider = createProvider(new FakeGoogleCredentials());
+
+    assertThrows(
+        ConfigException.class,
+        () ->
+            provider.configure(
+                Collections.singletonMap(
+                    GcpAuthConfig.EARLY_REFRESH_WINDOW_MS_CONFIG, "3600000")));
+  }
+
+  @Test
+  public void audience_isOriginOfUrl() throws Exception {
+    assertThat(
+            GcpBearerAuthCredentialProvider.audience(
+                new URL("https://Registry.Example.com/subjects/topic-value/versions")))
+        .isEqualTo("https://registry.example.com");
+    assertThat(GcpBearerAuthCredentialProvider.audience(new URL("http://localhost:8081/schemas")))
+        .isEqualTo("http://localhost:8081");
+  }
+
+  @Test
+  public void idTokens_areCachedPerRegistry() throws Exception {
+    FakeIdTokenCredentials credentials = new FakeIdTokenCredentials();
+    GcpBearerAuthCredentialProvider provider = createProvider(credentials);
+    provider.configure(
+        ImmutableMap.of(GcpAuthConfig.SCHEMA_REGISTRY_TOKEN_TYPE_CONFIG, "id_token"));
+
+    String first = provider.getBearerToken(new URL("https://eu.registry.test/subjects"));
+    String second = provider.getBearerToken(new URL("https://us.registry.test/subjects"));
+
+    assertThat(claims(first)).contains("\"aud\":\"https://eu.registry.test\"");
+    assertThat(claims(second)).contains("\"aud\":\"https://us.registry.test\"");
+    assertThat(provider.getBearerToken(new URL("https://eu.registry.test/schemas/ids/1")))
+        .isEqualTo(first);
+    assertThat(credentials.idTokens("https://eu.registry.test")).isEqualTo(1);
+    assertThat(credentials.idTokens("https://us.registry.test")).isEqualTo(1);
+    provider.close();
+  }
+
+  @Test
+  public void idTokens_dropLeastRecentlyUsedRegistry() throws Exception {
+    FakeIdTokenCredentials credentials = new FakeIdTokenCredentials();
+    GcpBearerAuthCredentialProvider provider = createProvider(credentials);
+    provider.configure(
+        ImmutableMap.of(
+            GcpAuthConfig.SCHEMA_REGISTRY_TOKEN_TYPE_CONFIG, "id_token",
+            GcpAuthConfig.SCHEMA_REGISTRY_TOKEN_TARGETS_MAX_CONFIG, "2"));
+
+    provider.getBearerToken(new URL("https://a.registry.test"));
+    provider.getBearerToken(new URL("https://b.registry.test"));
+    provider.getBearerToken(new URL("https://a.registry.test"));
+    provider.getBearerToken(new URL("https://c.registry.test"));
+    provider.getBearerToken(new URL("https://a.registry.test"));
+    provider.getBearerToken(new URL("https://c.registry.test"));
+    provider.getBearerToken(new URL("https://b.registry.test"));
+
+    assertThat(credentials.idTokens("https://a.registry.test")).isEqualTo(1);
+    assertThat(credentials.idTokens("https://b.registry.test")).isEqualTo(2);
+    assertThat(credentials.idTokens("https://c.registry.test")).isEqualTo(1);
+    provider.close();
+  }
+
+  @Test
+  public void idTokens_unsupportedCredentialsFail() throws Exception {
+    GcpBearerAuthCredentialProvider provider = createProvider(new FakeGoogleCredentials());
+    provider.configure(
+        ImmutableMap.of(GcpAuthConfig.SCHEMA_REGISTRY_TOKEN_TYPE_CONFIG, "id_token"));
+
+    assertThrows(
+        IllegalStateException.class,
+        () -> provider.getBearerToken(new URL("https://registry.test")));
+    provider.close();
+  }
+
+  @Test
+  public void configure_unknownTokenTypeFails() {
+    GcpBearerAuthCredentialProvider provider = createProvider(new FakeGoogleCredentials());
+
+    assertThrows(
+        ConfigException.class,
+        () ->
+            provider.configure(
+                ImmutableMap.of(GcpAuthConfig.SCHEMA_REGISTRY_TOKEN_TYPE_CONFIG, "jwt")));
+  }
+
+  @Test
+  public void prefetch_refreshesEveryRegistryBeforeItsNextRequest() throws Exception {
+    FakeIdTokenCredentials credentials = new FakeIdTokenCredentials();
+    // Tokens are refreshed two to three seconds after they are issued, before they are too close
+    // to their expiry to be handed out, as their expiry is in whole seconds.
+    credentials.lifetimeSeconds = 33;
+    GcpBearerAuthCredentialProvider provider = createProvider(credentials);
+    provider.configure(
+        ImmutableMap.of(GcpAuthConfig.SCHEMA_REGISTRY_TOKEN_TYPE_CONFIG, "id_token"));
+    provider.getBearerToken(new URL("https://eu.registry.test"));
+    provider.getBearerToken(new URL("https://us.registry.test"));
+
+    long deadline = System.currentTimeMillis() + 10_000;
+    while ((credentials.idTokens("https://eu.registry.test") < 2
+            || credentials.idTokens("https://us.registry.test") < 2)
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+
+    assertThat(credentials.idTokens("https://eu.registry.test")).isAtLeast(2);
+    assertThat(credentials.idTokens("https://us.registry.test")).isAtLeast(2);
+    provider.close();
+  }
+
+  @Test
+  public void prefetch_slowFetchDoesNotHoldUpOtherRefreshes() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    FakeIdTokenCredentials credentials =
+        new FakeIdTokenCredentials() {
+          @Override
+          public IdToken idTokenWithAudience(
+              String audience, List<IdTokenProvider.Option> options) throws IOException {
+            if (audience.equals("https://slow.registry.test") && idTokens(audience) > 0) {
+              try {
+                release.await();
+              } catch (InterruptedException e) {
+                throw new IOException(e);
+              }
+            }
+            return super.idTokenWithAudience(audience, options);
+          }
+        };
+    credentials.lifetimeSeconds = 33;
+    GcpBearerAuthCredentialProvider provider = createProvider(credentials);
+    provider.configure(
+        ImmutableMap.of(GcpAuthConfig.SCHEMA_REGISTRY_TOKEN_TYPE_CONFIG, "id_token"));
+    try {
+      provider.getBearerToken(new URL("https://slow.registry.test"));
+      Thread.sleep(100);
+      provider.getBearerToken(new URL("https://fast.registry.test"));
+
+      long deadline = System.currentTimeMillis() + 10_000;
+      while (credentials.idTokens("https://fast.registry.test") < 2
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+
+      assertThat(credentials.idTokens("https://fast.registry.test")).isAtLeast(2);
+      assertThat(credentials.idTokens("https://slow.registry.test")).isEqualTo(1);
+      // The background refreshes of Kafka clients are not queued behind the slow fetch either.
+      SharedCredentials.REFRESH_EXECUTOR.submit(() -> {}).get(5, TimeUnit.SECONDS);
+    } finally {
+      release.countDown();
+      provider.close();
+    }
+  }
+
+  @Test
+  public void prefetch_disabledLeavesRefreshToRequests() throws Exception {
+    FakeIdTokenCredentials credentials = new FakeIdTokenCredentials();
+    // Tokens would be refreshed one to two seconds after they are issued.
+    credentials.lifetimeSeconds = 32;
+    GcpBearerAuthCredentialProvider provider = createProvider(credentials);
+    provider.configure(
+        ImmutableMap.of(
+            GcpAuthConfig.SCHEMA_REGISTRY_TOKEN_TYPE_CONFIG, "id_token",
+            GcpAuthConfig.SCHEMA_REGISTRY_TOKEN_PREFETCH_ENABLE_CONFIG, "false"));
+    provider.getBearerToken(new URL("https://registry.test"));
+
+    Thread.sleep(2500);
+
+    assertThat(credentials.idTokens("https://registry.test")).isEqualTo(1);
+    provider.close();
+  }
+
+  @Test
+  public void refreshGuard_servesLastTokenWhileRefreshesFail() throws Exception {
+    RefreshGuardTest.FaultInjectingCredentials credentials =
+        new RefreshGuardTest.FaultInjectingCredentials();
+    // Short enough for every request to need a refresh. The credentials already hold a token,
+    // and refreshing them fails from now on.
+    credentials.lifetimeSeconds = 20;
+    credentials.refresh();
+    String token = credentials.getAccessToken().getTokenValue();
+    credentials.failing = true;
+    GcpBearerAuthCredentialProvider provider = createProvider(credentials);
+    provider.configure(RefreshGuardTest.options(60_000, 60_000, 5, 300_000));
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(provider.getBearerToken(new URL("https://test"))).isEqualTo(token);
+    }
+
+    assertThat(credentials.attempts.get()).isEqualTo(2);
+    provider.close();
+  }
+
+  @Test
+  public void refreshGuard_failsFastWithoutGracePeriod() throws Exception {
+    RefreshGuardTest.FaultInjectingCredentials credentials =
+        new RefreshGuardTest.FaultInjectingCredentials();
+    credentials.failing = true;
+    GcpBearerAuthCredentialProvider provider = createProvider(credentials);
+    provider.configure(RefreshGuardTest.options(60_000, 60_000, 5, 0));
+
+    for (int i = 0; i < 10; i++) {
+      assertThrows(
+          IllegalStateException.class, () -> provider.getBearerToken(new URL("https://test")));
+    }
+
+    assertThat(credentials.attempts.get()).isEqualTo(1);
+    provider.close();
+  }
+
+  @Test
+  public void metrics_recordRefreshesAndCacheHits() throws Exception {
+    GcpBearerAuthCredentialProvider provider = createProvider(new FakeGoogleCredentials());
+    provider.configure(ImmutableMap.of("client.id", "metrics-test-registry"));
+
+    provider.getBearerToken(new URL("https://test"));
+    provider.getBearerToken(new URL("https://test"));
+
+    Map<String, String> tags =
+        ImmutableMap.of(
+            TokenMetrics.CLIENT_ID_TAG, "metrics-test-registry",
+            TokenMetrics.COMPONENT_TAG, "bearer-auth-credential-provider");
+    assertThat(TokenMetricsTest.globalMetricValue("refresh-total", tags)).isEqualTo(1.0);
+    assertThat(TokenMetricsTest.globalMetricValue("cache-hit-total", tags)).isEqualTo(1.0);
+
+    provider.close();
+    assertThat(TokenMetricsTest.globalMetricValue("refresh-total", tags)).isNull();
+  }
+
+  @Test
+  public void fileCache_startsWithCachedToken() throws Exception {
+    Path directory = Files.createTempDirectory("token-cache");
+    try {
+      new TokenFileCache(directory, CredentialSource.APPLICATION_DEFAULT.cacheIdentity(), SCOPE)
+          .write(
+              new AccessToken("cached-token", Date.from(Instant.now().plusSeconds(3600))), null);
+      GcpBearerAuthCredentialProvider provider = new GcpBearerAuthCredentialProvider();
+
+      provider.configure(
+          ImmutableMap.of(GcpAuthConfig.TOKEN_CACHE_DIR_CONFIG, directory.toString()));
+
+      assertThat(provider.getBearerToken(null)).isEqualTo("cached-token");
+      provider.close();
+    } finally {
+      try (Stream<Path> files = Files.walk(directory)) {
+        files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+      }
+    }
+  }
+
+  @Test
+  public void tracing_recordsRefreshAndCacheHit() throws Exception {
+    InMemorySpanExporter exporter = InMemorySpanExporter.create();
+    TokenTracing.set(
+        TokenTracing.forOpenTelemetry(
+            OpenTelemetrySdk.builder()
+                .setTracerProvider(
+                    SdkTracerProvider.builder()
+                        .addSpanProcessor(SimpleSpanProcessor.create(exporter))
+                        .build())
+                .build()));
+    try {
+      GcpBearerAuthCredentialProvider provider =
+          createProvider(new SharedCredentialsTest.CountingGoogleCredentials());
+      provider.configure(new HashMap<String, Object>());
+
+      provider.getBearerToken(null);
+      provider.getBearerToken(null);
+
+      List<SpanData> roots = new ArrayList<>();
+      List<SpanData> refreshes = new ArrayList<>();
+      for (SpanData span : exporter.getFinishedSpanItems()) {
+        if (span.getName().equals(TokenTracing.GET_BEARER_TOKEN_SPAN)) {
+          roots.add(span);
+        } else if (span.getName().equals(TokenTracing.REFRESH_SPAN)) {
+          refreshes.add(span);
+        }
+      }
+      AttributeKey<Boolean> cacheHit = AttributeKey.booleanKey(TokenTracing.CACHE_HIT_ATTRIBUTE);
+      assertThat(roots).hasSize(2);
+      assertThat(roots.get(0).getAttributes().get(cacheHit)).isFalse();
+      assertThat(
+              roots
+                  .get(0)
+                  .getAttributes()
+                  .get(AttributeKey.stringKey(TokenTracing.CREDENTIAL_TYPE_ATTRIBUTE)))
+          .isEqualTo("CountingGoogleCredentials");
+      assertThat(roots.get(1).getAttributes().get(cacheHit)).isTrue();
+      assertThat(refreshes).hasSize(1);
+      assertThat(refreshes.get(0).getParentSpanId()).isEqualTo(roots.get(0).getSpanId());
+      provider.close();
+    } finally {
+      TokenTracing.set(TokenTracing.NONE);
+    }
+  }
+
+  @Test
+  public void loginCallbackHandler_sharesOneRefresh() throws Exception {
+    SharedCredentialsTest.CountingGoogleCredentials credentials =
+        new SharedCredentialsTest.CountingGoogleCredentials();
+    GcpLoginCallbackHandler handler =
+        new GcpLoginCallbackHandler(
+            SharedCredentials.acquire("kafka-and-registry", SCOPE, () -> credentials));
+    handler.configure(new HashMap<String, Object>(), "OAUTHBEARER", null);
+    GcpBearerAuthCredentialProvider provider =
+        new GcpBearerAuthCredentialProvider(
+            SharedCredentials.acquire("kafka-and-registry", SCOPE, () -> credentials));
+    provider.configure(new HashMap<String, Object>());
+
+    handler.handle(new Callback[] {new OAuthBearerTokenCallback()});
+    String bearerToken = provider.getBearerToken(new URL("https://registry.test"));
+
+    assertThat(bearerToken).isEqualTo("fake-access-token-1");
+    assertThat(credentials.refreshes.get()).isEqualTo(1);
+    handler.close();
+    provider.close();
+  }
+
+  @Test
+  public void refreshAhead_refreshesTokenOfLoginCallbackHandler() throws Exception {
+    SharedCredentialsTest.CountingGoogleCredentials credentials =
+        new SharedCredentialsTest.CountingGoogleCredentials();
+    // The credentials hold a token that expires within the early refresh window of the provider.
+    credentials.lifetimeSeconds = 1200;
+    credentials.refresh();
+    credentials.lifetimeSeconds = 3600;
+    GcpLoginCallbackHandler handler =
+        new GcpLoginCallbackHandler(
+            SharedCredentials.acquire("registry-refreshes-ahead", SCOPE, () -> credentials));
+    handler.configure(new HashMap<String, Object>(), "OAUTHBEARER", null);
+    AtomicLong nowMs = new AtomicLong(System.currentTimeMillis());
+    GcpBearerAuthCredentialProvider provider =
+        new GcpBearerAuthCredentialProvider(
+            SharedCredentials.acquire("registry-refreshes-ahead", SCOPE, () -> credentials),
+            nowMs::get);
+    provider.configure(
+        ImmutableMap.of(
+            GcpAuthConfig.EARLY_REFRESH_WINDOW_MS_CONFIG, "1800000",
+            GcpAuthConfig.SCHEMA_REGISTRY_TOKEN_PREFETCH_ENABLE_CONFIG, "false"));
+    OAuthBearerTokenCallback firstCallback = new OAuthBearerTokenCallback();
+    handler.handle(new Callback[] {firstCallback});
+    assertThat(provider.getBearerToken(new URL("https://registry.test")))
+        .isEqualTo("fake-access-token-1");
+
+    // Half of the token lifetime passes, after which the provider refreshes the token.
+    nowMs.addAndGet(601_000);
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (!"fake-access-token-2".equals(provider.getBearerToken(new URL("https://registry.test")))
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    OAuthBearerTokenCallback secondCallback = new OAuthBearerTokenCallback();
+    handler.handle(new Callback[] {secondCallback});
+
+    assertThat(provider.getBearerToken(new URL("https://registry.test")))
+        .isEqualTo("fake-access-token-2");
+    // The handler serves the token the provider refreshed.
+    assertThat(new SerializedJwt(secondCallback.token().value()).getSignature())
+        .isNotEqualTo(new SerializedJwt(firstCallback.token().value()).getSignature());
+    assertThat(credentials.refreshes.get()).isEqualTo(2);
+    handler.close();
+    provider.close();
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit test for RegistryRateLimiter. */
+@RunWith(JUnit4.class)
+public final class RegistryRateLimiterTest {
+  private final AtomicLong nowMs = new AtomicLong(1_000_000);
+  private final RegistryRateLimiter limiter = new RegistryRateLimiter(nowMs::get);
+
+  @Test
+  public void reserve_doesNotPaceUntilThrottled() {
+    for (int i = 0; i < 1000; i++) {
+      assertThat(limiter.reserve(nowMs.get())).isEqualTo(0L);
+    }
+    assertThat(limiter.rate(nowMs.get())).isPositiveInfinity();
+  }
+
+  @Test
+  public void reserve_pacesAtThrottledRate() {
+    limiter.onThrottled(nowMs.get());
+
+    assertThat(limiter.reserve(nowMs.get())).isEqualTo(0L);
+    assertThat(limiter.reserve(nowMs.get())).isEqualTo(20L);
+    assertThat(limiter.reserve(nowMs.get())).isEqualTo(40L);
+  }
+
+  @Test
+  public void onThrottled_halvesRateAtMostOncePerInterval() {
+    limiter.onThrottled(nowMs.get());
+    assertThat(limiter.rate(nowMs.get())).isEqualTo(RegistryRateLimiter.INITIAL_THROTTLED_RATE);
+
+    // Responses to requests already in flight.
+    limiter.onThrottled(nowMs.get() + 10);
+    limiter.onThrottled(nowMs.get() + 20);
+    assertThat(limiter.rate(nowMs.get() + 20)).isWithin(1).of(50);
+
+    nowMs.addAndGet(RegistryRateLimiter.DECREASE_INTERVAL_MS);
+    double recovered = limiter.rate(nowMs.get());
+    limiter.onThrottled(nowMs.get());
+    assertThat(limiter.rate(nowMs.get())).isWithin(0.01).of(recovered / 2);
+  }
+
+  @Test
+  public void onThrottled_rateDoesNotDropBelowMinimum() {
+    for (int i = 0; i < 20; i++) {
+      limiter.onThrottled(nowMs.addAndGet(RegistryRateLimiter.DECREASE_INTERVAL_MS));
+    }
+
+    assertThat(limiter.rate(nowMs.get())).isWithin(0.1).of(RegistryRateLimiter.MIN_RATE);
+  }
+
+  @Test
+  public void rate_recoversWithoutThrottling() {
+    limiter.onThrottled(nowMs.get());
+
+    nowMs.addAndGet(RegistryRateLimiter.RECOVERY_INTERVAL_MS);
+    assertThat(limiter.rate(nowMs.get())).isWithin(0.01).of(100);
+
+    // 50 * 2^5 exceeds the maximum rate, after which requests are no longer paced.
+    nowMs.addAndGet(4 * RegistryRateLimiter.RECOVERY_INTERVAL_MS);
+    assertThat(limiter.rate(nowMs.get())).isPositiveInfinity();
+    assertThat(limiter.reserve(nowMs.get())).isEqualTo(0L);
+  }
+
+  @Test
+  public void reserve_shedsRequestsBeyondMaxWait() {
+    for (int i = 0; i < 10; i++) {
+      limiter.onThrottled(nowMs.addAndGet(RegistryRateLimiter.DECREASE_INTERVAL_MS));
+    }
+    int shed = 0;
+    for (int i = 0; i < 100; i++) {
+      long waitMs = limiter.reserve(nowMs.get());
+      assertThat(waitMs).isLessThan(RegistryRateLimiter.MAX_WAIT_MS);
+      if (waitMs < 0) {
+        shed++;
+      }
+    }
+
+    assertThat(shed).isGreaterThan(0);
+  }
+
+  @Test
+  public void acquire_failsFastInsteadOfWaitingBeyondMaxWait() {
+    for (int i = 0; i < 10; i++) {
+      limiter.onThrottled(nowMs.addAndGet(RegistryRateLimiter.DECREASE_INTERVAL_MS));
+    }
+    while (limiter.reserve(nowMs.get()) >= 0) {}
+
+    long startNanos = System.nanoTime();
+    assertThrows(IllegalStateException.class, limiter::acquire);
+    assertThat(System.nanoTime() - startNanos).isLessThan(TimeUnit.SECONDS.toNanos(1));
+  }
+
+  @Test
+  public void forUrl_sharesOneLimiterPerRegistry() throws Exception {
+    RegistryRateLimiter registry = RegistryRateLimiter.forUrl(new URL("https://registry-a/subjects"));
+    assertThat(RegistryRateLimiter.forUrl(new URL("https://registry-a:443/schemas/ids/1")))
+        .isSameInstanceAs(registry);
+    RegistryRateLimiter other = RegistryRateLimiter.forUrl(new URL("https://registry-b/subjects"));
+
+    registry.onThrottled(System.currentTimeMillis());
+
+    assertThat(registry.rate(System.currentTimeMillis())).isLessThan(Double.POSITIVE_INFINITY);
+    assertThat(other.rate(System.currentTimeMillis())).isPositiveInfinity();
+  }
+}
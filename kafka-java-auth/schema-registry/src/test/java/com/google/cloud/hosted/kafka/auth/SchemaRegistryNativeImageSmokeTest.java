@@ -0,0 +1,66 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.hosted.kafka.auth.SchemaRegistryRetryPolicy.ErrorKind;
+import io.confluent.kafka.schemaregistry.client.rest.entities.ErrorMessage;
+import io.confluent.kafka.schemaregistry.client.security.bearerauth.BearerAuthCredentialProvider;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Smoke test of the code paths that depend on the native-image metadata of the Schema Registry
+ * module. Runs with the other unit tests, and as a native image with <code>mvn -Pnative test
+ * </code>.
+ */
+@RunWith(JUnit4.class)
+public final class SchemaRegistryNativeImageSmokeTest {
+
+  @Test
+  public void serviceLoader_findsCredentialProvider() {
+    List<String> aliases = new ArrayList<>();
+    for (BearerAuthCredentialProvider provider :
+        ServiceLoader.load(BearerAuthCredentialProvider.class)) {
+      aliases.add(provider.alias());
+      if (provider instanceof GcpBearerAuthCredentialProvider) {
+        ((GcpBearerAuthCredentialProvider) provider).close();
+      }
+    }
+
+    assertThat(aliases).contains("GOOGLE_CLOUD_OAUTH");
+  }
+
+  @Test
+  public void errorMessage_readsNestedGoogleError() throws Exception {
+    ErrorMessage error =
+        new ObjectMapper()
+            .readValue(
+                "{\"error\":{\"code\":504,\"status\":\"DEADLINE_EXCEEDED\",\"message\":\"slow\"}}",
+                ErrorMessage.class);
+
+    assertThat(error.getErrorCode()).isEqualTo(504);
+    assertThat(error.getMessage()).isEqualTo("DEADLINE_EXCEEDED: slow");
+    assertThat(SchemaRegistryRetryPolicy.classify(error)).isEqualTo(ErrorKind.TRANSIENT);
+  }
+}
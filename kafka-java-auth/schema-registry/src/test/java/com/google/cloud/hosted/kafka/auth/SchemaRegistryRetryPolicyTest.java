@@ -0,0 +1,199 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.hosted.kafka.auth.SchemaRegistryRetryPolicy.ErrorKind;
+import com.google.common.collect.ImmutableMap;
+import io.confluent.kafka.schemaregistry.client.rest.entities.ErrorMessage;
+import io.confluent.kafka.schemaregistry.client.rest.exceptions.RestClientException;
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit test for SchemaRegistryRetryPolicy. */
+@RunWith(JUnit4.class)
+public final class SchemaRegistryRetryPolicyTest {
+  private final SchemaRegistryRetryPolicy policy =
+      new SchemaRegistryRetryPolicy(
+          ImmutableMap.of(
+              GcpAuthConfig.SCHEMA_REGISTRY_MAX_RETRIES_CONFIG, 2,
+              GcpAuthConfig.SCHEMA_REGISTRY_RETRY_BACKOFF_MS_CONFIG, 1,
+              GcpAuthConfig.SCHEMA_REGISTRY_RETRY_BACKOFF_MAX_MS_CONFIG, 4));
+
+  private static ErrorMessage parse(String json) throws IOException {
+    return new ObjectMapper().readValue(json, ErrorMessage.class);
+  }
+
+  @Test
+  public void classify_byGoogleStatus() throws Exception {
+    assertThat(
+            SchemaRegistryRetryPolicy.classify(
+                parse("{\"error\":{\"code\":429,\"status\":\"RESOURCE_EXHAUSTED\"}}")))
+        .isEqualTo(ErrorKind.THROTTLED);
+    assertThat(
+            SchemaRegistryRetryPolicy.classify(
+                parse("{\"error\":{\"code\":503,\"status\":\"UNAVAILABLE\"}}")))
+        .isEqualTo(ErrorKind.THROTTLED);
+    assertThat(
+            SchemaRegistryRetryPolicy.classify(
+                parse("{\"error\":{\"code\":504,\"status\":\"DEADLINE_EXCEEDED\"}}")))
+        .isEqualTo(ErrorKind.TRANSIENT);
+    assertThat(
+            SchemaRegistryRetryPolicy.classify(
+                parse("{\"error\":{\"code\":429,\"status\":\"FAILED_PRECONDITION\"}}")))
+        .isEqualTo(ErrorKind.FATAL);
+  }
+
+  @Test
+  public void classify_byCodeWithoutStatus() throws Exception {
+    assertThat(SchemaRegistryRetryPolicy.classify(parse("{\"error_code\":42901}")))
+        .isEqualTo(ErrorKind.THROTTLED);
+    assertThat(SchemaRegistryRetryPolicy.classify(parse("{\"error\":{\"code\":502}}")))
+        .isEqualTo(ErrorKind.TRANSIENT);
+    assertThat(SchemaRegistryRetryPolicy.classify(parse("{\"error_code\":40401}")))
+        .isEqualTo(ErrorKind.FATAL);
+    assertThat(SchemaRegistryRetryPolicy.classify(500, null)).isEqualTo(ErrorKind.FATAL);
+  }
+
+  @Test
+  public void classify_restClientExceptionReadsStatusFromMessage() {
+    assertThat(
+            SchemaRegistryRetryPolicy.classify(
+                new RestClientException("RESOURCE_EXHAUSTED: Quota exceeded", 400, 400)))
+        .isEqualTo(ErrorKind.THROTTLED);
+    assertThat(
+            SchemaRegistryRetryPolicy.classify(
+                new RestClientException("PERMISSION_DENIED: Denied", 503, 503)))
+        .isEqualTo(ErrorKind.FATAL);
+    assertThat(
+            SchemaRegistryRetryPolicy.classify(
+                new RestClientException("Subject not found: x", 503, 50301)))
+        .isEqualTo(ErrorKind.THROTTLED);
+  }
+
+  @Test
+  public void call_retriesRetryableErrors() throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+
+    String result =
+        policy.call(
+            new URL("https://retry-registry/subjects"),
+            () -> {
+              if (attempts.incrementAndGet() < 3) {
+                throw new RestClientException("DEADLINE_EXCEEDED: Timed out", 504, 504);
+              }
+              return "ok";
+            });
+
+    assertThat(result).isEqualTo("ok");
+    assertThat(attempts.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void call_doesNotRetryFatalErrors() {
+    AtomicInteger attempts = new AtomicInteger();
+
+    assertThrows(
+        RestClientException.class,
+        () ->
+            policy.call(
+                new URL("https://fatal-registry/subjects"),
+                () -> {
+                  attempts.incrementAndGet();
+                  throw new RestClientException("INVALID_ARGUMENT: Bad schema", 400, 42201);
+                }));
+
+    assertThat(attempts.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void call_givesUpAfterMaxRetries() throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+    URL url = new URL("https://throttled-registry/subjects");
+
+    assertThrows(
+        IOException.class,
+        () ->
+            policy.call(
+                url,
+                () -> {
+                  attempts.incrementAndGet();
+                  throw new IOException("connection reset");
+                }));
+
+    assertThat(attempts.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void call_throttledErrorsSlowDownRegistry() throws Exception {
+    URL url = new URL("https://quota-registry/subjects");
+
+    assertThrows(
+        RestClientException.class,
+        () ->
+            policy.call(
+                url,
+                () -> {
+                  throw new RestClientException("RESOURCE_EXHAUSTED: Quota exceeded", 429, 429);
+                }));
+
+    assertThat(RegistryRateLimiter.forUrl(url).rate(System.currentTimeMillis()))
+        .isLessThan(Double.POSITIVE_INFINITY);
+  }
+
+  @Test
+  public void backoffMillis_isBoundedByMaxBackoff() {
+    for (int retry = 0; retry < 10; retry++) {
+      assertThat(policy.backoffMillis(retry)).isAtMost(4L);
+    }
+  }
+
+  @Test
+  public void bearerAuthCredentialProvider_pacesThrottledRegistry() throws Exception {
+    GcpBearerAuthCredentialProvider provider =
+        new GcpBearerAuthCredentialProvider(new GcpLoginCallbackHandlerTest.FakeGoogleCredentials());
+    provider.configure(
+        ImmutableMap.of(GcpAuthConfig.SCHEMA_REGISTRY_RATE_LIMIT_ENABLE_CONFIG, "true"));
+    URL url = new URL("https://paced-registry/subjects");
+
+    assertThrows(
+        RestClientException.class,
+        () ->
+            new SchemaRegistryRetryPolicy(
+                    ImmutableMap.of(GcpAuthConfig.SCHEMA_REGISTRY_MAX_RETRIES_CONFIG, "0"))
+                .call(
+                    url,
+                    () -> {
+                      throw new RestClientException("RESOURCE_EXHAUSTED: Quota exceeded", 429, 429);
+                    }));
+    long startMs = System.currentTimeMillis();
+    for (int i = 0; i < 5; i++) {
+      provider.getBearerToken(url);
+    }
+
+    // At 50 requests per second, the last request waits at least 80 ms.
+    assertThat(System.currentTimeMillis() - startMs).isAtLeast(80L);
+    provider.close();
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import com.google.auth.oauth2.GoogleCredentials;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.security.auth.callback.Callback;
+import org.apache.kafka.common.security.oauthbearer.OAuthBearerTokenCallback;
+
+/**
+ * Runs many concurrent login callback handlers and Schema Registry credential providers against a
+ * {@link FakeGoogleServer}, and reports how long they take to get a token and how many requests
+ * reach the server.
+ *
+ * <p>The clients use real metadata server credentials, so the whole refresh path is exercised,
+ * including the HTTP requests. Run it with larger loads than the unit tests use with:
+ *
+ * <pre>
+ *   java ... com.google.cloud.hosted.kafka.auth.TokenLoadHarness \
+ *     [clients] [requestsPerClient] [latencyMs] [errorRate] [maxRequestsPerSecond]
+ * </pre>
+ */
+final class TokenLoadHarness {
+
+  private static final String SCOPE = "https://www.googleapis.com/auth/cloud-platform";
+  private static final AtomicInteger RUNS = new AtomicInteger();
+
+  /** The outcome of a run. Latencies are in microseconds. */
+  static final class Report {
+    final int acquisitions;
+    final int failures;
+    final long p50Micros;
+    final long p99Micros;
+    final long p999Micros;
+    final long maxMicros;
+    final int upstreamTokenRequests;
+    final int upstreamAccountRequests;
+
+    Report(long[] latencyNanos, int failures, FakeGoogleServer server, int tokens, int accounts) {
+      Arrays.sort(latencyNanos);
+      this.acquisitions = latencyNanos.length;
+      this.failures = failures;
+      this.p50Micros = percentileMicros(latencyNanos, 0.5);
+      this.p99Micros = percentileMicros(latencyNanos, 0.99);
+      this.p999Micros = percentileMicros(latencyNanos, 0.999);
+      this.maxMicros = percentileMicros(latencyNanos, 1.0);
+      this.upstreamTokenRequests = server.tokenRequests() - tokens;
+      this.upstreamAccountRequests = server.accountRequests() - accounts;
+    }
+
+    private static long percentileMicros(long[] sortedNanos, double percentile) {
+      if (sortedNanos.length == 0) {
+        return 0;
+      }
+      int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+      return TimeUnit.NANOSECONDS.toMicros(sortedNanos[Math.max(0, index)]);
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "acquisitions=%d failures=%d p50=%dus p99=%dus p999=%dus max=%dus"
+              + " upstream token requests=%d upstream account requests=%d",
+          acquisitions,
+          failures,
+          p50Micros,
+          p99Micros,
+          p999Micros,
+          maxMicros,
+          upstreamTokenRequests,
+          upstreamAccountRequests);
+    }
+  }
+
+  /** Gets a token, as a Kafka or Schema Registry client would. */
+  private interface Client {
+    void acquire() throws Exception;
+  }
+
+  private TokenLoadHarness() {}
+
+  /**
+   * Starts the given number of login callback handlers, which share credentials as handlers of
+   * the same process do, and has each of them get a token the given number of times, all at once.
+   */
+  static Report runHandlers(FakeGoogleServer server, int clients, int requestsPerClient)
+      throws Exception {
+    return runHandlers(server, clients, requestsPerClient, new HashMap<String, Object>());
+  }
+
+  /** Like {@link #runHandlers(FakeGoogleServer, int, int)}, with the given handler options. */
+  static Report runHandlers(
+      FakeGoogleServer server, int clients, int requestsPerClient, Map<String, ?> configs)
+      throws Exception {
+    String identity = "load-harness-" + RUNS.incrementAndGet();
+    GoogleCredentials credentials = server.metadataCredentials();
+    List<GcpLoginCallbackHandler> handlers = new ArrayList<>();
+    List<Client> acquisitions = new ArrayList<>();
+    for (int i = 0; i < clients; i++) {
+      GcpLoginCallbackHandler handler =
+          new GcpLoginCallbackHandler(
+              SharedCredentials.acquire(identity, SCOPE, () -> credentials));
+      handler.configure(configs, "OAUTHBEARER", null);
+      handlers.add(handler);
+      acquisitions.add(() -> handler.handle(new Callback[] {new OAuthBearerTokenCallback()}));
+    }
+    try {
+      return run(server, acquisitions, requestsPerClient);
+    } finally {
+      for (GcpLoginCallbackHandler handler : handlers) {
+        handler.close();
+      }
+    }
+  }
+
+  /**
+   * Starts the given number of Schema Registry credential providers, each with credentials of its
+   * own, and has each of them get a token the given number of times, all at once.
+   */
+  static Report runProviders(FakeGoogleServer server, int clients, int requestsPerClient)
+      throws Exception {
+    List<GcpBearerAuthCredentialProvider> providers = new ArrayList<>();
+    List<Client> acquisitions = new ArrayList<>();
+    for (int i = 0; i < clients; i++) {
+      GcpBearerAuthCredentialProvider provider =
+          new GcpBearerAuthCredentialProvider(server.metadataCredentials());
+      provider.configure(new HashMap<String, Object>());
+      providers.add(provider);
+      acquisitions.add(() -> provider.getBearerToken(null));
+    }
+    try {
+      return run(server, acquisitions, requestsPerClient);
+    } finally {
+      for (GcpBearerAuthCredentialProvider provider : providers) {
+        provider.close();
+      }
+    }
+  }
+
+  private static Report run(FakeGoogleServer server, List<Client> clients, int requestsPerClient)
+      throws InterruptedException {
+    int tokens = server.tokenRequests();
+    int accounts = server.accountRequests();
+    long[] latencyNanos = new long[clients.size() * requestsPerClient];
+    AtomicInteger failures = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(clients.size());
+    // One thread per client, so that every client waits on the network at the same time.
+    ExecutorService executor = Executors.newFixedThreadPool(clients.size());
+    try {
+      for (int i = 0; i < clients.size(); i++) {
+        Client client = clients.get(i);
+        int offset = i * requestsPerClient;
+        executor.execute(
+            () -> {
+              try {
+                start.await();
+                for (int request = 0; request < requestsPerClient; request++) {
+                  long startNanos = System.nanoTime();
+                  try {
+                    client.acquire();
+                  } catch (Exception e) {
+                    failures.incrementAndGet();
+                  }
+                  latencyNanos[offset + request] = System.nanoTime() - startNanos;
+                }
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              } finally {
+                done.countDown();
+              }
+            });
+      }
+      start.countDown();
+      done.await();
+    } finally {
+      executor.shutdownNow();
+    }
+    return new Report(latencyNanos, failures.get(), server, tokens, accounts);
+  }
+
+  public static void main(String[] args) throws Exception {
+    int clients = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+    int requestsPerClient = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+    try (FakeGoogleServer server = new FakeGoogleServer()) {
+      server.setLatencyMs(args.length > 2 ? Long.parseLong(args[2]) : 20);
+      server.setErrorRate(args.length > 3 ? Double.parseDouble(args[3]) : 0);
+      if (args.length > 4) {
+        server.setMaxRequestsPerSecond(Double.parseDouble(args[4]));
+      }
+      System.out.println("Handlers:  " + runHandlers(server, clients, requestsPerClient));
+      System.out.println("Providers: " + runProviders(server, clients, requestsPerClient));
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hosted.kafka.auth;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.util.HashMap;
+import javax.security.auth.callback.Callback;
+import org.apache.kafka.common.security.oauthbearer.OAuthBearerTokenCallback;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Load tests of the token refresh path against FakeGoogleServer. */
+@RunWith(JUnit4.class)
+public final class TokenLoadHarnessTest {
+
+  @Test
+  public void metadataCredentials_fetchTokenAndAccount() throws Exception {
+    try (FakeGoogleServer server = new FakeGoogleServer()) {
+      GcpLoginCallbackHandler handler =
+          new GcpLoginCallbackHandler(server.metadataCredentials());
+      handler.configure(new HashMap<String, Object>(), "OAUTHBEARER", null);
+      OAuthBearerTokenCallback callback = new OAuthBearerTokenCallback();
+
+      handler.handle(new Callback[] {callback});
+
+      assertThat(callback.token().principalName()).isEqualTo(FakeGoogleServer.ACCOUNT);
+      assertThat(server.tokenRequests()).isEqualTo(1);
+      handler.close();
+    }
+  }
+
+  @Test
+  public void handlers_shareOneUpstreamRefresh() throws Exception {
+    try (FakeGoogleServer server = new FakeGoogleServer().setLatencyMs(20)) {
+      TokenLoadHarness.Report report = TokenLoadHarness.runHandlers(server, 200, 5);
+
+      assertThat(report.failures).isEqualTo(0);
+      assertThat(report.acquisitions).isEqualTo(1000);
+      assertThat(report.upstreamTokenRequests).isEqualTo(1);
+      assertThat(report.upstreamAccountRequests).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void providers_refreshOncePerProvider() throws Exception {
+    try (FakeGoogleServer server = new FakeGoogleServer().setLatencyMs(5)) {
+      TokenLoadHarness.Report report = TokenLoadHarness.runProviders(server, 100, 5);
+
+      assertThat(report.failures).isEqualTo(0);
+      assertThat(report.upstreamTokenRequests).isEqualTo(100);
+    }
+  }
+
+  @Test
+  public void handlers_failingServerIsNotHammered() throws Exception {
+    try (FakeGoogleServer server = new FakeGoogleServer().setErrorRate(1.0)) {
+      // A configured principal keeps the account lookup out of the measurement. The backoff
+      // outlasts the test, so that the failed refresh is not retried.
+      TokenLoadHarness.Report report =
+          TokenLoadHarness.runHandlers(
+              server,
+              200,
+              5,
+              ImmutableMap.of(
+                  GcpAuthConfig.PRINCIPAL_CONFIG, FakeGoogleServer.ACCOUNT,
+                  GcpAuthConfig.RETRY_BACKOFF_MS_CONFIG, "600000"));
+
+      assertThat(report.failures).isEqualTo(1000);
+      // Requests that were waiting on the failed refresh back off as well, instead of retrying it.
+      assertThat(report.upstreamTokenRequests).isEqualTo(1);
+      assertThat(report.upstreamAccountRequests).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void handlers_failingPrincipalLookupIsNotHammered() throws Exception {
+    try (FakeGoogleServer server = new FakeGoogleServer().setErrorRate(1.0)) {
+      TokenLoadHarness.Report report =
+          TokenLoadHarness.runHandlers(
+              server,
+              200,
+              5,
+              ImmutableMap.of(GcpAuthConfig.RETRY_BACKOFF_MS_CONFIG, "600000"));
+
+      assertThat(report.failures).isEqualTo(1000);
+      // The principal is looked up before the token, and backs off like refreshes do.
+      assertThat(report.upstreamAccountRequests).isEqualTo(1);
+      assertThat(report.upstreamTokenRequests).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void rateLimitedServer_rejectsExcessRequests() throws Exception {
+    try (FakeGoogleServer server = new FakeGoogleServer().setMaxRequestsPerSecond(1)) {
+      GoogleCredentials first = server.metadataCredentials();
+      GoogleCredentials second = server.metadataCredentials();
+
+      first.refresh();
+
+      assertThrows(IOException.class, second::refresh);
+      assertThat(server.throttledRequests()).isEqualTo(1);
+    }
+  }
+}
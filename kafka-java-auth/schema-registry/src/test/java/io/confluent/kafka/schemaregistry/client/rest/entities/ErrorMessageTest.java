@@ -20,8 +20,13 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertThrows;
 
 import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.json.JsonMapper;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -128,4 +133,105 @@ public class ErrorMessageTest {
 
     assertThrows(JsonMappingException.class, () -> mapper.readValue(json, ErrorMessage.class));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void success_ignoresUnusedNestedFields() throws Exception {
+    String json = "{\n"
+        + "  \"error\": {\n"
+        + "    \"details\": [{\"reason\": \"RATE_LIMIT_EXCEEDED\", \"metadata\": {}}],\n"
+        + "    \"code\": \"429\",\n"
+        + "    \"message\": \"Quota exceeded\"\n"
+        + "  }\n"
+        + "}";
+
+    ErrorMessage em = mapper.readValue(json, ErrorMessage.class);
+
+    assertThat(em.getErrorCode()).isEqualTo(429);
+    assertThat(em.getMessage()).isEqualTo("Quota exceeded");
+  }
+
+  @Test
+  public void success_nestedFieldsMatchUnpackNestedError() throws Exception {
+    List<String> nestedErrors = Arrays.asList(
+        "{}",
+        "{\"code\": 402}",
+        "{\"code\": \"402\"}",
+        "{\"code\": \"+402\"}",
+        "{\"code\": \"-2147483648\"}",
+        "{\"code\": \"2147483648\"}",
+        "{\"code\": \" 402\"}",
+        "{\"code\": \"\"}",
+        "{\"code\": \"-\"}",
+        "{\"code\": 12345678901}",
+        "{\"code\": 402.0}",
+        "{\"code\": NaN}",
+        "{\"code\": true}",
+        "{\"code\": null}",
+        "{\"code\": [402]}",
+        "{\"code\": {\"value\": 402}}",
+        "{\"code\": 402, \"code\": \"x\"}",
+        "{\"message\": \"\", \"status\": \"NOT_FOUND\"}",
+        "{\"message\": 42, \"status\": false}",
+        "{\"message\": {\"text\": \"nested\"}, \"status\": [\"A\", 1]}",
+        "{\"message\": \"first\", \"message\": null}");
+
+    for (String nestedError : nestedErrors) {
+      ErrorMessage expected = new ErrorMessage(7, "unchanged");
+      expected.unpackNestedError(
+          mapper.readValue(nestedError, new TypeReference<Map<String, Object>>() {}));
+
+      ErrorMessage actual = mapper.readValue(
+          "{\"error_code\": 7, \"message\": \"unchanged\", \"error\": " + nestedError + "}",
+          ErrorMessage.class);
+
+      assertThat(actual).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void success_nestedFieldsMatchUnpackNestedErrorWithBigNumbers() throws Exception {
+    JsonMapper bigNumbersMapper = JsonMapper.builder()
+        .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+        .enable(DeserializationFeature.USE_BIG_INTEGER_FOR_INTS)
+        .build();
+
+    for (String nestedError : Arrays.asList("{\"code\": 402e0}", "{\"code\": 402}")) {
+      ErrorMessage expected = new ErrorMessage();
+      expected.unpackNestedError(
+          bigNumbersMapper.readValue(nestedError, new TypeReference<Map<String, Object>>() {}));
+
+      ErrorMessage actual =
+          bigNumbersMapper.readValue("{\"error\": " + nestedError + "}", ErrorMessage.class);
+
+      assertThat(actual.getErrorCode()).isEqualTo(402);
+      assertThat(actual).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void fail_nestedErrorNotAnObject() {
+    assertThrows(
+        JsonMappingException.class,
+        () -> mapper.readValue("{\"error\": \"Not found\"}", ErrorMessage.class));
+    assertThrows(
+        JsonMappingException.class,
+        () -> mapper.readValue("{\"error\": [402]}", ErrorMessage.class));
+    assertThrows(
+        JsonMappingException.class,
+        () -> mapper.readValue("{\"error\": null}", ErrorMessage.class));
+  }
+
+  @Test
+  public void tryParseInt_matchesParseInt() {
+    for (String s : Arrays.asList("0", "-0", "+7", "007", "2147483647", "-2147483648",
+        "2147483648", "-2147483649", "99999999999", "\u0664\u0660\u0662", "4 02", "0x1A", "")) {
+      Integer expected;
+      try {
+        expected = Integer.parseInt(s);
+      } catch (NumberFormatException e) {
+        expected = null;
+      }
+      assertThat(ErrorMessage.tryParseInt(s)).isEqualTo(expected);
+    }
+  }
+}